@@ -0,0 +1,127 @@
+package bench;
+
+import main.Hydra;
+import main.engine.HydraTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Chopping through the game's own Hydra (HydraNode.chop() and Hydra.randomChop(), so the session and the
+ * undo history are in there too), across Hydra sizes and copy counts.
+ *
+ * One chop is too quick to time on its own, and chops change the Hydra, so each iteration starts from the
+ * same Hydra again (untimed) and does one timed batch of CHOPS chops, reported per chop.
+ * HydraNode.chop() chops heads picked in setup: random ones, except that a head that would grow a lot is
+ * swapped for one on the deepest level (which grows at most 9 heads a copy on a fresh Hydra), and a Hydra
+ * that would pass the head limit below starts over instead. Hydra.randomChop() picks its own heads, so
+ * that batch just runs into the head limit (chops past it are refused, like in the game).
+ * A Hydra that starts over mid-batch (that, or a small one that died) does so timed, so a batch is always
+ * CHOPS chops. Only small Hydras die, so that is a cheap copy, but a big one that hits the limit isn't.
+ *
+ * java -jar bench/target/benchmarks.jar ChopBench -prof gc -p size=1000 -p copies=0,2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+public class ChopBench {
+    static final int CHOPS = 100;
+    //Heads a batch may grow on top of the starting Hydra
+    private static final int GROWTH_LIMIT = 1 << 21;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"0", "1", "2", "10", "1000"})
+    public int copies;
+
+    private HydraTree base, scratch;
+    private Hydra hydra;
+    private Random random;
+    private final int[] heads = new int[CHOPS];
+    //Start the Hydra over before heads[i] (the one before it won)
+    private final boolean[] restart = new boolean[CHOPS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        base = HydraBench.randomTree(size);
+        scratch = base.copy();
+        hydra = new Hydra(null);
+        hydra.setCopies(copies);
+        hydra.setMaxHeads(base.size() + GROWTH_LIMIT);
+        random = new Random(HydraBench.SEED);
+    }
+
+    /*
+     * Back to the starting Hydra, and pick this batch's heads by playing it out on a scratch copy.
+     * Chops hand out ids the same way every time, so the ids picked there are the ones the Hydra will have.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        long limit = base.size() + GROWTH_LIMIT;
+        scratch.copyFrom(base);
+        for (int i = 0; i < CHOPS; i++) {
+            restart[i] = scratch.choppableCount() == 0;
+            if (restart[i]) {
+                scratch.copyFrom(base);
+            }
+            int head = scratch.choppable(random.nextInt(scratch.choppableCount()));
+            if (scratch.regrowthSize(head, copies) > 9L * copies) {
+                head = deepest(scratch);
+            }
+            if (!scratch.admits(head, copies, limit)) {
+                restart[i] = true;
+                scratch.copyFrom(base);
+                head = deepest(scratch);
+            }
+            heads[i] = head;
+            scratch.chop(head, copies);
+        }
+        hydra.load(base.copy());
+    }
+
+    //On the deepest level everything under the head's parent is a head, and randomTree never gives anyone more than 9
+    private static int deepest(HydraTree tree) {
+        return tree.levelFirst(tree.height() - 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHOPS)
+    public int chop() {
+        for (int i = 0; i < CHOPS; i++) {
+            if (restart[i]) {
+                hydra.load(base.copy());
+            }
+            hydra.nodeAt(heads[i]).chop();
+        }
+        return hydra.getTree().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHOPS)
+    public int randomChop() {
+        for (int i = 0; i < CHOPS; i++) {
+            if (hydra.gameWon()) {
+                hydra.load(base.copy());
+            }
+            hydra.randomChop();
+        }
+        return hydra.getTree().size();
+    }
+}
@@ -0,0 +1,147 @@
+package bench;
+
+import main.Hydra;
+import main.HydraNode;
+import main.engine.HydraTree;
+import main.engine.LevelLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * JMH benchmarks for the Hydra model and the layout math, across Hydra sizes (ChopBench does copy counts).
+ * Run with the GC profiler for bytes allocated per operation:
+ *
+ * mvn -B package
+ * java -jar bench/target/benchmarks.jar -prof gc -p size=10,1000,100000
+ *
+ * (JavaFX is on the classpath because HydraNode is an ActionEvent, but no window is opened.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HydraBench {
+    static final int SEED = 364;
+
+    //Same size as the game's canvas on a 1080p screen
+    private static final double WIDTH = 1920, HEIGHT = 1080 * .8;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private HydraTree tree;
+    //The game's own Hydra around the same heads (no game attached, so nothing is drawn)
+    private Hydra hydra;
+    private HydraNode body;
+    private String exported;
+    private LevelLayout layout;
+
+    @Setup
+    public void setUp() {
+        tree = randomTree(size);
+        hydra = new Hydra(null);
+        hydra.load(tree.copy());
+        body = randomHydraNode(size);
+        exported = body.exportString();
+        layout = new LevelLayout(WIDTH, HEIGHT);
+    }
+
+    //<Cases>
+    @Benchmark
+    public HydraTree copy() {
+        return tree.copy();
+    }
+
+    @Benchmark
+    public HydraNode cloneNode() {
+        return body.clone();
+    }
+
+    @Benchmark
+    public ArrayList<HydraNode> getAllNodes() {
+        return body.getAllNodes();
+    }
+
+    @Benchmark
+    public long stream() {
+        return body.stream().count();
+    }
+
+    @Benchmark
+    public ArrayList<Integer> numberOfNodesAtEachIndex() {
+        return hydra.numberOfNodesAtEachIndex();
+    }
+
+    @Benchmark
+    public String exportString() {
+        return body.exportString();
+    }
+
+    @Benchmark
+    public HydraTree importString() {
+        return HydraTree.fromExportString(exported);
+    }
+
+    //The layout math behind every drawGame()
+    @Benchmark
+    public int layout() {
+        layout.layout(tree, HEIGHT);
+        return layout.levelCount();
+    }
+    //</Cases>
+
+    //<Book Keeping>
+    /*
+     * A random Hydra with size heads plus the body: each head goes on a random existing head.
+     * Nobody gets more than 9 children so the export string stays one digit per head.
+     */
+    static HydraTree randomTree(int size) {
+        HydraTree retVal = new HydraTree(true, size + 1);
+        Random r = new Random(SEED);
+        for (int i = 0; i < size; i++) {
+            int parent;
+            do {
+                parent = r.nextInt(retVal.idBound());
+            } while (retVal.childCount(parent) >= 9);
+            retVal.addChild(parent);
+        }
+        return retVal;
+    }
+
+    //The same Hydra as randomTree(size), built the way the game's HydraNode API would
+    static HydraNode randomHydraNode(int size) {
+        ArrayList<HydraNode> heads = new ArrayList<HydraNode>(size + 1);
+        ArrayList<Integer> childCounts = new ArrayList<Integer>(size + 1);
+        heads.add(new HydraNode(true));
+        childCounts.add(0);
+        Random r = new Random(SEED);
+        for (int i = 0; i < size; i++) {
+            int parent;
+            do {
+                parent = r.nextInt(heads.size());
+            } while (childCounts.get(parent) >= 9);
+            HydraNode head = new HydraNode();
+            heads.get(parent).addChild(head);
+            childCounts.set(parent, childCounts.get(parent) + 1);
+            heads.add(head);
+            childCounts.add(0);
+        }
+        return heads.get(0);
+    }
+
+}
@@ -0,0 +1,503 @@
+package main;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.TextAlignment;
+import main.engine.BackgroundLayout;
+import main.engine.ChopDelta;
+import main.engine.HitIndex;
+import main.engine.HydraEvents;
+import main.engine.HydraLayout;
+import main.engine.HydraTree;
+import main.engine.LevelLayout;
+import main.engine.Viewport;
+
+import java.util.Arrays;
+
+/*
+ * Paints the whole Hydra onto one Canvas instead of keeping a shape per head in the scene graph.
+ * Levels whose heads would be too thin to see are squashed:
+ * 	1.) Each group of siblings becomes one glyph with a count, if the groups are still wide enough
+ * 	2.) Otherwise the whole level becomes one bar with a count
+ * Only heads that are drawn one by one can be clicked, and clicks are looked up in a HitIndex.
+ *
+ * Scroll to zoom (around the mouse), drag to pan. Squashing is decided at the current zoom, so zooming into
+ * a bar turns it back into heads. Only what's on screen is drawn: the HitIndex rows are sorted left to right,
+ * so two binary searches a row find the heads (and lines) in view, and a frame costs about as much as the
+ * heads you can see, not the whole Hydra.
+ *
+ * The tidy version lays the Hydra out as a tree (parents centred over their children) on a background thread,
+ * and paints whatever layout is ready. Until the newest one is done, the last one stays up and can't be clicked.
+ */
+@SuppressWarnings("restriction")
+public class CanvasRenderer implements HydraRenderer, EventHandler<MouseEvent> {
+    //Anything thinner than this (in pixels) gets squashed
+    private static final double MIN_RADIUS = 1.5;
+    private static final double MIN_LABEL_WIDTH = 24;
+
+    private static final int HEADS = 0, GROUPS = 1, LEVEL = 2;
+
+    //One notch of the mouse wheel zooms this much, and each frame covers this much of what's left of a zoom
+    private static final double ZOOM_PER_NOTCH = 1.25, ZOOM_STEP = .35;
+
+    private final Pane area;
+    private final Canvas canvas = new Canvas();
+    //Whichever layout we are painting right now (the tidy version swaps in each finished frame)
+    private HydraLayout layout;
+    //Null unless this is the tidy version (or it was, and its worker died)
+    private BackgroundLayout background;
+    private final double layoutWidth, layoutHeight;
+
+    //Where each head is actually drawn (its own spot, its group's spot or its column on a bar), indexed by id
+    private double[] anchorX = new double[0];
+    //Per head: true if every one of its children can be chopped (so its group is green)
+    private boolean[] leafGroup = new boolean[0];
+    //Per level: HEADS, GROUPS or LEVEL
+    private int[] modes = new int[0];
+    //Anchors only need working out again on levels a chop touched, or whose mode changed (or all of them, for a new layout)
+    private boolean[] levelStale = new boolean[0];
+    private boolean anchorsStale = true;
+    //The height we last laid out for, so a frame where nothing moved can skip straight to painting
+    private double laidOutHeight = -1;
+
+    //What part of the Hydra is on screen, and the animation that zooms it
+    private final Viewport view = new Viewport();
+    private final AnimationTimer zooming;
+    private double dragX, dragY;
+
+    //The Hydra we last drew, so clicks can be turned back into heads, and the tree that is actually on screen
+    private Hydra shown;
+    private HydraTree painted;
+    private long paintedVersion = 0;
+    private final HitIndex hits = new HitIndex();
+
+    public CanvasRenderer(Pane area, double screenWidth, double screenHeight) {
+        this(area, screenWidth, screenHeight, false);
+    }
+
+    /*tidy: lay the Hydra out as a tree, off the FX thread*/
+    public CanvasRenderer(Pane area, double screenWidth, double screenHeight, boolean tidy) {
+        this.area = area;
+        double height = screenHeight * CSS.hydraCanvasHeightMultiple;
+        this.layoutWidth = screenWidth;
+        this.layoutHeight = height;
+        if (tidy) {
+            this.background = new BackgroundLayout(screenWidth, height, new Runnable() {
+                @Override
+                public void run() {
+                    Platform.runLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            paintLatest();
+                        }
+                    });
+                }
+            });
+        } else {
+            this.background = null;
+            this.layout = new LevelLayout(screenWidth, height);
+        }
+        canvas.widthProperty().bind(area.widthProperty());
+        canvas.heightProperty().bind(area.heightProperty());
+
+        //Zoom and pan live on the canvas, so they go away with it when another renderer takes over
+        zooming = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                boolean more = view.step(ZOOM_STEP);
+                repaint();
+                if (!more) {
+                    stop();
+                }
+            }
+        };
+        canvas.setOnScroll(new EventHandler<ScrollEvent>() {
+            @Override
+            public void handle(ScrollEvent e) {
+                //About 40 per notch on most mice, trackpads send smaller amounts more often
+                view.zoomAt(e.getX(), e.getY(), Math.pow(ZOOM_PER_NOTCH, e.getDeltaY() / 40));
+                zooming.start();
+            }
+        });
+        canvas.setOnMousePressed(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent e) {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+        });
+        canvas.setOnMouseDragged(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent e) {
+                view.panBy(e.getX() - dragX, e.getY() - dragY);
+                dragX = e.getX();
+                dragY = e.getY();
+                repaint();
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return background == null ? "Canvas" : "Canvas (tidy)";
+    }
+
+    @Override
+    public void attach() {
+        area.getChildren().setAll(canvas);
+        area.setOnMouseClicked(this);
+        //Whatever we had indexed may be stale by the time we're back
+        painted = null;
+    }
+
+    @Override
+    public void resetView() {
+        zooming.stop();
+        view.reset();
+        repaint();
+    }
+
+    @Override
+    public void draw(Hydra hydra, ChopDelta changes) {
+        if (background != null) {
+            fallBack(hydra);
+        }
+        boolean sameHydra = shown == hydra && painted != null;
+        shown = hydra;
+        //Nothing chopped and nothing resized: what we have still fits, so just paint it
+        boolean unchanged = sameHydra && changes.isEmpty() && area.getHeight() == laidOutHeight;
+        laidOutHeight = area.getHeight();
+        if (background != null) {
+            //The worker gets its own copy, the game keeps chopping ours (no copy if there's nothing new to lay out)
+            if (!unchanged) {
+                background.request(hydra.getTree().copy(), laidOutHeight);
+            }
+            paintLatest();
+            return;
+        }
+        HydraTree tree = hydra.getTree();
+        if (unchanged) {
+            paint(tree);
+            return;
+        }
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("layout");
+        layout.layout(tree, laidOutHeight);
+        phase.end(tree.size());
+        //The level layout leaves the levels a chop didn't touch alone, so only those get re-indexed (and re-anchored)
+        phase = HydraEvents.RenderPhase.start("hit index");
+        if (sameHydra && changes.isIncremental() && layout.levelCount() == hits.rowCount()) {
+            hits.update(tree, layout, changes);
+            markChopped(tree, changes);
+        } else {
+            hits.rebuild(tree, layout);
+            anchorsStale = true;
+        }
+        phase.end(tree.size());
+        paint(tree);
+    }
+
+    //Mark the levels a chop moved heads on, the same ones the HitIndex reads again
+    private void markChopped(HydraTree tree, ChopDelta changes) {
+        for (int i = 0; i < changes.removedCount(); i++) {
+            markStale(changes.removedDepth(i));
+        }
+        for (int i = 0; i < changes.regrownCount(); i++) {
+            int root = changes.regrown(i);
+            for (int n = root; n != HydraTree.NONE; n = tree.preOrderNext(n, root)) {
+                markStale(tree.depth(n));
+            }
+        }
+        for (int i = 0; i < changes.flippedCount(); i++) {
+            markStale(tree.depth(changes.flipped(i)));
+        }
+    }
+
+    //The level above goes too: its heads gained or lost children, so their groups may change colour
+    private void markStale(int d) {
+        if (d >= levelStale.length) {
+            anchorsStale = true;
+            return;
+        }
+        levelStale[d] = true;
+        if (d > 0) {
+            levelStale[d - 1] = true;
+        }
+    }
+
+    //Put the newest finished tidy layout on screen, if it's newer than what's there
+    private void paintLatest() {
+        if (background == null || fallBack(shown)) {
+            return;
+        }
+        BackgroundLayout.Frame frame = background.latest();
+        if (frame == null || frame.version() == paintedVersion) {
+            return;
+        }
+        paintedVersion = frame.version();
+        layout = frame.layout();
+        //A tidy layout can move every head, so index it all again
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("hit index");
+        hits.rebuild(frame.tree(), layout);
+        phase.end(frame.tree().size());
+        anchorsStale = true;
+        paint(frame.tree());
+    }
+
+    /*
+     * If the tidy worker died, say why and carry on with a LevelLayout instead of waiting for frames that
+     * will never come (and refusing every click meanwhile). Returns true if that just happened.
+     */
+    private boolean fallBack(Hydra hydra) {
+        Throwable failure = background.failure();
+        if (failure == null) {
+            return false;
+        }
+        background = null;
+        layout = new LevelLayout(layoutWidth, layoutHeight);
+        //Nothing we have indexed fits the new layout
+        painted = null;
+        anchorsStale = true;
+        if (hydra != null && hydra.gameInstance != null) {
+            hydra.gameInstance.showStatus("The tidy layout stopped (" + failure + "), so the Hydra is drawn level by level.");
+            hydra.gameInstance.requestRedraw();
+        }
+        return true;
+    }
+
+    //Paint what we painted last time again, after the view moved
+    private void repaint() {
+        if (painted == null || shown == null) {
+            return;
+        }
+        //The game's tree has changed since (and will be drawn in a moment), so our layout doesn't fit it
+        if (background == null && shown.gameInstance != null && shown.gameInstance.isRedrawPending()) {
+            return;
+        }
+        paint(painted);
+    }
+
+    private void paint(HydraTree tree) {
+        painted = tree;
+        view.setSize(canvas.getWidth(), canvas.getHeight());
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("squash levels");
+        pickModes(tree);
+        phase.end(tree.size());
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        //Only what's on screen costs anything, so that's what gets counted
+        phase = HydraEvents.RenderPhase.start("lines");
+        phase.end(drawLines(tree, gc));
+        phase = HydraEvents.RenderPhase.start("heads");
+        phase.end(drawHeads(tree, gc));
+    }
+
+    //Decide how every level gets drawn at this zoom, and where every head's anchor is on levels where that changed
+    private void pickModes(HydraTree tree) {
+        int levels = layout.levelCount();
+        if (modes.length < levels) {
+            modes = new int[levels];
+            levelStale = new boolean[levels];
+            anchorsStale = true;
+        }
+        double scale = view.scale();
+        for (int d = 0; d < levels; d++) {
+            int groups = d == 0 ? 1 : layout.parentCount(d - 1);
+            int mode;
+            if (d == 0 || layout.radiusX(d) * scale >= MIN_RADIUS) {
+                mode = HEADS;
+            } else if (canvas.getWidth() * scale / (groups * 2) >= MIN_RADIUS) {
+                mode = GROUPS;
+            } else {
+                mode = LEVEL;
+            }
+            if (mode != modes[d]) {
+                modes[d] = mode;
+                levelStale[d] = true;
+            }
+        }
+        if (anchorsStale) {
+            anchorsStale = false;
+            Arrays.fill(levelStale, 0, levels, true);
+        }
+
+        //New heads only turn up on stale levels, so the old anchors can stay where they are
+        if (anchorX.length < tree.idBound()) {
+            anchorX = Arrays.copyOf(anchorX, tree.idBound());
+            leafGroup = Arrays.copyOf(leafGroup, tree.idBound());
+        }
+        //Top down, so a bar's parents are always done before it
+        for (int d = 0; d < levels; d++) {
+            if (!levelStale[d]) {
+                continue;
+            }
+            levelStale[d] = false;
+            for (int n = tree.levelFirst(d); n != HydraTree.NONE; n = tree.levelNext(n)) {
+                int p = tree.parent(n);
+                leafGroup[n] = true;
+                for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                    if (tree.childCount(c) > 0) {
+                        leafGroup[n] = false;
+                        break;
+                    }
+                }
+                if (modes[d] == HEADS || p == HydraTree.NONE) {
+                    anchorX[n] = layout.x(n);
+                } else if (modes[d] == GROUPS) {
+                    //Siblings share the middle of their group
+                    anchorX[n] = (layout.x(tree.firstChild(p)) + layout.x(tree.lastChild(p))) / 2;
+                } else {
+                    //On a bar, each head sits in the column under its parent
+                    anchorX[n] = anchorX[p];
+                }
+            }
+            //Heads on a bar sit under their parents, so if this level moved, a bar below it moves too
+            if (d + 1 < levels && modes[d + 1] == LEVEL) {
+                levelStale[d + 1] = true;
+            }
+        }
+    }
+
+    /*
+     * Relationship lines go behind the Hydra heads, so they are drawn first.
+     * Along a row, both ends of the lines only ever move right (children and parents are both in left to
+     * right order), so the lines that reach the screen are one run of the row, found by binary search.
+     */
+    private int drawLines(HydraTree tree, GraphicsContext gc) {
+        gc.setStroke(CSS.hydraRelationshipColor);
+        gc.setLineWidth(1);
+        int drawn = 0;
+        for (int d = 1; d < hits.rowCount(); d++) {
+            double childY = view.toScreenY(hits.rowY(d)), parentY = view.toScreenY(hits.rowY(d - 1));
+            if (hits.rowSize(d) == 0 || Math.max(childY, parentY) < 0 || Math.min(childY, parentY) > canvas.getHeight()) {
+                continue;
+            }
+            int i = firstLineReaching(tree, d, view.left());
+            while (i < hits.rowSize(d)) {
+                int n = hits.rowHead(d, i);
+                int p = tree.parent(n);
+                if (Math.min(anchorX[n], anchorX[p]) > view.right()) {
+                    break;
+                }
+                gc.strokeLine(view.toScreenX(anchorX[p]), parentY, view.toScreenX(anchorX[n]), childY);
+                drawn++;
+                //Squashed heads share a line with their siblings, so skip every head drawn at this spot
+                i = modes[d] == HEADS ? i + 1 : firstAnchorPast(d, i + 1, anchorX[n]);
+            }
+        }
+        return drawn;
+    }
+
+    private int drawHeads(HydraTree tree, GraphicsContext gc) {
+        double scale = view.scale();
+        double ry = layout.radiusY() * scale;
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        int drawn = 0;
+
+        for (int d = 0; d < hits.rowCount(); d++) {
+            int size = hits.rowSize(d);
+            double y = view.toScreenY(hits.rowY(d));
+            if (size == 0 || y + ry < 0 || y - ry > canvas.getHeight()) {
+                continue;
+            }
+            double rx = layout.radiusX(d);
+            if (modes[d] == HEADS) {
+                for (int i = hits.firstFrom(d, view.left() - rx); i < size && hits.rowX(d, i) - rx <= view.right(); i++) {
+                    int n = hits.rowHead(d, i);
+                    gc.setFill(tree.canBeChopped(n) ? CSS.clickableHydraNode : CSS.unClickableHydraNode);
+                    gc.fillOval(view.toScreenX(hits.rowX(d, i) - rx), y - ry, rx * 2 * scale, ry * 2);
+                    drawn++;
+                }
+            } else if (modes[d] == GROUPS) {
+                //One glyph for each group of siblings, jumping from group to group
+                int i = hits.firstFrom(d, view.left() - rx);
+                while (i < size && hits.rowX(d, i) - rx <= view.right()) {
+                    int p = tree.parent(hits.rowHead(d, i));
+                    double last = layout.x(tree.lastChild(p));
+                    drawGlyph(gc, view.toScreenX(layout.x(tree.firstChild(p)) - rx), view.toScreenX(last + rx), y, ry, tree.childCount(p), leafGroup[p]);
+                    drawn++;
+                    i = Math.max(i + 1, hits.firstFrom(d, Math.nextUp(last)));
+                }
+            } else {
+                //One bar for the whole level
+                double left = hits.rowX(d, 0) - rx;
+                double right = hits.rowX(d, size - 1) + rx;
+                if (right >= view.left() && left <= view.right()) {
+                    drawGlyph(gc, view.toScreenX(left), view.toScreenX(right), y, ry, layout.levelSize(d), layout.parentCount(d) == 0);
+                    drawn++;
+                }
+            }
+        }
+        return drawn;
+    }
+
+    //First index on row d whose line to its parent reaches x (in the world), or rowSize(d)
+    private int firstLineReaching(HydraTree tree, int d, double x) {
+        int lo = 0, hi = hits.rowSize(d);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int n = hits.rowHead(d, mid);
+            if (Math.max(anchorX[n], anchorX[tree.parent(n)]) < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    //First index on row d, from from on, whose anchor is right of x (anchors only go right along a row)
+    private int firstAnchorPast(int d, int from, double x) {
+        int lo = from, hi = hits.rowSize(d);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (anchorX[hits.rowHead(d, mid)] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * A rounded bar standing in for count heads, green if they can all be chopped.
+     * Zoomed in, it can be far wider than the screen, so only the part on screen is drawn (with the count in
+     * the middle of that part).
+     */
+    private void drawGlyph(GraphicsContext gc, double left, double right, double centerY, double ry, int count, boolean leaves) {
+        left = Math.max(left, -ry);
+        right = Math.min(right, canvas.getWidth() + ry);
+        double width = Math.max(right - left, MIN_RADIUS * 2);
+        gc.setFill(leaves ? CSS.clickableHydraNode : CSS.unClickableHydraNode);
+        gc.fillRoundRect(left, centerY - ry, width, ry * 2, ry, ry);
+        if (width >= MIN_LABEL_WIDTH) {
+            gc.setFill(CSS.hydraRelationshipColor);
+            gc.fillText("\u00d7" + count, left + width / 2, centerY, width);
+        }
+    }
+
+    //Find the head under the mouse and chop it. Squashed heads can't be clicked, and neither can the end of a drag.
+    @Override
+    public void handle(MouseEvent event) {
+        if (shown == null || painted == null || !event.isStillSincePress()) {
+            return;
+        }
+        //An old tidy frame may have heads that are gone by now
+        if (background != null && paintedVersion != background.requested()) {
+            return;
+        }
+        int head = hits.headAt(view.toWorldX(event.getX()), view.toWorldY(event.getY()));
+        if (head != HydraTree.NONE && modes[painted.depth(head)] == HEADS) {
+            shown.nodeAt(head).handle(event);
+        }
+    }
+}
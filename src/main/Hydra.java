@@ -1,35 +1,72 @@
 package main;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.stage.FileChooser;
+import main.engine.AutoPlayer;
+import main.engine.ChopDelta;
+import main.engine.HydraDump;
+import main.engine.HydraEvents;
+import main.engine.HydraFormat;
+import main.engine.HydraHistory;
+import main.engine.HydraImporter;
+import main.engine.HydraSession;
+import main.engine.HydraSolver;
+import main.engine.HydraTree;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
-import java.util.Scanner;
 
 
 /*
  * This is my container class for the Hydra displayed on screen.
+ * The heads themselves live in a headless HydraTree, this class is just the game's view of it.
  * This wrapper class accesses a number of protected methods in HydraNode since we are still in the same package.
  */
 @SuppressWarnings("restriction")
 public class Hydra {
-    private HydraNode body = new HydraNode(true);
+    //The game itself (rules, copy count, random) lives in the session, this class just shows it
+    private final HydraSession session = new HydraSession(5, System.nanoTime());
+    private final HydraTree tree = session.tree();
+    //The chops since the Hydra was made (or imported), for undo/redo
+    private final HydraHistory history = new HydraHistory(tree);
+    private final HydraNode body;
     protected HydraGame gameInstance;
 
+    //What changed since the game last drew us
+    private final ChopDelta changes = new ChopDelta();
+
+    //Chopping away in the background (null when we aren't auto-playing)
+    private AutoPlayer autoPlayer;
+    private static final long AUTO_PLAY_CHECKPOINT_EVERY = 1000000;
+
+    //Looks for the fastest way to win when asked for a hint. Made again when the copy count changes.
+    private HydraSolver solver;
+    private static final int HINT_DEPTH = 2;
+    //Goes up whenever the Hydra changes, so a hint that took too long can tell it's out of date
+    private long edits = 0;
+
     public Hydra(HydraGame instance) {
-        body.gameInstance = instance;
         gameInstance = instance;
-        generteRandomHydra();
+        body = new HydraNode(this, tree.root());
+        changes.invalidate();
     }
 
-    //Just for debugging
+    //Just for debugging. Streams straight to the console and stops after a while, so big Hydras are fine.
     public void print() {
-        System.out.println(body.toString());
+        PrintWriter out = new PrintWriter(System.out);
+        try {
+            new HydraDump().maxNodes(10000).dump(tree, tree.root(), out);
+        } catch (IOException e) {
+            //PrintWriter swallows these
+        }
+        out.flush();
     }
 
     /**
@@ -38,47 +75,192 @@ public class Hydra {
      * So, retVal.get(1) would be 4 if and only if the body has 4 children.
      */
     public ArrayList<Integer> numberOfNodesAtEachIndex() {
-        ArrayList<HydraNode> allNodes = body.getAllNodes();
-        ArrayList<Integer> retVal = new ArrayList<Integer>();
-        //Initialize retVal
-        for (int i = 0; i < allNodes.size(); i++) {
-            retVal.add(0);
-        }
-        //Increment the layers accordingly based on allNodes
-        for (HydraNode h : allNodes) {
-            retVal.set(h.getHeightInTree(), retVal.get(h.getHeightInTree()) + 1);
+        ArrayList<Integer> retVal = new ArrayList<Integer>(tree.height());
+        //The tree already keeps count of every level
+        for (int d = 0; d < tree.height(); d++) {
+            retVal.add(tree.levelSize(d));
         }
-        //We don't care about layers with no nodes on them so we remove them
-        retVal.removeAll(Collections.singleton(0));
 
         return retVal;
     }
 
-    public void drawLines() {
-        body.drawLines();
+    public void randomChop() {
+        //Without this we can run into issues when the game is won because the random throws an error on r.netInt(0)
+        if (tree.choppableCount() == 0 || isAutoPlaying()) {
+            return;
+        }
+
+        //Pick a choppable head and call chop
+        chop(session.randomHead());
     }
 
-    public void randomChop() {
-        //Get all nodes and remove any nodes that can't be chopped
-        ArrayList<HydraNode> nodes = body.getAllNodes();
-        for (int i = nodes.size() - 1; i >= 0; i--) {
-            if (!nodes.get(i).canBeCopped()) {
-                nodes.remove(i);
+    /*Chop a head using the game's copy count. Anything but CHOPPED or DEFEATED means nothing changed, and why.*/
+    protected HydraSession.ChopResult chop(int id) {
+        //The head's spot is gone after the chop, so note it for the history first
+        HydraHistory.Chop chop = tree.canBeChopped(id) ? HydraHistory.chopOf(tree, id, session.copies()) : null;
+        HydraSession.ChopResult result = session.chop(id, changes);
+        if (result == HydraSession.ChopResult.CHOPPED || result == HydraSession.ChopResult.DEFEATED) {
+            history.record(chop);
+            edits++;
+        }
+        return result;
+    }
+
+    /*Take back the last chop. Returns false if there's nothing to undo (or auto-play is going).*/
+    public boolean undo() {
+        if (isAutoPlaying() || !history.undo(tree)) {
+            return false;
+        }
+        edits++;
+        changes.invalidate();
+        return true;
+    }
+
+    /*Do an undone chop again*/
+    public boolean redo() {
+        if (isAutoPlaying() || !history.redo(tree)) {
+            return false;
+        }
+        edits++;
+        changes.invalidate();
+        return true;
+    }
+
+    /*Refuse chops that would grow the Hydra past this many heads (the game never sets one, so it's whatever the tree can hold)*/
+    public void setMaxHeads(int maxHeads) {
+        session.setMaxHeads(maxHeads);
+    }
+
+    /*How many copies grow back per chop (the game keeps this in step with its spinner)*/
+    public void setCopies(int copies) {
+        session.setCopies(copies);
+        solver = null;
+    }
+
+    /*
+     * Look a couple of chops ahead for the head that wins fastest (see HydraSolver), on a background thread,
+     * and show it in the HUD when it's found. Dropped if the Hydra changes before then.
+     */
+    public void hint() {
+        if (isAutoPlaying() || gameWon()) {
+            return;
+        }
+        if (solver == null) {
+            solver = new HydraSolver(session.copies(), HydraSolver.Goal.FASTEST).depth(HINT_DEPTH);
+        }
+        final HydraSolver searching = solver;
+        final HydraTree snapshot = tree.copy();
+        final long asked = edits;
+        gameInstance.showStatus("Hint: thinking...");
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final HydraSolver.Result result = searching.solve(snapshot);
+                final String where = describe(snapshot, result.head());
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (edits != asked || isAutoPlaying()) {
+                            return;
+                        }
+                        gameInstance.showStatus(String.format("Hint: chop %s, then it's dead in at most %s chops",
+                                where, result.chops() == null ? "a huge number of" : result.chops().toString()));
+                        gameInstance.requestRedraw();
+                    }
+                });
             }
+        }, "Hydra hint");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    //Where a head is on screen, in words: which level up and which head from the left
+    private static String describe(HydraTree tree, int head) {
+        int d = tree.depth(head);
+        int fromLeft = 1;
+        for (int n = tree.levelFirst(d); n != head; n = tree.levelNext(n)) {
+            fromLeft++;
         }
+        return "head " + fromLeft + " of " + tree.levelSize(d) + " from the left on level " + d;
+    }
 
-        //Without this we can run into issues when the game is won because the random throws an error on r.netInt(0)
-        if (nodes.size() == 0) {
+    /*
+     * Let a background thread chop random heads (chops of them, or until defeated if chops is 0).
+     * The Hydra on screen only changes when pulse() picks up the worker's progress.
+     */
+    public void startAutoPlay(long chops) {
+        if (autoPlayer != null) {
             return;
         }
+        autoPlayer = new AutoPlayer(tree, session.copies(), chops, session.nextSeed());
+        //Write the run down as it goes, so it can be replayed (java main.engine.ChopJournal replay <file>)
+        Path journal = Paths.get(System.getProperty("java.io.tmpdir"), "hydra-autoplay.journal");
+        try {
+            autoPlayer.journal(journal, AUTO_PLAY_CHECKPOINT_EVERY);
+            gameInstance.showStatus("Auto-play journal: " + journal);
+        } catch (IOException e) {
+            gameInstance.showStatus("Auto-play isn't being journaled: " + e.getMessage());
+        }
+        autoPlayer.start();
+    }
 
-        //Pick a node and call chop
-        Random r = new Random();
-        nodes.get(r.nextInt(nodes.size())).chop();
+    /*Stop auto-playing. The last few chops still show up on the next pulse().*/
+    public void stopAutoPlay() {
+        if (autoPlayer != null) {
+            autoPlayer.stop();
+        }
     }
 
-    private String exportString() {
-        return body.exportString();
+    //Stop auto-playing and throw its progress away
+    private void cancelAutoPlay() {
+        if (autoPlayer != null) {
+            autoPlayer.stop();
+            autoPlayer = null;
+        }
+    }
+
+    public boolean isAutoPlaying() {
+        return autoPlayer != null;
+    }
+
+    //How many chops auto-play has done so far (0 if it isn't running)
+    public long autoPlayChops() {
+        return autoPlayer == null ? 0 : autoPlayer.chopsDone();
+    }
+
+    /*
+     * Call once a frame. Copies the auto-player's latest tree into ours.
+     * Returns true if the Hydra changed (so it needs drawing).
+     */
+    public boolean pulse() {
+        if (autoPlayer == null) {
+            return false;
+        }
+        //Check finished first: once it is set, the final tree has already been published
+        boolean finished = autoPlayer.isFinished();
+        HydraTree snapshot = autoPlayer.takeSnapshot();
+        if (snapshot != null) {
+            tree.moveFrom(snapshot);
+            edits++;
+            changes.invalidate();
+        }
+        if (finished) {
+            if (autoPlayer.failure() != null) {
+                Alert autoPlayIssue = new Alert(AlertType.WARNING);
+                autoPlayIssue.setContentText(autoPlayer.failure().getMessage());
+                autoPlayIssue.setHeaderText("Auto-play stopped after " + autoPlayer.chopsDone() + " chops.");
+                autoPlayIssue.show();
+            }
+            autoPlayer = null;
+            //Auto-play's chops weren't recorded one by one, so history starts over from here
+            history.reset(tree);
+        }
+        return snapshot != null;
+    }
+
+    //Everything that changed since the last time this was cleared
+    public ChopDelta getChanges() {
+        return changes;
     }
 
     //Send the Hydra to a file provided by the user
@@ -86,9 +268,16 @@ public class Hydra {
         try {
             FileChooser getFile = new FileChooser();
             File f = getFile.showSaveDialog(null);
-            PrintWriter pw = new PrintWriter(f);
-            pw.write(exportString());
-            pw.close();
+            HydraEvents.Transfer event = new HydraEvents.Transfer();
+            event.begin();
+            //Binary, so heads with 10+ children survive the trip, and each distinct subtree only once (see HydraFormat)
+            HydraFormat.writeCompact(tree, f.toPath());
+            if (event.shouldCommit()) {
+                event.direction = "export";
+                event.heads = tree.size();
+                event.bytes = Files.size(f.toPath());
+                event.commit();
+            }
         } catch (Exception e) {
             Alert exportIssue = new Alert(AlertType.ERROR);
             exportIssue.setContentText("File not saved.");
@@ -99,18 +288,37 @@ public class Hydra {
 
     }
 
-    //Import Hydra from user file
+    /*Play on with other instead (its storage is taken over, so don't use it afterwards). Undo starts over from here.*/
+    public void load(HydraTree other) {
+        cancelAutoPlay();
+        session.replace(other);
+        edits++;
+        history.reset(tree);
+        changes.invalidate();
+    }
+
+    //Import Hydra from user file (binary or the old digit files)
     public void importHydra() {
+        cancelAutoPlay();
         try {
             FileChooser getFile = new FileChooser();
             File f = getFile.showOpenDialog(null);
-            Scanner s = new Scanner(f);
-            String data = s.nextLine();
-            s.close();
-            generateHydraFromString(data);
+            HydraEvents.Transfer event = new HydraEvents.Transfer();
+            event.begin();
+            HydraImporter.Result imported = HydraImporter.importFile(f.toPath());
+            //The imported tree is thrown away anyway, so take its storage rather than copying it
+            load(imported.tree());
+            if (event.shouldCommit()) {
+                event.direction = "import";
+                event.heads = tree.size();
+                event.bytes = Files.size(f.toPath());
+                event.commit();
+            }
+            gameInstance.showStatus(imported.toString());
+            gameInstance.requestRedraw();
         } catch (Exception e) {
             Alert importIssue = new Alert(AlertType.ERROR);
-            importIssue.setContentText("Nothing imported.");
+            importIssue.setContentText("Nothing imported." + (e.getMessage() == null ? "" : "\n" + e.getMessage()));
             importIssue.setHeaderText("An ERROR occured when importing.");
             importIssue.show();
             System.out.println("ERROR: Nothing imported.");
@@ -118,70 +326,24 @@ public class Hydra {
 
     }
 
-    /*
-     * Move Hydra string from String (char[]) to int[]
-     * Also, Alert the user of an invalid file if non-numerics are found.
-     *
-     * Finally, start recursive call over created int[]
-     */
-    private void generateHydraFromString(String data) {
-        int[] nums = new int[data.length()];
-        try {
-            for (int i = 0; i < nums.length; i++) {
-                nums[i] = Integer.parseInt(data.substring(i, i + 1));
-                System.out.print(" " + nums[i]);
-            }
-            System.out.println();
-        } catch (NumberFormatException e) {
-            Alert a = new Alert(AlertType.ERROR);
-            a.setHeaderText("Error: Invalid File Imported");
-            a.setContentText("Invalid Hydra Import File. Nothing has changed.");
-            a.show();
-            return;
-        }
-
-        body.children.clear();
-        body.generateHydraFromIntArray(nums, 0, 1, 0);
-        gameInstance.drawGame();
-    }
-
-
-    //Pretty straight forward. Randomly add five nodes to a new Hydra
-    private void generteRandomHydra() {
-        //Remove existing children
-        this.body.children.clear();
-
-        int childrenToAdd = 5;
-        Random r = new Random();
-
-        //Attached at least 1 (or at most 5) children to the body
-        //We cannot have a body with zero children. It's impossible.
-        int numberOfNodesConnectedToBody = r.nextInt(5) + 1;
-        for (int i = 0; i < numberOfNodesConnectedToBody; i++) {
-            body.addChild(new HydraNode());
-        }
-
-        //figure out how many children we have left to add
-        childrenToAdd -= numberOfNodesConnectedToBody;
-
-        //Add the rest of them
-        while (childrenToAdd > 0) {
-            //Randomly choose any node (including the body!)
-            ArrayList<HydraNode> allnodes = body.getAllNodes();
-            int index = r.nextInt(allnodes.size());
-            allnodes.get(index).addChild(new HydraNode());
-
-            childrenToAdd--;
-        }
-    }
 
     //The game is one when all the heads are gone!
     public boolean gameWon() {
-        return body.children.size() == 0;
+        return session.isDefeated();
     }
 
     //Just a getter
     public HydraNode getBody() {
         return this.body;
     }
+
+    //The headless tree behind this Hydra
+    public HydraTree getTree() {
+        return this.tree;
+    }
+
+    //A handle onto one head, e.g. to chop the head a click landed on
+    public HydraNode nodeAt(int id) {
+        return new HydraNode(this, id);
+    }
 }
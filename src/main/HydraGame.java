@@ -1,6 +1,9 @@
 package main;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.HPos;
@@ -20,12 +23,12 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.RowConstraints;
 import javafx.scene.layout.VBox;
-import javafx.scene.shape.Ellipse;
 import javafx.scene.shape.Line;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
-
-import java.util.ArrayList;
+import main.engine.ChopDelta;
+import main.engine.HydraEvents;
+import main.engine.HydraMetrics;
 
 /*
  * Main game class
@@ -43,12 +46,38 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
     private Pane hydraCanvasArea = new Pane();
 
     //HUD controls
-    private Button chopButton, exportButton, importButton;
+    private Button chopButton, exportButton, importButton, rendererButton, autoPlayButton;
+    private Label frameTimeLabel;
+    //The metrics overlay (m shows/hides it)
+    private Label metricsLabel;
     public Spinner<Integer> copiesSpinner;
+    private Spinner<Integer> autoPlaySpinner;
+
+    //Auto-play bookkeeping for the chops/second readout
+    private long rateSampleTime = 0, rateSampleChops = 0;
+    private String autoPlayRate = "";
+
+    //One-off news for the HUD, like how fast the last import was
+    private String status = "";
+
+    //Redraws are only asked for (requestRedraw) and then done at most once a frame, in pulse()
+    private boolean redrawPending = false;
+    //For the frame readout: how long the last draw took, and draws vs. requests per second
+    private long lastFrameNanos = 0;
+    private long fpsSampleTime = 0, fpsSampleDraws = 0, fpsSampleRequests = 0, draws = 0, requests = 0;
+    private String frameRate = "";
 
     //Hydra instance
     private Hydra theHydra = new Hydra(this);
 
+    //The ways we know how to draw theHydra, and which one is on screen
+    private HydraRenderer[] renderers = {
+            new HydraScene(hydraCanvasArea, ScreenWidth, ScreenHeight),
+            new CanvasRenderer(hydraCanvasArea, ScreenWidth, ScreenHeight),
+            new CanvasRenderer(hydraCanvasArea, ScreenWidth, ScreenHeight, true)
+    };
+    private int currentRenderer = 0;
+
     public static void main(String[] args) {
         Application.launch("Hydra Battle");
     }
@@ -71,8 +100,9 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
             public void handle(KeyEvent e) {
                 switch (e.getCharacter()) {
                     case "c":
+                        //Held down, this comes faster than frames. Only the last Hydra gets drawn.
                         theHydra.randomChop();
-                        drawGame();
+                        requestRedraw();
                         break;
                     case "+":
                         copiesSpinner.getValueFactory().increment(1);
@@ -86,6 +116,32 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
                     case "i":
                         theHydra.importHydra();
                         break;
+                    case "r":
+                        switchRenderer();
+                        break;
+                    case "a":
+                        toggleAutoPlay();
+                        break;
+                    case "z":
+                        if (theHydra.undo()) {
+                            requestRedraw();
+                        }
+                        break;
+                    case "y":
+                        if (theHydra.redo()) {
+                            requestRedraw();
+                        }
+                        break;
+                    case "m":
+                        toggleMetrics();
+                        break;
+                    case "0":
+                        renderers[currentRenderer].resetView();
+                        break;
+                    case "h":
+                        theHydra.hint();
+                        requestRedraw();
+                        break;
                     default:
                         break;
                 }
@@ -105,15 +161,24 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
         hydraCanvasArea.setStyle(CSS.hyrdaCanvasAreaStyle);
         controlButtonArea.setStyle(CSS.controlButtonAreaStyle);
 
-        drawGame();
+        renderers[currentRenderer].attach();
         setupHUD();
+        requestRedraw();
         greetUser();
+
+        //Once a frame: pick up whatever auto-play has done, and redraw if anything asked for it
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse(now);
+            }
+        }.start();
     }
 
     private void greetUser() {
         Alert greeting = new Alert(AlertType.INFORMATION);
         greeting.setHeaderText("Welcome!");
-        greeting.setContentText("Try to defeat the Hydra!\nInstructions:\n1.) Green nodes are clickable (Red is not)\n2.) You can click on the HUD below or you can use your keyboard (c,+,-,e,i).\n HINT: Holding down c can be quite helpful.\n Good Luck, Warrior!");
+        greeting.setContentText("Try to defeat the Hydra!\nInstructions:\n1.) Green nodes are clickable (Red is not)\n2.) You can click on the HUD below or you can use your keyboard (c,+,-,e,i,r,a).\n z undoes a chop and y redoes it, h asks for a hint, m shows the metrics.\n On the canvas renderers, scroll to zoom, drag to pan and press 0 to see the whole Hydra again.\n HINT: Holding down c can be quite helpful, and a lets the Hydra fight itself.\n Good Luck, Warrior!");
         greeting.show();
     }
 
@@ -135,6 +200,14 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
         copiesSpinner.setValueFactory(new IntegerSpinnerValueFactory(0, Integer.MAX_VALUE, 2, 1));
         controlButtonArea.add(copiesSpinner, 1, 1);
         GridPane.setValignment(copiesSpinner, VPos.TOP);
+        //The Hydra keeps its own copy count, so tell it whenever this changes
+        copiesSpinner.valueProperty().addListener(new ChangeListener<Integer>() {
+            @Override
+            public void changed(ObservableValue<? extends Integer> observable, Integer oldValue, Integer newValue) {
+                theHydra.setCopies(newValue);
+            }
+        });
+        theHydra.setCopies(copiesSpinner.getValue());
 
         Label copiesLabel = new Label("Set number of copies(+/-):");
         controlButtonArea.add(copiesLabel, 1, 0);
@@ -148,75 +221,85 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
         importButton = new Button("Import (i)");
         importButton.setOnAction(this);
         controlButtonArea.add(this.importButton, 2, 1);
+
+        rendererButton = new Button("Switch Renderer (r)");
+        rendererButton.setOnAction(this);
+        controlButtonArea.add(this.rendererButton, 3, 0);
+
+        frameTimeLabel = new Label();
+        controlButtonArea.add(frameTimeLabel, 3, 1);
+        GridPane.setValignment(frameTimeLabel, VPos.TOP);
+
+        autoPlayButton = new Button("Auto-play (a)");
+        autoPlayButton.setOnAction(this);
+        controlButtonArea.add(this.autoPlayButton, 4, 0);
+
+        //How many chops auto-play does. 0 means keep going until the Hydra is defeated.
+        autoPlaySpinner = new Spinner<Integer>();
+        autoPlaySpinner.setValueFactory(new IntegerSpinnerValueFactory(0, Integer.MAX_VALUE, 100000, 1000));
+        controlButtonArea.add(autoPlaySpinner, 4, 1);
+        GridPane.setValignment(autoPlaySpinner, VPos.TOP);
+
+        //Hidden until m is pressed, and takes no room while it is
+        metricsLabel = new Label();
+        metricsLabel.setVisible(false);
+        metricsLabel.setManaged(false);
+        controlButtonArea.add(metricsLabel, 5, 0);
+        GridPane.setRowSpan(metricsLabel, GridPane.REMAINING);
         //<Setup Controls>
     }
 
-    public void drawGame() {
-        //This method gets called whenever we remove a node, so, we clear the screen to start.
-        hydraCanvasArea.getChildren().clear();
-
-        //<Book Keeping>
-        ArrayList<HydraNode> allNodes = theHydra.getBody().getAllNodes();
-        ArrayList<Integer> levels = theHydra.numberOfNodesAtEachIndex();
-        int currentDrawHeight = 0;
-        //</Book Keeping>
-        //Draw one layer of the Hydra at a time until we have an empty layer.
-        do {
-            int nodesDrawn = 0;
-            //Determine dynamic node sizing that changes based on # of nodes and screen size.
-            double nodeWidth = determineNodeWidthRadius(levels.get(currentDrawHeight));
-            double nodeHeight = determineNodeHeightRadius(levels.size());
-            double distanceInbetween = (1 - (((nodeWidth * 2) / ScreenWidth) * levels.get(currentDrawHeight))) / (levels.get(currentDrawHeight) + 1);
-            distanceInbetween = distanceInbetween * this.ScreenWidth;
-
-            for (HydraNode n : allNodes) {
-                //If the HydraNode n is on our current level
-                if (n.getHeightInTree() == currentDrawHeight) {
-                    //Configure a Nodes' Ellipse
-                    Ellipse e = n.getGraphicNode();
-                    e.setRadiusX(nodeWidth);
-                    e.setRadiusY(nodeHeight);
-                    hydraCanvasArea.getChildren().add(e);
-                    if (n.canBeCopped()) {
-                        e.setFill(CSS.clickableHydraNode);
-                    } else {
-                        e.setFill(CSS.unClickableHydraNode);
-                    }
-
-                    //The first node drawn is always special
-                    if (nodesDrawn == 0) {
-                        e.setCenterX(distanceInbetween + e.getRadiusX());
-                    } else {
-                        e.setCenterX((((distanceInbetween) * (nodesDrawn + 1))) + (((nodesDrawn * 2) + 1) * (e.getRadiusX())));
-                    }
-
-                    if (currentDrawHeight == 0) {
-                        e.setCenterY(hydraCanvasArea.getHeight());
-                    } else {
-                        e.setCenterY((this.ScreenHeight * CSS.hydraCanvasHeightMultiple) - ((currentDrawHeight + 1) * ((this.ScreenHeight * CSS.hydraCanvasHeightMultiple) / (levels.size() + 1))));
-                    }
-                    nodesDrawn++;
-                }
-            }
-            currentDrawHeight++;
-        } while (currentDrawHeight < levels.size());
+    /*
+     * Ask for the Hydra to be drawn on the next frame. Asking again before then costs nothing, so call this
+     * after every change instead of drawing straight away: a burst of chops is drawn once.
+     */
+    public void requestRedraw() {
+        redrawPending = true;
+        requests++;
+    }
+
+    /*True if something changed that isn't on screen yet (so what's on screen can't be clicked)*/
+    public boolean isRedrawPending() {
+        return redrawPending;
+    }
 
-        //Draw the relationship lines
-        this.theHydra.drawLines();
+    //Only pulse() calls this. Everything else goes through requestRedraw().
+    private void drawGame() {
+        redrawPending = false;
+        draws++;
+        //Let the renderer patch or redraw based on what changed, and time it so renderers can be compared.
+        HydraEvents.Frame event = new HydraEvents.Frame();
+        event.begin();
+        long start = System.nanoTime();
+        ChopDelta changes = theHydra.getChanges();
+        renderers[currentRenderer].draw(theHydra, changes);
+        changes.clear();
+        long nanos = System.nanoTime() - start;
+        HydraMetrics.global().frame(nanos);
+        if (event.shouldCommit()) {
+            event.renderer = renderers[currentRenderer].getName();
+            event.heads = theHydra.getTree().size();
+            event.commit();
+        }
+        lastFrameNanos = nanos;
+        updateMetrics();
+        updateFrameTime();
 
         //See if the game is won!
         checkForGameWon();
     }
 
-    //Don't ever let the nodes be taller than 20% of the display
-    private double determineNodeHeightRadius(int size) {
-        double retVal = (ScreenHeight * CSS.hydraCanvasHeightMultiple) / ((size + 2) * 2);
-
-        if (retVal > ScreenHeight * .05) {
-            return this.ScreenHeight * .05;
+    //The HUD line under the renderer button: last frame time, frame rate, auto-play and status
+    private void updateFrameTime() {
+        if (frameTimeLabel != null) {
+            double millis = lastFrameNanos / 1e6;
+            frameTimeLabel.setText(String.format("%s: %.2f ms for %d heads%s", renderers[currentRenderer].getName(), millis, theHydra.getTree().size(), frameRate + autoPlayRate + status));
         }
+    }
 
-        return retVal;
+    //Show a line of text under the frame time (until the next call)
+    public void showStatus(String message) {
+        status = "\n" + message;
     }
 
     //Congratulate the user on a job well done
@@ -227,8 +310,80 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
             gameWon.setHeaderText("Hydra Defeated!");
             gameWon.show();
             theHydra = new Hydra(this);
+            theHydra.setCopies(copiesSpinner.getValue());
+            requestRedraw();
+        }
+    }
+
+    //Start auto-play, or stop it if it's already going
+    private void toggleAutoPlay() {
+        if (theHydra.isAutoPlaying()) {
+            theHydra.stopAutoPlay();
+        } else {
+            rateSampleTime = 0;
+            theHydra.startAutoPlay(autoPlaySpinner.getValue());
+        }
+    }
+
+    //Called every frame by the AnimationTimer. The only place the Hydra gets drawn.
+    private void pulse(long now) {
+        if (theHydra.isAutoPlaying()) {
+            //Update the chops/second about twice a second
+            long chops = theHydra.autoPlayChops();
+            if (rateSampleTime == 0) {
+                rateSampleTime = now;
+                rateSampleChops = chops;
+            } else if (now - rateSampleTime >= 500000000L) {
+                double perSecond = (chops - rateSampleChops) * 1e9 / (now - rateSampleTime);
+                autoPlayRate = String.format("\nAuto-play: %d chops, %.0f chops/s", chops, perSecond);
+                rateSampleTime = now;
+                rateSampleChops = chops;
+                updateMetrics();
+            }
+            if (theHydra.pulse()) {
+                requestRedraw();
+            }
+        }
+        if (redrawPending) {
             drawGame();
         }
+
+        //Frames drawn vs. redraws asked for, about twice a second (the difference is what got skipped)
+        if (fpsSampleTime == 0) {
+            fpsSampleTime = now;
+        } else if (now - fpsSampleTime >= 500000000L) {
+            double seconds = (now - fpsSampleTime) / 1e9;
+            String rate = String.format("\n%.0f fps, %.0f redraws asked for/s", (draws - fpsSampleDraws) / seconds, (requests - fpsSampleRequests) / seconds);
+            fpsSampleTime = now;
+            fpsSampleDraws = draws;
+            fpsSampleRequests = requests;
+            if (!rate.equals(frameRate)) {
+                frameRate = rate;
+                updateFrameTime();
+            }
+        }
+    }
+
+    //Show or hide the metrics overlay
+    private void toggleMetrics() {
+        boolean show = !metricsLabel.isVisible();
+        metricsLabel.setVisible(show);
+        metricsLabel.setManaged(show);
+        updateMetrics();
+    }
+
+    //Refresh the metrics overlay, if anyone is looking at it
+    private void updateMetrics() {
+        if (metricsLabel != null && metricsLabel.isVisible()) {
+            metricsLabel.setText(HydraMetrics.global().snapshot().toString());
+        }
+    }
+
+    //Move on to the next renderer and draw the same Hydra with it
+    private void switchRenderer() {
+        currentRenderer = (currentRenderer + 1) % renderers.length;
+        renderers[currentRenderer].attach();
+        requestRedraw();
     }
 
     //Outside classes can pass in things to be drawn on screen, like relationship lines.
@@ -240,28 +395,21 @@ public class HydraGame extends Application implements EventHandler<ActionEvent>
         }
     }
 
-    //Just an off-site calculation to help break up complicated graphics calculations
-    private double determineNodeWidthRadius(int numNodes) {
-        double retVal = ScreenWidth / ((numNodes + 1) * 2);
-
-        if (retVal > (ScreenWidth * .075)) {
-            return ScreenWidth * .075;
-        }
-
-        return retVal;
-    }
-
     //Determine which button was clicked and handle it accordingly
     @Override
     public void handle(ActionEvent e) {
         if (e.getSource().equals(this.chopButton)) {
             theHydra.randomChop();
-            this.drawGame();
+            this.requestRedraw();
         } else if (e.getSource().equals(this.exportButton)) {
             theHydra.exportHydra();
         } else if (e.getSource().equals(this.importButton)) {
+            //importHydra() asks for its own redraw
             theHydra.importHydra();
-            this.drawGame();
+        } else if (e.getSource().equals(this.rendererButton)) {
+            switchRenderer();
+        } else if (e.getSource().equals(this.autoPlayButton)) {
+            toggleAutoPlay();
         }
     }
 }
@@ -5,235 +5,240 @@ import javafx.event.EventHandler;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.shape.Ellipse;
-import javafx.scene.shape.Line;
+import main.engine.HydraDump;
+import main.engine.HydraEvents;
+import main.engine.HydraSession;
+import main.engine.HydraTree;
+import main.engine.HydraVisitor;
 
 import java.util.ArrayList;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /*
- * HydraNode is the basis of my Hydra data structure.
- * It's responsible for:
- * 	1.) Child/parent data
- * 	2.) The Ellipse class that displays on screen
- * 	3.) It handles its' own clicking functionality
- * 	4.) It chops itself
+ * HydraNode is a thin handle onto one head of a headless HydraTree.
+ * The tree does all the real work (child/parent data, chopping, re-growth); this class is responsible for:
+ * 	1.) Giving the rest of the game an object to pass around for a head
+ * 	2.) It handles its' own clicking functionality
+ * 	3.) It chops itself (and yells at the user if it can't)
  */
 @SuppressWarnings({"restriction", "serial"})
 public final class HydraNode extends ActionEvent implements Cloneable, EventHandler<MouseEvent> {
-    /*A list of all children a given node my have.*/
-    protected ArrayList<HydraNode> children = new ArrayList<HydraNode>();
+    /*The tree this head lives in, and which slot of that tree is ours*/
+    private HydraTree tree;
+    private int id;
 
-    /**
-     * This boolean is a fail-safe that ensures we never try to add the body of our main.hydra as a child to another node.
-     **/
-    private boolean isHydraBody = false;
-
-    /*Just keeping track of our parent (null if this node is the body)*/
-    private HydraNode parent = null;
-
-    /*What display's on screen*/
-    private Ellipse graphicalNode = new Ellipse();
+    /*The Hydra we belong to (null for a stand-alone head)*/
+    private Hydra hydra;
 
     /*Just the game instance. Used to tell the game to re-draw and such*/
     protected HydraGame gameInstance;
 
-    /*Book keeping that helps with drawing the tree dynamically*/
-    private int heightInTree = -1;
-
+    /*A stand-alone head (or body) living in its own little tree*/
     public HydraNode(boolean isHydraBody) {
-        this.isHydraBody = isHydraBody;
-        if (isHydraBody) {
-            heightInTree = 0;
-        }
-        graphicalNode.setOnMouseClicked(this);
+        this.tree = new HydraTree(isHydraBody);
+        this.id = tree.root();
     }
 
     //If no boolean is given for isHydraBody, we assume it to be false
     public HydraNode() {
-        graphicalNode.setOnMouseClicked(this);
+        this(false);
+    }
+
+    /*A handle onto a head of a Hydra*/
+    HydraNode(Hydra hydra, int id) {
+        this(hydra.getTree(), id, hydra.gameInstance);
+        this.hydra = hydra;
+    }
+
+    private HydraNode(HydraTree tree, int id, HydraGame gameInstance) {
+        this.tree = tree;
+        this.id = id;
+        this.gameInstance = gameInstance;
     }
 
     public boolean isHydraBody() {
-        return isHydraBody;
+        return tree.isBody(id);
     }
 
-    /*Add a given node if and only if it is not a main.hydra body*/
+    /**
+     * Add a given node if and only if it is not a main.hydra body.
+     * The node (and everything under it) is moved into our tree and n is updated to point at its new home.
+     * Handles to n's old children are not updated, so hang on to n rather than to them.
+     **/
     public void addChild(HydraNode n) {
         if (n.isHydraBody())
             throw new UnsupportedOperationException("HydraNode cannot have a body as a child.");
+        if (n.tree.parent(n.id) != HydraTree.NONE)
+            throw new UnsupportedOperationException("HydraNode already has a parent.");
 
         // Give the child everything it needs to know
-        this.children.add(n);
-        n.parent = this;
+        n.id = tree.graft(n.tree, n.id, id);
+        n.tree = tree;
+        n.hydra = hydra;
         n.gameInstance = gameInstance;
-        n.heightInTree = this.heightInTree + 1;
     }
 
     /*Returns true if this node can be chopped (Not a body and has no children)*/
     public boolean canBeCopped() {
-        return !isHydraBody && children.size() == 0;
+        return tree.canBeChopped(id);
     }
 
     /**
-     * If the node can be chopped, do so. Otherwise, yell at the user.
+     * If the node can be chopped, do so. Otherwise, yell at the user (about whatever was wrong).
      **/
-    protected void chop() {
-        if (canBeCopped()) {
-            if (parent.isHydraBody()) {
-                //No re-growth occurs for nodes connected to the body
-                parent.deleteChild(this);
-            } else {
-                parent.deleteChild(this);
-                //To re-grow, we clone the parent subtree and add it to its' respective parent n times
-                for (int i = 0; i < this.gameInstance.copiesSpinner.getValue(); i++) {
-                    parent.parent.addChild(parent.clone());
-                }
-                //If a node is being chopped it no longer has a parent (Orphan)
-                //This helps with debugging
-                this.parent = null;
-            }
-        } else {
-            Alert cannotBeChoppedWarning = new Alert(AlertType.WARNING);
-            cannotBeChoppedWarning.setContentText("Be careful where you click!");
-            cannotBeChoppedWarning.setHeaderText("WARNING: Only nodes without children can be chopped.");
-            cannotBeChoppedWarning.show();
+    public void chop() {
+        HydraSession.ChopResult result = hydra != null ? hydra.chop(id) : chopAlone(this.gameInstance.copiesSpinner.getValue());
+        String header, content;
+        switch (result) {
+            case NOT_CHOPPABLE:
+                header = "WARNING: Only nodes without children can be chopped.";
+                content = "Be careful where you click!";
+                break;
+            case TOO_BIG:
+                header = "WARNING: That chop would grow the Hydra too big.";
+                content = "Try a head with fewer neighbours, or fewer copies.";
+                break;
+            case NO_SUCH_HEAD:
+                header = "WARNING: That head is already gone.";
+                content = "It was chopped before your click got to it.";
+                break;
+            default:
+                return;
         }
+        Alert cannotBeChoppedWarning = new Alert(AlertType.WARNING);
+        cannotBeChoppedWarning.setContentText(content);
+        cannotBeChoppedWarning.setHeaderText(header);
+        cannotBeChoppedWarning.show();
     }
 
-    private void deleteChild(HydraNode n) {
-        children.remove(n);
+    //Chop straight on the tree when there's no Hydra (and so no session) around this head
+    private HydraSession.ChopResult chopAlone(int copies) {
+        if (!tree.isLive(id)) {
+            return HydraSession.ChopResult.NO_SUCH_HEAD;
+        }
+        if (!tree.canBeChopped(id)) {
+            return HydraSession.ChopResult.NOT_CHOPPABLE;
+        }
+        if (!tree.admits(id, copies, HydraTree.MAX_CAPACITY)) {
+            return HydraSession.ChopResult.TOO_BIG;
+        }
+        tree.chop(id, copies);
+        return tree.childCount(tree.root()) == 0 ? HydraSession.ChopResult.DEFEATED : HydraSession.ChopResult.CHOPPED;
     }
 
 
     //This isn't very pretty but it helps with resolving relationship issues (Like Dr. Phil for HydraNodes!)
-    //I pass the ** to my helper method so that if the body has two children and one of those children has one child,
-
     /**
-     * You get something like this: (I'm taking some indentation inspiration from HTML)
-     * Me(Body)
-     * **CHILD
-     * ****ME
-     * ****CHild</me>
-     * **Child</me>
+     * One line per head, indented two spaces per level, e.g.
+     * Body [2]
+     *   Head [1]
+     *     Head
+     *   Head
+     * Runs of identical siblings are written once (see HydraDump, which also does JSON and DOT).
      */
     @Override
     public String toString() {
-        return toString("**");
+        return new HydraDump().toString(tree, id);
     }
 
-    //See above comments. The delimiter is doubled each time we go up in the tree.
-    private String toString(String delimetter) {
-        String retVal = "ME";
-        if (isHydraBody) {
-            retVal += "(Body)";
-        }
-
-        for (HydraNode c : children) {
-            retVal += "\n" + delimetter + "-CHILD";
-            retVal += "\n    -" + c.toString(delimetter + delimetter);
-        }
-        retVal += "<me>";
-        return retVal;
-    }
-
-    //This is what empowers the re-growth feature.
+    //Returns a stand-alone copy of this head and everything under it.
     @Override
     public HydraNode clone() {
-        //Make our shallow copy to keep primitives.
-        HydraNode retVal = (HydraNode) super.clone();
-
-        //Make copies of our children
-        retVal.children = new ArrayList<HydraNode>();
-        for (HydraNode n : this.children) {
-            retVal.addChild(n.clone());
+        HydraEvents.Clone event = new HydraEvents.Clone();
+        event.begin();
+        HydraNode retVal = new HydraNode(isHydraBody());
+        for (int c = tree.firstChild(id); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+            retVal.tree.graft(tree, c, retVal.id);
+        }
+        retVal.gameInstance = gameInstance;
+        if (event.shouldCommit()) {
+            event.heads = retVal.tree.size();
+            event.commit();
         }
-
-        //Make sure our clone doesn't point at the same things on screen.
-        retVal.graphicalNode = new Ellipse();
-
-        //make sure I don't get called if my clone is clicked (We don't care)
-        retVal.graphicalNode.setOnMouseClicked(retVal);
-
         return retVal;
     }
 
     //Just a getter.
     public int getHeightInTree() {
-        return isHydraBody ? 0 : this.heightInTree;
+        return tree.depth(id);
     }
 
-    public Ellipse getGraphicNode() {
-        return this.graphicalNode;
+    //Which slot of the tree this head lives in
+    public int getId() {
+        return id;
     }
 
-    //Recursively build a list of all nodes in our tree.
+    //Build a list of all nodes in our tree. Handy for tests and such, but stream() doesn't need the list.
     public ArrayList<HydraNode> getAllNodes() {
-        ArrayList<HydraNode> retVal = new ArrayList<HydraNode>();
-        retVal.add(this);
-        for (HydraNode n : children) {
-            retVal.addAll(n.getAllNodes());
-        }
-        return retVal;
+        return stream().collect(Collectors.toCollection(ArrayList<HydraNode>::new));
+    }
+
+    /*Every head under (and including) this one, in pre-order. Nothing is collected up front.*/
+    public Stream<HydraNode> stream() {
+        return tree.nodes(id).mapToObj(handles());
+    }
+
+    /*Same as stream(), but the subtree is split up between threads*/
+    public Stream<HydraNode> parallelStream() {
+        return tree.nodes(id).parallel().mapToObj(handles());
+    }
+
+    //Turns ids from our tree into handles that know the same Hydra and game as we do
+    private IntFunction<HydraNode> handles() {
+        return new IntFunction<HydraNode>() {
+            @Override
+            public HydraNode apply(int n) {
+                HydraNode node = new HydraNode(tree, n, gameInstance);
+                node.hydra = hydra;
+                return node;
+            }
+        };
     }
 
     //If I'm clicked, call chop and tell the game to update accordingly.
     @Override
     public void handle(MouseEvent event) {
-        chop();
-        gameInstance.drawGame();
-    }
-
-    //Recursively draw relationship lines in the game
-    protected void drawLines() {
-        if (!isHydraBody()) {
-            Line line = new Line();
-            line.setStroke(CSS.hydraRelationshipColor);
-            line.setStartX(parent.graphicalNode.getCenterX());
-            line.setStartY(parent.graphicalNode.getCenterY());
-            line.setEndX(this.graphicalNode.getCenterX());
-            line.setEndY(this.graphicalNode.getCenterY());
-            this.gameInstance.addGraphicalNode(line);
-        }
-        for (HydraNode n : children) {
-            n.drawLines();
+        //Hands off while the Hydra is playing itself, or if the screen is behind (the head may be gone)
+        if ((hydra != null && hydra.isAutoPlaying()) || gameInstance.isRedrawPending()) {
+            return;
         }
+        chop();
+        gameInstance.requestRedraw();
     }
 
     //Generate String that can be imported/exported for current subTree
     public String exportString() {
-        String retVal = "";
-        if (isHydraBody) {
-            retVal += "" + this.children.size();
-        }
-        for (HydraNode n : children) {
-            retVal += n.children.size();
+        final StringBuilder retVal = new StringBuilder();
+        if (tree.isBody(id)) {
+            retVal.append(tree.childCount(id));
         }
-        for (HydraNode n : children) {
-            retVal += n.exportString();
-        }
-        return retVal;
+        //Each head lists how many children each of its children has, parents before children
+        tree.walk(id, new HydraVisitor() {
+            @Override
+            public boolean enter(int node) {
+                for (int c = tree.firstChild(node); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                    retVal.append(tree.childCount(c));
+                }
+                return true;
+            }
+        });
+        return retVal.toString();
     }
 
-    /*
-     * Recursive call to re-create an imported Hydra
-     * nums: values imported from text file
-     * rootIndex: where "this" is located in the array.
-     * startIndex: where the first child is located
-     * */
-    protected void generateHydraFromIntArray(int[] nums, int rootIndex, int startIndex, int sum) {
-        //Loop through my (this) entry in the array
-        for (int i = 0; i < nums[rootIndex]; i++) {
-            //Add a child of mine
-            HydraNode importedNode = new HydraNode();
-            this.addChild(importedNode);
-            //Some book-keeping
-            sum += nums[i];
-            //Don't make a call to a child if it has no children
-            if (nums[startIndex + i] == 0) {
-                continue;
-            }
-            //Make a call to the children to add their possible children
-            importedNode.generateHydraFromIntArray(nums, startIndex + i, sum + 1, sum);
+    //Two handles are the same head if they point at the same slot of the same tree
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof HydraNode)) {
+            return false;
         }
+        HydraNode other = (HydraNode) o;
+        return other.tree == tree && other.id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(tree) * 31 + id;
     }
 }
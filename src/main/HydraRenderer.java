@@ -0,0 +1,20 @@
+package main;
+
+import main.engine.ChopDelta;
+
+/*
+ * Something that can put a Hydra on the canvas area. The game can switch between these at any time.
+ */
+public interface HydraRenderer {
+    /*Shown in the HUD so we know which one we are looking at*/
+    String getName();
+
+    /*Take over the canvas area. The next draw must not assume anything is already on screen.*/
+    void attach();
+
+    /*Draw the Hydra. changes says what happened since the last draw, renderers are free to ignore it.*/
+    void draw(Hydra hydra, ChopDelta changes);
+
+    /*Zoom all the way back out, if this renderer zooms at all*/
+    void resetView();
+}
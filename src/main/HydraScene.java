@@ -0,0 +1,235 @@
+package main;
+
+import javafx.event.EventHandler;
+import javafx.scene.Node;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Line;
+import main.engine.ChopDelta;
+import main.engine.HitIndex;
+import main.engine.HydraEvents;
+import main.engine.HydraTree;
+import main.engine.LevelLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Keeps the scene graph in step with a Hydra.
+ * Every head gets one Ellipse and (unless it is the body) one Line to its parent. The Line's ends are bound
+ * to the Ellipses' centers, so moving a head drags its lines along for free.
+ * After a chop we only add/remove/restyle the heads the chop touched and move the levels that changed,
+ * instead of clearing the whole canvas and starting over.
+ * Clicks are caught once, on the canvas, and looked up in a HitIndex instead of every Ellipse handling its own.
+ */
+@SuppressWarnings("restriction")
+public class HydraScene implements HydraRenderer, EventHandler<MouseEvent> {
+    private final Pane canvas;
+    private final LevelLayout layout;
+
+    //What displays on screen for each head, indexed by the head's id in the tree
+    private Ellipse[] heads = new Ellipse[0];
+    private Line[] lines = new Line[0];
+    //Where the heads are, for clicks
+    private final HitIndex hits = new HitIndex();
+
+    //The Hydra currently on screen
+    private Hydra shown;
+    private int levelCount = 0;
+
+    public HydraScene(Pane canvas, double screenWidth, double screenHeight) {
+        this.canvas = canvas;
+        this.layout = new LevelLayout(screenWidth, screenHeight * CSS.hydraCanvasHeightMultiple);
+    }
+
+    @Override
+    public String getName() {
+        return "Scene graph";
+    }
+
+    @Override
+    public void attach() {
+        canvas.getChildren().clear();
+        canvas.setOnMouseClicked(this);
+        //Forget what was on screen so the next draw starts from scratch
+        shown = null;
+    }
+
+    //A shape per head can't be zoomed cheaply, so this one always shows the whole Hydra
+    @Override
+    public void resetView() {
+    }
+
+    @Override
+    public void draw(Hydra hydra, ChopDelta changes) {
+        if (changes.isIncremental() && isShowing(hydra)) {
+            apply(changes);
+        } else {
+            rebuild(hydra);
+        }
+    }
+
+    //Is this exact Hydra already on screen (so deltas for it can be applied)?
+    public boolean isShowing(Hydra hydra) {
+        return shown == hydra;
+    }
+
+    /*Throw everything away and draw the Hydra from scratch*/
+    public void rebuild(Hydra hydra) {
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("scene rebuild");
+        if (shown != hydra) {
+            //A different Hydra, so start with fresh shapes
+            heads = new Ellipse[0];
+            lines = new Line[0];
+            shown = hydra;
+        }
+        canvas.getChildren().clear();
+
+        HydraTree tree = hydra.getTree();
+        ArrayList<Node> ellipses = new ArrayList<Node>(tree.size());
+        ArrayList<Node> relationships = new ArrayList<Node>(tree.size());
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            ellipses.add(styleHead(tree, n));
+            if (n != tree.root()) {
+                relationships.add(connect(tree, n));
+            }
+        }
+        //Relationship lines go behind the Hydra heads.
+        canvas.getChildren().addAll(relationships);
+        canvas.getChildren().addAll(ellipses);
+        phase.end(tree.size());
+
+        levelCount = 0;
+        relayout(tree, null);
+        phase = HydraEvents.RenderPhase.start("hit index");
+        hits.rebuild(tree, layout);
+        phase.end(tree.size());
+    }
+
+    /*Patch the screen with what a single chop changed*/
+    public void apply(ChopDelta delta) {
+        HydraTree tree = shown.getTree();
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("scene patch");
+        boolean[] touchedLevels = new boolean[levelCount + 1];
+
+        //Gone heads first: their ids may already belong to regrown heads
+        for (int i = 0; i < delta.removedCount(); i++) {
+            int id = delta.removed(i);
+            canvas.getChildren().remove(heads[id]);
+            canvas.getChildren().remove(lines[id]);
+            touchedLevels = touch(touchedLevels, delta.removedDepth(i));
+        }
+
+        //Regrown subtrees get shapes (re-used if the id had one before)
+        ArrayList<Node> ellipses = new ArrayList<Node>();
+        ArrayList<Node> relationships = new ArrayList<Node>();
+        for (int i = 0; i < delta.regrownCount(); i++) {
+            int root = delta.regrown(i);
+            for (int n = root; n != HydraTree.NONE; n = tree.preOrderNext(n, root)) {
+                ellipses.add(styleHead(tree, n));
+                relationships.add(connect(tree, n));
+                touchedLevels = touch(touchedLevels, tree.depth(n));
+            }
+        }
+        canvas.getChildren().addAll(0, relationships);
+        canvas.getChildren().addAll(ellipses);
+
+        //Parents that just lost their last head can now be clicked
+        for (int i = 0; i < delta.flippedCount(); i++) {
+            styleHead(tree, delta.flipped(i));
+        }
+        phase.end(tree.size());
+
+        relayout(tree, touchedLevels);
+        phase = HydraEvents.RenderPhase.start("hit index");
+        hits.update(tree, layout, delta);
+        phase.end(tree.size());
+    }
+
+    //Find the head under the mouse and chop it
+    @Override
+    public void handle(MouseEvent event) {
+        if (shown == null) {
+            return;
+        }
+        int head = hits.headAt(event.getX(), event.getY());
+        if (head != HydraTree.NONE) {
+            shown.nodeAt(head).handle(event);
+        }
+    }
+
+    /*Position every head on the levels marked in touched (or every level if touched is null)*/
+    private void relayout(HydraTree tree, boolean[] touched) {
+        HydraEvents.RenderPhase phase = HydraEvents.RenderPhase.start("layout");
+        layout.layout(tree, canvas.getHeight());
+        //Node heights depend on how many levels there are, so if that changed every level moves
+        if (layout.levelCount() != levelCount) {
+            touched = null;
+            levelCount = layout.levelCount();
+        }
+
+        double nodeHeight = layout.radiusY();
+        for (int d = 0; d < tree.height(); d++) {
+            if (touched != null && (d >= touched.length || !touched[d])) {
+                continue;
+            }
+            for (int n = tree.levelFirst(d); n != HydraTree.NONE; n = tree.levelNext(n)) {
+                Ellipse e = heads[n];
+                e.setRadiusX(layout.radiusX(d));
+                e.setRadiusY(nodeHeight);
+                e.setCenterX(layout.x(n));
+                e.setCenterY(layout.y(n));
+            }
+        }
+        phase.end(tree.size());
+    }
+
+    //Mark a level (and grow the array if a chop made the Hydra taller)
+    private static boolean[] touch(boolean[] touched, int level) {
+        if (level < 0) {
+            return touched;
+        }
+        if (level >= touched.length) {
+            touched = Arrays.copyOf(touched, level + 1);
+        }
+        touched[level] = true;
+        return touched;
+    }
+
+    //The Ellipse for a head, coloured by whether it can be chopped
+    private Ellipse styleHead(HydraTree tree, int id) {
+        if (id >= heads.length) {
+            heads = Arrays.copyOf(heads, Math.max(id + 1, heads.length * 2));
+        }
+        if (heads[id] == null) {
+            heads[id] = new Ellipse();
+        }
+        Ellipse e = heads[id];
+        if (tree.canBeChopped(id)) {
+            e.setFill(CSS.clickableHydraNode);
+        } else {
+            e.setFill(CSS.unClickableHydraNode);
+        }
+        return e;
+    }
+
+    //The relationship line from a head to its parent. Its ends follow the two Ellipses around.
+    private Line connect(HydraTree tree, int id) {
+        if (id >= lines.length) {
+            lines = Arrays.copyOf(lines, Math.max(id + 1, lines.length * 2));
+        }
+        if (lines[id] == null) {
+            lines[id] = new Line();
+            lines[id].setStroke(CSS.hydraRelationshipColor);
+        }
+        Line line = lines[id];
+        Ellipse parent = heads[tree.parent(id)];
+        Ellipse child = heads[id];
+        line.startXProperty().bind(parent.centerXProperty());
+        line.startYProperty().bind(parent.centerYProperty());
+        line.endXProperty().bind(child.centerXProperty());
+        line.endYProperty().bind(child.centerYProperty());
+        return line;
+    }
+}
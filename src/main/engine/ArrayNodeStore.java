@@ -0,0 +1,62 @@
+package main.engine;
+
+import java.util.Arrays;
+
+/*
+ * NodeStore on the Java heap, in int[] chunks. Growing just adds a chunk, nothing is ever copied.
+ * Int arrays hold no references, so the GC never scans them, but they still count against -Xmx.
+ */
+public final class ArrayNodeStore implements NodeStore {
+    private final int fields;
+    private final int chunkShift, chunkMask;
+    private int[][] chunks = new int[0][];
+
+    /*Records of fields ints, handed out 2^chunkShift at a time*/
+    public ArrayNodeStore(int fields, int chunkShift) {
+        this.fields = fields;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+    }
+
+    public ArrayNodeStore(int fields) {
+        this(fields, 16);
+    }
+
+    @Override
+    public int get(int node, int field) {
+        return chunks[node >>> chunkShift][(node & chunkMask) * fields + field];
+    }
+
+    @Override
+    public void set(int node, int field, int value) {
+        chunks[node >>> chunkShift][(node & chunkMask) * fields + field] = value;
+    }
+
+    @Override
+    public void ensureCapacity(int nodes) {
+        int needed = (int) (((long) nodes + chunkMask) >>> chunkShift);
+        if (needed <= chunks.length) {
+            return;
+        }
+        int had = chunks.length;
+        chunks = Arrays.copyOf(chunks, needed);
+        for (int i = had; i < needed; i++) {
+            chunks[i] = new int[fields << chunkShift];
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return (int) Math.min((long) chunks.length << chunkShift, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long bytes() {
+        return ((long) chunks.length << chunkShift) * fields * 4;
+    }
+
+    @Override
+    public void close() {
+        chunks = new int[0][];
+    }
+}
@@ -0,0 +1,158 @@
+package main.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Chops random heads off its own copy of a Hydra on a background thread, as fast as it can.
+ * Whoever is watching (the UI) calls takeSnapshot() whenever it wants to show progress, at most once a frame.
+ * The worker only copies its tree when a snapshot has been asked for, so it isn't slowed down by copies nobody will see.
+ */
+public final class AutoPlayer implements Runnable {
+    private final HydraTree tree;
+    private final int copies;
+    private final long chopLimit;
+    private final Random random;
+
+    //The latest copy of the tree for the UI, and whether the UI is ready for another one
+    private final AtomicReference<HydraTree> published = new AtomicReference<HydraTree>();
+    private volatile boolean snapshotWanted = true;
+
+    private volatile boolean stopRequested = false;
+    private volatile boolean finished = false;
+    private volatile long chopsDone = 0;
+    private volatile Throwable failure;
+    private HydraMetrics metrics = HydraMetrics.global();
+
+    //Where every chop gets written down (null if it isn't)
+    private ChopJournal.Writer journal;
+
+    /**
+     * start: the Hydra to play (it is copied, so the original is left alone)
+     * copies: how many copies grow back per chop
+     * chopLimit: stop after this many chops (0 or less means keep going until the Hydra is defeated)
+     */
+    public AutoPlayer(HydraTree start, int copies, long chopLimit, long seed) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        this.tree = start.copy();
+        this.copies = copies;
+        this.chopLimit = chopLimit;
+        this.random = new Random(seed);
+    }
+
+    /*
+     * Write every chop to a journal at file (see ChopJournal), checkpointing every checkpointEvery chops,
+     * so the run can be replayed even if the game dies. Call before start().
+     */
+    public void journal(Path file, long checkpointEvery) throws IOException {
+        journal = ChopJournal.create(file, tree, checkpointEvery);
+    }
+
+    /*Report to these metrics instead of the global ones. Call before start().*/
+    public void setMetrics(HydraMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /*Start chopping on a daemon thread (so it never keeps the game from closing)*/
+    public void start() {
+        Thread worker = new Thread(this, "Hydra auto-play");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /*Ask the worker to stop after its current chop. The final tree still gets published.*/
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopRequested && (chopLimit <= 0 || chopsDone < chopLimit) && tree.choppableCount() > 0) {
+                int head = tree.choppable(random.nextInt(tree.choppableCount()));
+                HydraEvents.Chop event = new HydraEvents.Chop();
+                event.begin();
+                int before = tree.size();
+                if (journal != null) {
+                    journal.chop(tree, head, copies);
+                } else {
+                    tree.chop(head, copies);
+                }
+                chopsDone++;
+                metrics.chopped(before, tree.size());
+                if (event.shouldCommit()) {
+                    event.head = head;
+                    event.copies = copies;
+                    event.grown = tree.size() - before + 1;
+                    event.heads = tree.size();
+                    event.commit();
+                }
+                if (snapshotWanted) {
+                    snapshotWanted = false;
+                    publish();
+                }
+            }
+        } catch (IOException e) {
+            failure = new UncheckedIOException("Writing the journal failed", e);
+        } catch (Throwable e) {
+            //Most likely the Hydra got too big (or we ran out of memory). Keep what we have and let the UI report it.
+            failure = e;
+        } finally {
+            //Whatever happened, the UI has to hear that we're done or it waits on us forever
+            try {
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        failure = failure != null ? failure : new UncheckedIOException("Closing the journal failed", e);
+                    }
+                }
+                publish();
+            } catch (Throwable e) {
+                failure = failure != null ? failure : e;
+            } finally {
+                finished = true;
+            }
+        }
+    }
+
+    /*
+     * Hand the UI a copy of the tree. If it never took the last one, copy over that instead of making a
+     * new one (copyFrom() reuses its arrays).
+     */
+    private void publish() {
+        HydraTree stale = published.getAndSet(null);
+        if (stale == null) {
+            stale = tree.copy();
+        } else {
+            stale.copyFrom(tree);
+        }
+        published.set(stale);
+    }
+
+    /*The newest tree since the last call (or null if there isn't one yet). Also asks the worker for a fresh one.*/
+    public HydraTree takeSnapshot() {
+        HydraTree retVal = published.getAndSet(null);
+        snapshotWanted = true;
+        return retVal;
+    }
+
+    /*True once the worker is done. By then the final tree has been published.*/
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long chopsDone() {
+        return chopsDone;
+    }
+
+    /*Whatever stopped the worker early (an Error too, e.g. running out of memory), or null*/
+    public Throwable failure() {
+        return failure;
+    }
+}
@@ -0,0 +1,133 @@
+package main.engine;
+
+/*
+ * Runs TidyLayout on its own daemon thread so a big Hydra never holds up the UI.
+ * The UI hands over a copy of the tree with request() and keeps drawing the last finished Frame until the
+ * next one is ready. Only the newest request matters: if the UI asks again before the worker gets to a
+ * request, the old one is dropped. The worker keeps one shape cache for every frame, so after a chop only
+ * the shapes the chop really changed get fitted together again.
+ */
+public final class BackgroundLayout implements Runnable {
+    /*A finished layout, and the tree it was made for. Neither is touched again once published.*/
+    public static final class Frame {
+        private final HydraTree tree;
+        private final TidyLayout layout;
+        private final long version;
+
+        private Frame(HydraTree tree, TidyLayout layout, long version) {
+            this.tree = tree;
+            this.layout = layout;
+            this.version = version;
+        }
+
+        public HydraTree tree() {
+            return tree;
+        }
+
+        public HydraLayout layout() {
+            return layout;
+        }
+
+        /*The number request() returned for this tree*/
+        public long version() {
+            return version;
+        }
+    }
+
+    private final double width, height;
+    private final Runnable onReady;
+    //Only ever used on the worker thread
+    private final TidyLayout.Cache cache = new TidyLayout.Cache();
+
+    //<Guarded by this>
+    private HydraTree pendingTree;
+    private double pendingBodyY;
+    private long requested = 0;
+    private boolean stopRequested = false;
+    //</Guarded by this>
+
+    private volatile Frame latest;
+    private volatile Throwable failure;
+
+    /**
+     * width, height: the area the Hydra is drawn in
+     * onReady: called on the worker thread whenever a new frame is published, and once more if the worker
+     * dies (the UI should hop back onto its own thread from there, and check failure())
+     */
+    public BackgroundLayout(double width, double height, Runnable onReady) {
+        this.width = width;
+        this.height = height;
+        this.onReady = onReady;
+        Thread worker = new Thread(this, "Hydra layout");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /*
+     * Lay out tree (which must not change afterwards, so hand over a copy) with the body at bodyY.
+     * Returns the version its Frame will have.
+     */
+    public synchronized long request(HydraTree tree, double bodyY) {
+        pendingTree = tree;
+        pendingBodyY = bodyY;
+        requested++;
+        notifyAll();
+        return requested;
+    }
+
+    /*The version of the newest request, laid out or not*/
+    public synchronized long requested() {
+        return requested;
+    }
+
+    /*The newest finished frame (or null before the first one is done)*/
+    public Frame latest() {
+        return latest;
+    }
+
+    /*Whatever stopped the worker, or null. Once this is set no more frames are coming.*/
+    public Throwable failure() {
+        return failure;
+    }
+
+    /*Let the worker finish whatever it is on and quit*/
+    public synchronized void stop() {
+        stopRequested = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                HydraTree tree;
+                double bodyY;
+                long version;
+                synchronized (this) {
+                    while (pendingTree == null && !stopRequested) {
+                        wait();
+                    }
+                    if (stopRequested) {
+                        return;
+                    }
+                    tree = pendingTree;
+                    bodyY = pendingBodyY;
+                    version = requested;
+                    pendingTree = null;
+                }
+
+                //A new layout each time, the old one still belongs to whoever is drawing it
+                TidyLayout layout = new TidyLayout(width, height, cache);
+                layout.layout(tree, bodyY);
+                latest = new Frame(tree, layout, version);
+                onReady.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            //Errors too: a Hydra too big to lay out runs out of memory here, and the UI has to hear about it
+            failure = e;
+            onReady.run();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package main.engine;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/*
+ * A Hydra for simulations too big for HydraTree. Only the shape is kept (who is whose parent, in order),
+ * in a NodeStore, so with an OffHeapNodeStore the heads live outside the Java heap altogether and the GC
+ * stays just as fast with a billion heads as with five. A head is one record of FIELDS ints (32 bytes).
+ *
+ * It works the same way as HydraTree (sibling lists, a packed list of choppable heads, recycled ids), and
+ * it hands out ids in exactly the same order, so the same chops on both give the same Hydra with the same
+ * ids. There's no level bookkeeping or depth, since nothing draws one of these. Use toTree() to get a
+ * HydraTree back once it's small enough to look at.
+ *
+ * Chops are checked before anything changes: admits() says if a chop stays under a head limit, and chop()
+ * refuses (IllegalStateException) rather than run out of ids halfway through growing back.
+ */
+public final class BigHydra implements Closeable {
+    public static final int NONE = HydraTree.NONE;
+
+    /*The fields of a record*/
+    static final int PARENT = 0, FIRST = 1, LAST = 2, NEXT = 3, PREV = 4, CHILDREN = 5, SLOT = 6, PACKED = 7;
+    public static final int FIELDS = 8;
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final NodeStore store;
+    private final int root;
+    private int highWater = 0;
+    private int size = 0;
+    //Recycled ids, chained through NEXT
+    private int freeList = NONE;
+    //Choppable heads are packed into the PACKED field of records [0, choppableCount)
+    private int choppableCount = 0;
+
+    /*A Hydra with just a body, kept in store (which is used up: close() closes it)*/
+    public BigHydra(NodeStore store) {
+        this.store = store;
+        this.root = allocate(NONE);
+    }
+
+    /*A copy of tree (ids are renumbered in pre-order)*/
+    public static BigHydra from(HydraTree tree, NodeStore store) {
+        BigHydra retVal = new BigHydra(store);
+        int top = tree.root();
+        int s = top;
+        int d = retVal.root;
+        //Same lock-step walk as HydraTree.graft
+        while (true) {
+            if (tree.firstChild(s) != NONE) {
+                s = tree.firstChild(s);
+                d = retVal.addChild(d);
+                continue;
+            }
+            while (s != top && tree.nextSibling(s) == NONE) {
+                s = tree.parent(s);
+                d = retVal.parent(d);
+            }
+            if (s == top) {
+                return retVal;
+            }
+            s = tree.nextSibling(s);
+            d = retVal.addChild(retVal.parent(d));
+        }
+    }
+
+    /*A HydraTree of the same shape (ids are renumbered in pre-order)*/
+    public HydraTree toTree() {
+        HydraTree retVal = new HydraTree(true, size);
+        int s = root;
+        int d = retVal.root();
+        while (true) {
+            if (firstChild(s) != NONE) {
+                s = firstChild(s);
+                d = retVal.addChild(d);
+                continue;
+            }
+            while (s != root && nextSibling(s) == NONE) {
+                s = parent(s);
+                d = retVal.parent(d);
+            }
+            if (s == root) {
+                return retVal;
+            }
+            s = nextSibling(s);
+            d = retVal.addChild(retVal.parent(d));
+        }
+    }
+
+    //<Getters>
+    public int root() {
+        return root;
+    }
+
+    /*Live heads, counting the body*/
+    public int size() {
+        return size;
+    }
+
+    public int idBound() {
+        return highWater;
+    }
+
+    public boolean isLive(int node) {
+        return node >= 0 && node < highWater && store.get(node, CHILDREN) >= 0;
+    }
+
+    public int parent(int node) {
+        return store.get(node, PARENT);
+    }
+
+    public int firstChild(int node) {
+        return store.get(node, FIRST);
+    }
+
+    public int lastChild(int node) {
+        return store.get(node, LAST);
+    }
+
+    public int nextSibling(int node) {
+        return store.get(node, NEXT);
+    }
+
+    public int prevSibling(int node) {
+        return store.get(node, PREV);
+    }
+
+    public int childCount(int node) {
+        return store.get(node, CHILDREN);
+    }
+
+    public boolean canBeChopped(int node) {
+        return isLive(node) && store.get(node, SLOT) != NONE;
+    }
+
+    public int choppableCount() {
+        return choppableCount;
+    }
+
+    /*The i-th choppable head, 0 <= i < choppableCount(). The order changes as heads come and go.*/
+    public int choppable(int i) {
+        return store.get(i, PACKED);
+    }
+
+    /*Memory the heads take up, wherever the store keeps them*/
+    public long bytes() {
+        return store.bytes();
+    }
+    //</Getters>
+
+    /*Attach a brand new head to the end of node's children and return its id*/
+    public int addChild(int node) {
+        int child = allocate(node);
+        link(node, child);
+        return child;
+    }
+
+    /*Remove a head that has no children. The body can never be removed.*/
+    public void deleteLeaf(int node) {
+        if (node == root || firstChild(node) != NONE) {
+            throw new UnsupportedOperationException("Only heads without children can be removed.");
+        }
+        unlink(node);
+        release(node);
+    }
+
+    /*Copy the subtree under src onto the end of newParent's children (not inside src). Returns the copy.*/
+    public int copySubtree(int src, int newParent) {
+        int copy = addChild(newParent);
+        int s = src;
+        int d = copy;
+        while (true) {
+            if (firstChild(s) != NONE) {
+                s = firstChild(s);
+                d = addChild(d);
+                continue;
+            }
+            while (s != src && nextSibling(s) == NONE) {
+                s = parent(s);
+                d = parent(d);
+            }
+            if (s == src) {
+                return copy;
+            }
+            s = nextSibling(s);
+            d = addChild(parent(d));
+        }
+    }
+
+    /**
+     * Chop a head and re-grow, the same as HydraTree.chop.
+     *
+     * @return false (and nothing changes) if the node cannot be chopped
+     * @throws IllegalStateException (and nothing changes) if the Hydra would have more heads than ids allow
+     */
+    public boolean chop(int node, int copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        if (!canBeChopped(node)) {
+            return false;
+        }
+        if (!admits(node, copies, MAX_CAPACITY)) {
+            throw new IllegalStateException("Hydra is too big: chopping head " + node + " would grow "
+                    + regrowthSize(node, copies) + " heads onto " + size + ".");
+        }
+        int p = parent(node);
+        deleteLeaf(node);
+        if (p != root) {
+            int grandparent = parent(p);
+            for (int i = 0; i < copies; i++) {
+                copySubtree(p, grandparent);
+            }
+        }
+        return true;
+    }
+
+    /*Heads that chopping node would grow back (not counting the one chopped off), without chopping it*/
+    public long regrowthSize(int node, int copies) {
+        int p = parent(node);
+        if (p == NONE || p == root) {
+            return 0;
+        }
+        return copies * (subtreeSize(p) - 1);
+    }
+
+    /*Would the Hydra still have at most limit heads (counting the body) after chopping node?*/
+    public boolean admits(int node, int copies, long limit) {
+        if ((long) size * (copies + 1L) <= limit) {
+            return true;
+        }
+        return size - 1 + regrowthSize(node, copies) <= limit;
+    }
+
+    /*Heads in the subtree under node, node included*/
+    public long subtreeSize(int node) {
+        long retVal = 0;
+        for (int n = node; n != NONE; n = preOrderNext(n, node)) {
+            retVal++;
+        }
+        return retVal;
+    }
+
+    /*Pre-order successor of node, without leaving the subtree under subtreeRoot. NONE when the walk is done.*/
+    public int preOrderNext(int node, int subtreeRoot) {
+        int first = firstChild(node);
+        if (first != NONE) {
+            return first;
+        }
+        while (node != subtreeRoot) {
+            int next = nextSibling(node);
+            if (next != NONE) {
+                return next;
+            }
+            node = parent(node);
+        }
+        return NONE;
+    }
+
+    /*Give the store's memory back*/
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    //<Book Keeping>
+    private int allocate(int parentNode) {
+        int node;
+        if (freeList != NONE) {
+            node = freeList;
+            freeList = nextSibling(node);
+        } else {
+            if (highWater == MAX_CAPACITY) {
+                throw new IllegalStateException("Hydra is too big: " + highWater + " heads.");
+            }
+            if (highWater == store.capacity()) {
+                store.ensureCapacity(highWater + 1);
+            }
+            node = highWater++;
+        }
+        store.set(node, PARENT, parentNode);
+        store.set(node, FIRST, NONE);
+        store.set(node, LAST, NONE);
+        store.set(node, NEXT, NONE);
+        store.set(node, PREV, NONE);
+        store.set(node, CHILDREN, 0);
+        store.set(node, SLOT, NONE);
+        size++;
+        //A new head has no children, so it can be chopped (unless it is the body)
+        if (parentNode != NONE) {
+            addChoppable(node);
+        }
+        return node;
+    }
+
+    private void release(int node) {
+        removeChoppable(node);
+        //CHILDREN < 0 marks a free id
+        store.set(node, CHILDREN, -1);
+        store.set(node, PARENT, NONE);
+        store.set(node, NEXT, freeList);
+        freeList = node;
+        size--;
+    }
+
+    private void link(int node, int child) {
+        int last = lastChild(node);
+        store.set(child, PREV, last);
+        store.set(child, NEXT, NONE);
+        if (last == NONE) {
+            store.set(node, FIRST, child);
+        } else {
+            store.set(last, NEXT, child);
+        }
+        store.set(node, LAST, child);
+        int children = childCount(node);
+        store.set(node, CHILDREN, children + 1);
+        if (children == 0) {
+            removeChoppable(node);
+        }
+    }
+
+    private void unlink(int node) {
+        int p = parent(node);
+        int prev = prevSibling(node);
+        int next = nextSibling(node);
+        if (prev == NONE) {
+            store.set(p, FIRST, next);
+        } else {
+            store.set(prev, NEXT, next);
+        }
+        if (next == NONE) {
+            store.set(p, LAST, prev);
+        } else {
+            store.set(next, PREV, prev);
+        }
+        int children = childCount(p) - 1;
+        store.set(p, CHILDREN, children);
+        if (children == 0 && p != root) {
+            addChoppable(p);
+        }
+    }
+
+    private void addChoppable(int node) {
+        store.set(node, SLOT, choppableCount);
+        store.set(choppableCount++, PACKED, node);
+    }
+
+    //Swap the last choppable head into the hole so the list stays packed
+    private void removeChoppable(int node) {
+        int slot = store.get(node, SLOT);
+        if (slot == NONE) {
+            return;
+        }
+        int last = store.get(--choppableCount, PACKED);
+        store.set(slot, PACKED, last);
+        store.set(last, SLOT, slot);
+        store.set(node, SLOT, NONE);
+    }
+    //</Book Keeping>
+
+    /*
+     * Play a random game on a BigHydra and report how big it got, e.g.
+     * 	java -XX:MaxDirectMemorySize=16g main.engine.BigHydra --copies 2 --chops 100000000 --max-heads 400000000
+     * Options: --heads, --copies, --chops, --seed, --max-heads, --heap (keep heads on the heap, to compare)
+     * and --map file (keep them in a memory-mapped scratch file instead of direct memory).
+     */
+    public static void main(String[] args) {
+        int copies = 2, heads = 5, maxHeads = 100000000;
+        long chops = 10000000, seed = 1;
+        Path map = null;
+        boolean heap = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--heap")) {
+                heap = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            if (args[i].equals("--copies")) {
+                copies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--heads")) {
+                heads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--chops")) {
+                chops = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--max-heads")) {
+                maxHeads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--map")) {
+                map = Paths.get(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        HydraTree start = new HydraTree(true);
+        start.growRandom(heads, random);
+        NodeStore store = heap ? new ArrayNodeStore(FIELDS) : new OffHeapNodeStore(FIELDS, 18, map);
+        BigHydra hydra = from(start, store);
+        try {
+            long started = System.nanoTime();
+            long done = 0, refused = 0;
+            while (done < chops && hydra.choppableCount() > 0) {
+                int head = hydra.choppable(random.nextInt(hydra.choppableCount()));
+                //Too big: count it and try another head (one that doesn't grow back as much)
+                if (!hydra.admits(head, copies, maxHeads)) {
+                    if (++refused > 1000) {
+                        break;
+                    }
+                    continue;
+                }
+                hydra.chop(head, copies);
+                done++;
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            Runtime runtime = Runtime.getRuntime();
+            System.out.println(String.format("%d chops in %.2f s, %d heads in %.1f MB of %s (%d chops refused), heap used %.1f MB",
+                    done, seconds, hydra.size(), hydra.bytes() / 1e6, heap ? "heap" : map == null ? "direct memory" : map,
+                    refused, (runtime.totalMemory() - runtime.freeMemory()) / 1e6));
+        } finally {
+            hydra.close();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package main.engine;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/*
+ * Works out exactly how many chops it takes to kill a Hydra, without chopping anything.
+ * Simulating is hopeless for all but the tiniest Hydras (the counts grow like towers of exponents),
+ * so instead the count is built bottom-up from the shape of the tree, remembering the answer for
+ * every shape so identical subtrees are only worked out once.
+ *
+ * Strategies:
+ * 	DEEPEST: always chop a head on the deepest level. Which one doesn't change the count.
+ * 	RIGHTMOST: always chop the right-most head (the last one in pre-order). Re-grown copies land on the right,
+ * 	so they are dealt with straight away and everything to their left is left alone.
+ * There's no LEFTMOST: re-grown copies land behind the left-most cursor, so every copy carries a snapshot
+ * of whatever its parent had queued up at the time, and there's no recurrence on shapes. MonteCarlo can
+ * still play it.
+ *
+ * The answers get big fast, so anything that would need more than maxBits bits throws an ArithmeticException
+ * instead of eating all the memory.
+ */
+public final class ChopCalculator {
+    public enum Strategy {
+        DEEPEST, RIGHTMOST
+    }
+
+    //About 20,000 digits. Nobody is going to read a longer number anyway.
+    public static final int DEFAULT_MAX_BITS = 1 << 16;
+
+    //How much work (function applications) RIGHTMOST may do before giving up. Lazy functions pile up in memory, so keep this modest.
+    private static final long DEFAULT_MAX_STEPS = 1L << 21;
+
+    //The recurrences recurse as deep as the Hydra is wide and tall, so they run on a thread with a big stack
+    private static final long STACK_SIZE = 1L << 29;
+
+    private final int copies;
+    private final int maxBits;
+    private final long maxSteps;
+    private long steps;
+
+    public ChopCalculator(int copies) {
+        this(copies, DEFAULT_MAX_BITS);
+    }
+
+    public ChopCalculator(int copies, int maxBits) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        this.copies = copies;
+        this.maxBits = maxBits;
+        this.maxSteps = DEFAULT_MAX_STEPS;
+    }
+
+    /**
+     * Number of chops it takes to defeat the Hydra in tree (rooted at its body) with the given strategy.
+     *
+     * @throws ArithmeticException if the answer (or a number along the way) needs more than maxBits bits
+     */
+    public BigInteger chopsToDefeat(final HydraTree tree, final Strategy strategy) {
+        //With nothing growing back, every head is chopped exactly once whatever the order
+        if (copies == 0) {
+            return BigInteger.valueOf(tree.size() - 1);
+        }
+
+        final BigInteger[] result = new BigInteger[1];
+        final RuntimeException[] failure = new RuntimeException[1];
+        Thread worker = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    steps = 0;
+                    result[0] = strategy == Strategy.DEEPEST ? deepest(tree) : rightmost(tree);
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                } catch (StackOverflowError e) {
+                    failure[0] = new ArithmeticException("Hydra is too tall to count.");
+                } catch (OutOfMemoryError e) {
+                    failure[0] = new ArithmeticException("Ran out of memory counting chops.");
+                }
+            }
+        }, "chop-calculator", STACK_SIZE);
+        worker.start();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting chops.", e);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return result[0];
+    }
+
+    /*Same as chopsToDefeat(tree, strategy), for a Hydra saved with HydraNode.exportString()*/
+    public BigInteger chopsToDefeat(String exportString, Strategy strategy) {
+        return chopsToDefeat(HydraTree.fromExportString(exportString), strategy);
+    }
+
+    //<Deepest>
+    /*
+     * Chopping a level clean turns every head one level up into leaves, so work bottom-up:
+     * 	- a head whose children all turned into k leaves is chopped down in C(k) = ((n+1)^k - 1) / n chops,
+     * 	  and leaves (n+1)^k leaves on the level above it (itself plus all its copies)
+     * 	- the body just loses its k leaves one chop at a time
+     */
+    private BigInteger deepest(HydraTree tree) {
+        return deepest(SharedHydra.of(tree).body(), new IdentityHashMap<HydraShape, BigInteger[]>());
+    }
+
+    /*
+     * Same, for a Hydra that is already shapes. memo holds {leaves it turns into, chops that took} per shape
+     * (other than the body), and can be kept between calls for shapes from the same table.
+     * Never recurses, so it's fine on any thread. copies must not be 0.
+     */
+    BigInteger deepest(HydraShape body, IdentityHashMap<HydraShape, BigInteger[]> memo) {
+
+        //Explicit post-order over the shapes (children first)
+        ArrayDeque<HydraShape> stack = new ArrayDeque<HydraShape>();
+        for (int i = 0; i < body.kindCount(); i++) {
+            stack.push(body.kind(i));
+        }
+        while (!stack.isEmpty()) {
+            HydraShape s = stack.peek();
+            boolean ready = true;
+            for (int i = 0; i < s.kindCount(); i++) {
+                if (!memo.containsKey(s.kind(i))) {
+                    stack.push(s.kind(i));
+                    ready = false;
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+            stack.pop();
+            if (memo.containsKey(s)) {
+                continue;
+            }
+
+            BigInteger[] children = children(s, memo);
+            BigInteger turnsInto = power(BigInteger.valueOf(copies + 1L), children[0]);
+            BigInteger chopDown = turnsInto.subtract(BigInteger.ONE).divide(BigInteger.valueOf(copies));
+            memo.put(s, new BigInteger[]{turnsInto, check(children[1].add(chopDown))});
+        }
+
+        //The body's leaves don't grow back, so that's one chop each
+        BigInteger[] children = children(body, memo);
+        return check(children[1].add(children[0]));
+    }
+
+    //How many leaves s's children turn into, and how many chops that took
+    private BigInteger[] children(HydraShape s, IdentityHashMap<HydraShape, BigInteger[]> memo) {
+        BigInteger leaves = BigInteger.ZERO;
+        BigInteger chops = BigInteger.ZERO;
+        for (int i = 0; i < s.kindCount(); i++) {
+            BigInteger[] child = memo.get(s.kind(i));
+            BigInteger count = BigInteger.valueOf(s.count(i));
+            leaves = check(leaves.add(child[0].multiply(count)));
+            chops = check(chops.add(child[1].multiply(count)));
+        }
+        return new BigInteger[]{leaves, chops};
+    }
+    //</Deepest>
+
+    //<Rightmost>
+    /*
+     * Let cost(c) be the chops it takes to clear a child c of the body (and all its re-grown copies).
+     * The body's children never interact, so the answer is just the sum of their costs.
+     *
+     * Write a head with children X ++ [e] as node(X ++ [e]). Chopping the right-most head only ever changes the
+     * last child of each head on the way down, so:
+     * 	cost(node(X ++ [e])) = H(e, 1) applied to cost(node(X)), cost(leaf) = 1
+     * where H(e, m) says what having e as the last child does one level further up:
+     * 	H(leaf, 1)(r) = 1 + (n+1)r                       (chop it, n copies of the parent)
+     * 	H(leaf, m)(A) = 1 + A applied n+1 times           (m > 1: the parent and its n copies)
+     * 	H(node(X ++ [e]), m) = H(e, m+1) applied to H(node(X), m)
+     * Level 1 functions are always r -> a + br, so those are worked out exactly (and remembered per shape).
+     * Higher levels are functions of functions, and are only ever evaluated lazily.
+     */
+    private BigInteger rightmost(HydraTree tree) {
+        Shapes shapes = new Shapes();
+        Shape[] shapeOf = shapes.of(tree);
+
+        BigInteger retVal = BigInteger.ZERO;
+        for (int c = tree.firstChild(tree.root()); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+            retVal = check(retVal.add(cost(shapeOf[c])));
+        }
+        return retVal;
+    }
+
+    //Chops to clear a child of the body, walking its children left to right
+    private BigInteger cost(Shape s) {
+        if (s.cost != null) {
+            return s.cost;
+        }
+        BigInteger retVal = BigInteger.ONE;
+        for (Shape prefix : s.prefixes()) {
+            if (prefix.cost == null) {
+                prefix.cost = prefix.isLeaf() ? BigInteger.ONE : affine(prefix.last).apply(retVal);
+            }
+            retVal = prefix.cost;
+        }
+        return retVal;
+    }
+
+    //H(s, 1), remembered per shape
+    private Affine affine(Shape s) {
+        if (s.affine != null) {
+            return s.affine;
+        }
+        Affine retVal = new Affine(BigInteger.ONE, BigInteger.valueOf(copies + 1L));
+        for (Shape prefix : s.prefixes()) {
+            if (prefix.affine == null) {
+                prefix.affine = prefix.isLeaf() ? retVal : (Affine) apply(level(prefix.last, 2), retVal);
+            }
+            retVal = prefix.affine;
+        }
+        return retVal;
+    }
+
+    //H(s, m) for m > 1
+    private Function level(final Shape s, final int m) {
+        if (s.isLeaf()) {
+            return new Function() {
+                @Override
+                public Object apply(Object a) {
+                    return plusOne(repeat(a, copies + 1L));
+                }
+            };
+        }
+        return (Function) apply(level(s.last, m + 1), level(s.init, m));
+    }
+
+    private Object apply(Object f, Object x) {
+        if (++steps > maxSteps) {
+            throw new ArithmeticException("Gave up after " + maxSteps + " steps.");
+        }
+        return ((Function) f).apply(x);
+    }
+
+    //f applied times times
+    private Object repeat(final Object f, final long times) {
+        if (f instanceof Affine) {
+            return ((Affine) f).repeat(times);
+        }
+        return new Function() {
+            @Override
+            public Object apply(Object x) {
+                for (long i = 0; i < times; i++) {
+                    x = ChopCalculator.this.apply(f, x);
+                }
+                return x;
+            }
+        };
+    }
+
+    //One more chop on top of whatever f ends up counting
+    private Object plusOne(final Object f) {
+        if (f instanceof Affine) {
+            Affine a = (Affine) f;
+            return new Affine(a.a.add(BigInteger.ONE), a.b);
+        }
+        return new Function() {
+            @Override
+            public Object apply(Object x) {
+                return plusOne(ChopCalculator.this.apply(f, x));
+            }
+        };
+    }
+
+    //A function on level-1 functions (or on functions of those, and so on)
+    private interface Function {
+        Object apply(Object x);
+    }
+
+    //r -> a + br
+    private final class Affine {
+        final BigInteger a, b;
+
+        Affine(BigInteger a, BigInteger b) {
+            this.a = check(a);
+            this.b = check(b);
+        }
+
+        BigInteger apply(BigInteger r) {
+            return check(a.add(b.multiply(r)));
+        }
+
+        //This applied k times: r -> a(b^k - 1)/(b - 1) + b^k r
+        Affine repeat(long k) {
+            BigInteger bk = power(b, BigInteger.valueOf(k));
+            if (b.equals(BigInteger.ONE)) {
+                return new Affine(a.multiply(BigInteger.valueOf(k)), b);
+            }
+            return new Affine(a.multiply(bk.subtract(BigInteger.ONE)).divide(b.subtract(BigInteger.ONE)), bk);
+        }
+    }
+
+    /*
+     * Ordered shapes, hash-consed as snoc lists: node(X ++ [e]) is (node(X), e), so a head and all the
+     * prefixes of its child list share structure.
+     */
+    private static final class Shape {
+        final Shape init, last;
+        BigInteger cost;
+        Affine affine;
+
+        Shape(Shape init, Shape last) {
+            this.init = init;
+            this.last = last;
+        }
+
+        boolean isLeaf() {
+            return init == null;
+        }
+
+        //This shape's prefixes, from the leaf up to (and including) itself
+        Shape[] prefixes() {
+            int length = 0;
+            for (Shape s = this; s != null; s = s.init) {
+                length++;
+            }
+            Shape[] retVal = new Shape[length];
+            for (Shape s = this; s != null; s = s.init) {
+                retVal[--length] = s;
+            }
+            return retVal;
+        }
+    }
+
+    private static final class Shapes {
+        private final Shape leaf = new Shape(null, null);
+        private final HashMap<Shape, HashMap<Shape, Shape>> table = new HashMap<Shape, HashMap<Shape, Shape>>();
+
+        //The ordered shape of every subtree in tree, indexed by head id
+        Shape[] of(HydraTree tree) {
+            Shape[] retVal = new Shape[tree.idBound()];
+            for (int n = tree.postOrderFirst(tree.root()); n != HydraTree.NONE; n = tree.postOrderNext(n, tree.root())) {
+                Shape s = leaf;
+                for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                    s = snoc(s, retVal[c]);
+                }
+                retVal[n] = s;
+            }
+            return retVal;
+        }
+
+        //The interned node(init ++ [last])
+        private Shape snoc(Shape init, Shape last) {
+            HashMap<Shape, Shape> byLast = table.get(init);
+            if (byLast == null) {
+                byLast = new HashMap<Shape, Shape>();
+                table.put(init, byLast);
+            }
+            Shape retVal = byLast.get(last);
+            if (retVal == null) {
+                retVal = new Shape(init, last);
+                byLast.put(last, retVal);
+            }
+            return retVal;
+        }
+    }
+    //</Rightmost>
+
+    //<Book Keeping>
+    //base^exponent, unless the answer would be too big
+    private BigInteger power(BigInteger base, BigInteger exponent) {
+        if (base.signum() == 0 || base.equals(BigInteger.ONE)) {
+            return exponent.signum() == 0 ? BigInteger.ONE : base;
+        }
+        //Bits in the answer are about exponent * log2(base)
+        if (exponent.bitLength() > 31 || (long) exponent.intValue() * (base.bitLength() - 1) > maxBits) {
+            throw tooBig();
+        }
+        return check(base.pow(exponent.intValue()));
+    }
+
+    private BigInteger check(BigInteger value) {
+        if (value.bitLength() > maxBits) {
+            throw tooBig();
+        }
+        return value;
+    }
+
+    private ArithmeticException tooBig() {
+        return new ArithmeticException("Chop count needs more than " + maxBits + " bits.");
+    }
+    //</Book Keeping>
+}
@@ -0,0 +1,81 @@
+package main.engine;
+
+/*
+ * What a chop changed, so whoever is drawing the Hydra can patch the screen instead of starting over.
+ * Only the first chop recorded since the last clear() is described in detail. If more happens than that
+ * (a second chop, an import...), the delta just says "everything changed".
+ */
+public final class ChopDelta {
+    /*Heads that are gone. Their ids may already be re-used by heads in regrown.*/
+    final IntList removed = new IntList();
+    final IntList removedDepths = new IntList();
+    /*Roots of the subtrees that grew back*/
+    final IntList regrown = new IntList();
+    /*Heads that stayed but became choppable (a parent that lost its last child)*/
+    final IntList flipped = new IntList();
+
+    private int chops = 0;
+    private boolean everything = false;
+
+    public void clear() {
+        removed.clear();
+        removedDepths.clear();
+        regrown.clear();
+        flipped.clear();
+        chops = 0;
+        everything = false;
+    }
+
+    /*Give up on describing the changes*/
+    public void invalidate() {
+        everything = true;
+    }
+
+    //Called by the tree at the start of each chop. Returns true if this chop should be described.
+    boolean beginChop() {
+        chops++;
+        return chops == 1 && !everything;
+    }
+
+    public boolean isEmpty() {
+        return chops == 0 && !everything;
+    }
+
+    /*True if the delta describes everything that changed*/
+    public boolean isIncremental() {
+        return chops == 1 && !everything;
+    }
+
+    public int chops() {
+        return chops;
+    }
+
+    public int removedCount() {
+        return removed.size();
+    }
+
+    public int removed(int i) {
+        return removed.get(i);
+    }
+
+    /*How deep removed(i) was before it went*/
+    public int removedDepth(int i) {
+        return removedDepths.get(i);
+    }
+
+    public int regrownCount() {
+        return regrown.size();
+    }
+
+    public int regrown(int i) {
+        return regrown.get(i);
+    }
+
+    public int flippedCount() {
+        return flipped.size();
+    }
+
+    public int flipped(int i) {
+        return flipped.get(i);
+    }
+}
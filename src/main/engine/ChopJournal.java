@@ -0,0 +1,397 @@
+package main.engine;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/*
+ * An append-only record of a game, so a long run survives the JVM dying and can be played back exactly.
+ *
+ * The file:
+ * 	"HJRN"               4 bytes of magic
+ * 	version              1 byte
+ * 	then records, each starting with a type byte:
+ * 	CHOP        varint head id, varint copies
+ * 	CHECKPOINT  8 byte length, then the whole Hydra in HydraFormat (the length is filled in last)
+ * The first record is always a checkpoint of the starting Hydra.
+ *
+ * A chop names its head by id. Ids only mean something because every checkpoint renumbers the live tree
+ * (see HydraTree.renumber()) to exactly the ids reading the checkpoint back gives, and chopping is
+ * deterministic from there. So a chop is a couple of bytes and replays in O(1) to find the head, where
+ * a path from the body would cost a walk along every level's siblings.
+ *
+ * A record cut short by a crash is just ignored, along with anything after it. Replay restores the last
+ * complete checkpoint and plays the chops after it.
+ */
+public final class ChopJournal {
+    static final byte[] MAGIC = {'H', 'J', 'R', 'N'};
+    public static final int VERSION = 1;
+
+    private static final int CHOP = 1, CHECKPOINT = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ChopJournal() {
+    }
+
+    /*Start a new journal at file (replacing whatever was there) beginning with start*/
+    public static Writer create(Path file, HydraTree start, long checkpointEvery) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new Writer(channel, start, checkpointEvery);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Appends chops as they happen. Chops are buffered and hit the file when the buffer fills, at every
+     * checkpoint, on flush() and on close(). Not thread safe: one writer per game.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final long checkpointEvery;
+        private long chops = 0, sinceCheckpoint = 0;
+
+        private Writer(FileChannel channel, HydraTree start, long checkpointEvery) throws IOException {
+            this.channel = channel;
+            this.checkpointEvery = checkpointEvery;
+            buffer.put(MAGIC);
+            buffer.put((byte) VERSION);
+            checkpoint(start);
+        }
+
+        /*
+         * Chop head in tree and write it down. Every checkpointEvery chops (if that's above 0) the whole
+         * tree is checkpointed too, which renumbers it. Returns false (and writes nothing) if the head can't
+         * be chopped. A chop that throws (IllegalStateException if the Hydra would get too big) writes nothing
+         * either, and the exception is passed on, just like from HydraTree.chop. tree must be the one given to
+         * create() or the last checkpoint().
+         */
+        public boolean chop(HydraTree tree, int head, int copies) throws IOException {
+            //Chop first, so the journal never has a chop that didn't happen
+            if (!tree.chop(head, copies)) {
+                return false;
+            }
+            put(CHOP);
+            putVarint(head);
+            putVarint(copies);
+            chops++;
+            if (checkpointEvery > 0 && ++sinceCheckpoint >= checkpointEvery) {
+                checkpoint(tree);
+            }
+            return true;
+        }
+
+        /*
+         * Write the whole tree, so replay doesn't have to go back further than this.
+         * The tree is renumbered (like an import would), so don't hang on to head ids across this.
+         */
+        public void checkpoint(HydraTree tree) throws IOException {
+            tree.renumber();
+            put(CHECKPOINT);
+            HydraFormat.drain(buffer, channel);
+            long lengthAt = channel.position();
+            //Zero until the Hydra is all there, so a crash in the middle leaves a checkpoint replay skips
+            buffer.putLong(0);
+            HydraFormat.drain(buffer, channel);
+            HydraFormat.write(tree, channel);
+            long end = channel.position();
+            buffer.putLong(end - lengthAt - 8);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, lengthAt + buffer.position());
+            }
+            buffer.clear();
+            sinceCheckpoint = 0;
+        }
+
+        /*Chops written so far (not counting the starting Hydra)*/
+        public long chops() {
+            return chops;
+        }
+
+        /*Hand everything buffered to the OS, so it survives the JVM (but not the machine) going down*/
+        public void flush() throws IOException {
+            HydraFormat.drain(buffer, channel);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void put(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                HydraFormat.drain(buffer, channel);
+            }
+            buffer.put((byte) b);
+        }
+
+        private void putVarint(int value) throws IOException {
+            //A varint is never more than 5 bytes
+            if (buffer.remaining() < 5) {
+                HydraFormat.drain(buffer, channel);
+            }
+            HydraFormat.putVarint(buffer, value);
+        }
+    }
+
+    /*What a replay found*/
+    public static final class Replay {
+        private final HydraTree tree;
+        private final long chops, replayed, checkpoints, restoreNanos, replayNanos;
+
+        Replay(HydraTree tree, long chops, long replayed, long checkpoints, long restoreNanos, long replayNanos) {
+            this.tree = tree;
+            this.chops = chops;
+            this.replayed = replayed;
+            this.checkpoints = checkpoints;
+            this.restoreNanos = restoreNanos;
+            this.replayNanos = replayNanos;
+        }
+
+        /*The Hydra as of the last complete record*/
+        public HydraTree tree() {
+            return tree;
+        }
+
+        /*Chops in the journal*/
+        public long chops() {
+            return chops;
+        }
+
+        /*Chops played on top of the last checkpoint*/
+        public long replayed() {
+            return replayed;
+        }
+
+        public long checkpoints() {
+            return checkpoints;
+        }
+
+        /*Scanning the journal and loading the last checkpoint*/
+        public long restoreNanos() {
+            return restoreNanos;
+        }
+
+        /*Playing the chops after it*/
+        public long replayNanos() {
+            return replayNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = replayNanos / 1e9;
+            return String.format("%d chops, %d checkpoints: restored the last in %.1f ms, replayed %d chops in %.1f ms (%.2f M chops/s), %d heads",
+                    chops, checkpoints, restoreNanos / 1e6, replayed, seconds * 1e3, seconds == 0 ? 0 : replayed / seconds / 1e6, tree.size());
+        }
+    }
+
+    /**
+     * Rebuild the game in file as of its last complete record.
+     *
+     * @throws IOException if it isn't a journal, has no complete checkpoint, or a chop doesn't fit the Hydra
+     */
+    public static Replay replay(Path file) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Reader in = new Reader(channel);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (in.next() != (MAGIC[i] & 0xFF)) {
+                    throw new IOException("Not a Hydra journal.");
+                }
+            }
+            int version = in.next();
+            if (version != VERSION) {
+                throw new IOException("Unsupported Hydra journal version " + version + ".");
+            }
+
+            //First pass: find the last complete checkpoint and where the complete records end
+            long checkpointAt = -1, checkpointLength = 0, checkpoints = 0, chops = 0, chopsAfter = 0;
+            long end = in.position();
+            while (true) {
+                try {
+                    int type = in.next();
+                    if (type == CHOP) {
+                        HydraFormat.getVarint(in);
+                        HydraFormat.getVarint(in);
+                        chops++;
+                        chopsAfter++;
+                    } else if (type == CHECKPOINT) {
+                        long length = in.nextLong();
+                        if (length <= 0 || in.position() + length > channel.size()) {
+                            break;
+                        }
+                        checkpointAt = in.position();
+                        checkpointLength = length;
+                        checkpoints++;
+                        chopsAfter = 0;
+                        in.seek(checkpointAt + length);
+                    } else {
+                        //The end of the file, or junk a crash left behind
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                end = in.position();
+            }
+            if (checkpointAt < 0) {
+                throw new IOException("The journal has no complete checkpoint.");
+            }
+
+            //Second pass: restore it and play the rest
+            in.seek(checkpointAt);
+            in.limit(checkpointAt + checkpointLength);
+            HydraTree tree = HydraFormat.read(in);
+            long restored = System.nanoTime();
+            in.limit(end);
+            for (long c = 0; c < chopsAfter; c++) {
+                //Everything up to end was checked above, so this is a CHOP
+                in.next();
+                int head = HydraFormat.getVarint(in);
+                int copies = HydraFormat.getVarint(in);
+                if (head >= tree.idBound() || !tree.isLive(head) || !tree.chop(head, copies)) {
+                    throw new IOException("Chop " + c + " after the checkpoint isn't of a choppable head.");
+                }
+            }
+            return new Replay(tree, chops, chopsAfter, checkpoints, restored - start, System.nanoTime() - restored);
+        } finally {
+            channel.close();
+        }
+    }
+
+    //Buffered reads from a file, with seeking and a limit so a checkpoint can be read on its own
+    private static final class Reader implements HydraFormat.Source {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        //File offset of the first byte in buffer
+        private long bufferStart = 0;
+        private long limit = Long.MAX_VALUE;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            seek(0);
+        }
+
+        @Override
+        public int next() throws IOException {
+            if (position() >= limit) {
+                return -1;
+            }
+            if (!buffer.hasRemaining()) {
+                bufferStart += buffer.limit();
+                buffer.clear();
+                int read;
+                do {
+                    read = channel.read(buffer, bufferStart);
+                } while (read == 0);
+                buffer.flip();
+                if (read < 0) {
+                    return -1;
+                }
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        long nextLong() throws IOException {
+            long retVal = 0;
+            for (int i = 0; i < 8; i++) {
+                int b = next();
+                if (b < 0) {
+                    throw new EOFException("Journal ends early.");
+                }
+                retVal = (retVal << 8) | b;
+            }
+            return retVal;
+        }
+
+        @Override
+        public long remaining() throws IOException {
+            return Math.min(limit, channel.size()) - position();
+        }
+
+        long position() {
+            return bufferStart + buffer.position();
+        }
+
+        void seek(long position) {
+            bufferStart = position;
+            buffer.clear();
+            buffer.flip();
+        }
+
+        void limit(long limit) {
+            this.limit = limit;
+        }
+    }
+
+    /*
+     * Usage:
+     * 	java main.engine.ChopJournal replay game.journal
+     * 	java main.engine.ChopJournal play game.journal [--copies 2] [--chops 1000000] [--seed 1] [--heads 5] [--every 100000]
+     * 		[--max-heads 1000000]
+     * play journals a random game (same seed, same game), replay prints how fast it comes back.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ChopJournal (replay|play) <file> [options]");
+        }
+        Path file = Paths.get(args[1]);
+        if (args[0].equals("replay")) {
+            System.out.println(replay(file));
+            return;
+        } else if (!args[0].equals("play")) {
+            throw new IllegalArgumentException("Unknown command: " + args[0]);
+        }
+
+        int copies = 2, heads = 5, maxHeads = 1000000;
+        long chops = 1000000, seed = 1, every = 100000;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--copies")) {
+                copies = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--chops")) {
+                chops = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--heads")) {
+                heads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--every")) {
+                every = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--max-heads")) {
+                maxHeads = Integer.parseInt(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(heads, random);
+        long started = System.nanoTime();
+        Writer journal = create(file, tree, every);
+        try {
+            while (journal.chops() < chops && tree.choppableCount() > 0 && tree.size() <= maxHeads) {
+                journal.chop(tree, tree.choppable(random.nextInt(tree.choppableCount())), copies);
+            }
+        } finally {
+            journal.close();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.println(String.format("Played and journaled %d chops in %.2f s (%.2f M chops/s), %d heads",
+                journal.chops(), seconds, journal.chops() / seconds / 1e6, tree.size()));
+    }
+}
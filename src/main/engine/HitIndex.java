@@ -0,0 +1,162 @@
+package main.engine;
+
+import java.util.Arrays;
+
+/*
+ * Turns a point on screen back into the head drawn there, so a renderer needs one click handler for the
+ * whole Hydra instead of one per head.
+ * Both layouts put every level on its own row and keep a row's heads in left-to-right order, so the index
+ * is a grid with one cell per row: find the row by y, then binary search the row's x's. That's O(log n) a
+ * click. After a chop only the rows the chop touched are read again (unless the Hydra got taller or
+ * shorter, which moves every row).
+ * The same rows tell a zoomed-in renderer which heads are on screen, with two binary searches a row.
+ */
+public final class HitIndex {
+    //Per row (indexed by depth): the heads left to right, their x's, and how many there are
+    private int[][] ids = new int[0][];
+    private double[][] xs = new double[0][];
+    private int[] sizes = new int[0];
+    //Per row: where it is on screen and how big its heads are
+    private double[] rowY = new double[0], radiusX = new double[0];
+    private double radiusY = 0;
+    private int rows = 0;
+
+    /*Read every row out of a fresh layout of tree*/
+    public void rebuild(HydraTree tree, HydraLayout layout) {
+        rows = layout.levelCount();
+        if (sizes.length < rows) {
+            int capacity = Math.max(rows, sizes.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            rowY = Arrays.copyOf(rowY, capacity);
+            radiusX = Arrays.copyOf(radiusX, capacity);
+        }
+        for (int d = 0; d < rows; d++) {
+            readRow(tree, layout, d);
+        }
+        radiusY = layout.radiusY();
+    }
+
+    /*
+     * Catch up with a layout of tree redone after the chop(s) in changes. Only the rows the chop touched are
+     * read, so this only works for layouts that leave untouched rows alone (like LevelLayout).
+     */
+    public void update(HydraTree tree, HydraLayout layout, ChopDelta changes) {
+        if (!changes.isIncremental() || layout.levelCount() != rows) {
+            rebuild(tree, layout);
+            return;
+        }
+        boolean[] touched = new boolean[rows];
+        for (int i = 0; i < changes.removedCount(); i++) {
+            touched[changes.removedDepth(i)] = true;
+        }
+        for (int i = 0; i < changes.regrownCount(); i++) {
+            int root = changes.regrown(i);
+            for (int n = root; n != HydraTree.NONE; n = tree.preOrderNext(n, root)) {
+                touched[tree.depth(n)] = true;
+            }
+        }
+        for (int d = 0; d < rows; d++) {
+            if (touched[d]) {
+                readRow(tree, layout, d);
+            }
+        }
+    }
+
+    /*The head whose ellipse covers (x, y), or HydraTree.NONE*/
+    public int headAt(double x, double y) {
+        int d = rowAt(y);
+        if (d < 0 || radiusX[d] <= 0) {
+            return HydraTree.NONE;
+        }
+        //The two heads either side of x are the only ones that can cover it
+        int i = Arrays.binarySearch(xs[d], 0, sizes[d], x);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (int j = Math.max(0, i - 1); j <= i && j < sizes[d]; j++) {
+            double dx = (x - xs[d][j]) / radiusX[d];
+            double dy = (y - rowY[d]) / radiusY;
+            if (dx * dx + dy * dy <= 1) {
+                return ids[d][j];
+            }
+        }
+        return HydraTree.NONE;
+    }
+
+    /*The row whose heads span y, or -1 if y is between rows*/
+    public int rowAt(double y) {
+        //Rows go up the screen as they go deeper, so rowY is decreasing
+        int lo = 0, hi = rows - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rowY[mid] - radiusY > y) {
+                lo = mid + 1;
+            } else if (rowY[mid] + radiusY < y) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    //<Rows>
+    //Everything indexed so far, row by row, so a renderer can draw just the part that's on screen
+    public int rowSize(int d) {
+        return sizes[d];
+    }
+
+    /*The i-th head from the left on row d*/
+    public int rowHead(int d, int i) {
+        return ids[d][i];
+    }
+
+    public double rowX(int d, int i) {
+        return xs[d][i];
+    }
+
+    public double rowY(int d) {
+        return rowY[d];
+    }
+
+    /*Index of the first head on row d at or right of x (rowSize(d) if there isn't one)*/
+    public int firstFrom(int d, double x) {
+        int lo = 0, hi = sizes[d];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[d][mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    //</Rows>
+
+    //<Book Keeping>
+    private void readRow(HydraTree tree, HydraLayout layout, int d) {
+        int size = tree.levelSize(d);
+        if (ids[d] == null || ids[d].length < size) {
+            int capacity = Math.max(size, ids[d] == null ? 4 : ids[d].length * 2);
+            ids[d] = new int[capacity];
+            xs[d] = new double[capacity];
+        }
+        int i = 0;
+        for (int n = tree.levelFirst(d); n != HydraTree.NONE; n = tree.levelNext(n)) {
+            ids[d][i] = n;
+            xs[d][i] = layout.x(n);
+            i++;
+        }
+        sizes[d] = size;
+        rowY[d] = size > 0 ? layout.y(tree.levelFirst(d)) : 0;
+        radiusX[d] = layout.radiusX(d);
+    }
+    //</Book Keeping>
+}
@@ -0,0 +1,328 @@
+package main.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+
+/*
+ * Writes a Hydra (or part of one) out for debugging, straight to any Appendable, so nothing the size of the
+ * Hydra is ever built up in memory. Three formats:
+ * 	INDENT: one line per head, two spaces per level
+ * 	JSON: nested objects with a "children" array
+ * 	DOT: a Graphviz digraph
+ * Big Hydras can be cut down to size:
+ * 	maxDepth: heads deeper than this aren't written, their parent says how many are hidden
+ * 	maxNodes: stop after writing this many heads
+ * 	compressRuns: a run of siblings that are exact copies of each other is written once with a count
+ * 	(re-growth makes lots of these, so this is on by default)
+ * Only heads that get written are looked at, plus a limited look-ahead: comparing siblings for a run, and
+ * counting what a head hides. Once lookAhead heads have gone on that, runs aren't compressed any more and
+ * hidden counts are written as "at least" (N+). So a dump of a few heads stays cheap however big the Hydra is.
+ */
+public final class HydraDump {
+    public enum Format {
+        INDENT, JSON, DOT
+    }
+
+    private Format format = Format.INDENT;
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    private boolean compressRuns = true;
+    private long lookAhead = 1 << 24;
+
+    public HydraDump format(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /*Levels below the starting head to write (0 writes just the starting head)*/
+    public HydraDump maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /*Heads to write before giving up (a run of copies counts as one)*/
+    public HydraDump maxNodes(long maxNodes) {
+        this.maxNodes = Math.max(maxNodes, 1);
+        return this;
+    }
+
+    public HydraDump compressRuns(boolean compressRuns) {
+        this.compressRuns = compressRuns;
+        return this;
+    }
+
+    /*Heads that may be looked at (per dump) on top of the ones written, for runs and hidden counts*/
+    public HydraDump lookAhead(long lookAhead) {
+        this.lookAhead = Math.max(lookAhead, 0);
+        return this;
+    }
+
+    /*The dump as a String. Only for Hydras (or limits) small enough to fit in one.*/
+    public String toString(HydraTree tree, int from) {
+        StringBuilder retVal = new StringBuilder();
+        try {
+            dump(tree, from, retVal);
+        } catch (IOException e) {
+            //StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return retVal.toString();
+    }
+
+    /*Write the subtree under from to out. Walks the tree iteratively, so any height is fine.*/
+    public void dump(HydraTree tree, int from, Appendable out) throws IOException {
+        Subtrees subtrees = new Subtrees(tree, compressRuns, lookAhead);
+        //Which levels already have an item written (JSON needs commas between them)
+        BitSet started = new BitSet();
+        //The run of the head that's open on each level, for when we climb back to it
+        IntList runs = new IntList();
+        long written = 0;
+
+        begin(out);
+        int node = from;
+        int run = 1;
+        walk:
+        while (true) {
+            int level = tree.depth(node) - tree.depth(from);
+            if (written >= maxNodes) {
+                //Out of room: say so, then close everything that's still open
+                cut(out, tree, node, from, level, started, written);
+                while (level > 0) {
+                    level--;
+                    closeParent(out, level);
+                }
+                break;
+            }
+
+            run = node == from ? 1 : subtrees.runLength(node);
+            if (level == runs.size()) {
+                runs.add(run);
+            } else {
+                runs.set(level, run);
+            }
+            boolean descend = tree.firstChild(node) != HydraTree.NONE && level < maxDepth;
+            long hidden = descend || tree.firstChild(node) == HydraTree.NONE ? 0 : subtrees.hidden(node);
+            open(out, tree, node, level, run, hidden, hidden > 0 && subtrees.lastHiddenWasCut(), started);
+            written++;
+            if (descend) {
+                started.clear(level + 1);
+                openChildren(out);
+                node = tree.firstChild(node);
+                continue;
+            }
+            closeLeaf(out);
+
+            //Next head: skip the rest of our run, or climb until a parent has one
+            while (node != from) {
+                int next = subtrees.afterRun(node, run);
+                if (next != HydraTree.NONE) {
+                    node = next;
+                    continue walk;
+                }
+                node = tree.parent(node);
+                level--;
+                closeParent(out, level);
+                run = runs.get(level);
+            }
+            break;
+        }
+        end(out);
+    }
+
+    //<Formats>
+    private void begin(Appendable out) throws IOException {
+        if (format == Format.DOT) {
+            out.append("digraph hydra {\n");
+        }
+    }
+
+    private void end(Appendable out) throws IOException {
+        if (format == Format.DOT) {
+            out.append("}\n");
+        } else if (format == Format.JSON) {
+            out.append('\n');
+        }
+    }
+
+    //hidden: heads under node that aren't written (or at least that many, if counting them ran out of look-ahead)
+    private void open(Appendable out, HydraTree tree, int node, int level, int run, long hidden, boolean atLeast, BitSet started) throws IOException {
+        String more = atLeast ? "+" : "";
+        String name = tree.isBody(node) ? "Body" : "Head";
+        switch (format) {
+            case INDENT:
+                indent(out, level);
+                out.append(name);
+                if (tree.childCount(node) > 0) {
+                    out.append(" [").append(String.valueOf(tree.childCount(node))).append(']');
+                }
+                if (run > 1) {
+                    out.append(" \u00d7").append(String.valueOf(run)).append(" identical subtrees");
+                }
+                if (hidden > 0) {
+                    out.append(" \u2026 ").append(String.valueOf(hidden)).append(more).append(" heads below");
+                }
+                out.append('\n');
+                break;
+            case JSON:
+                if (started.get(level)) {
+                    out.append(',');
+                }
+                started.set(level);
+                out.append("{\"id\":").append(String.valueOf(node));
+                if (tree.isBody(node)) {
+                    out.append(",\"body\":true");
+                }
+                if (run > 1) {
+                    out.append(",\"repeat\":").append(String.valueOf(run));
+                }
+                if (hidden > 0) {
+                    out.append(atLeast ? ",\"hiddenAtLeast\":" : ",\"hidden\":").append(String.valueOf(hidden));
+                }
+                break;
+            case DOT:
+                out.append("  n").append(String.valueOf(node)).append(" [label=\"").append(name);
+                if (run > 1) {
+                    out.append(" \u00d7").append(String.valueOf(run));
+                }
+                if (hidden > 0) {
+                    out.append(" +").append(String.valueOf(hidden)).append(more);
+                }
+                out.append("\"];\n");
+                if (level > 0) {
+                    edge(out, tree.parent(node), "n" + node);
+                }
+                break;
+        }
+    }
+
+    private void openChildren(Appendable out) throws IOException {
+        if (format == Format.JSON) {
+            out.append(",\"children\":[");
+        }
+    }
+
+    //A head we didn't go inside
+    private void closeLeaf(Appendable out) throws IOException {
+        if (format == Format.JSON) {
+            out.append('}');
+        }
+    }
+
+    //A head whose children we wrote out (level is the head's own level)
+    private void closeParent(Appendable out, int level) throws IOException {
+        if (format == Format.JSON) {
+            out.append("]}");
+        }
+    }
+
+    //Ran into maxNodes at node
+    private void cut(Appendable out, HydraTree tree, int node, int from, int level, BitSet started, long written) throws IOException {
+        switch (format) {
+            case INDENT:
+                indent(out, level);
+                out.append("\u2026 stopped after ").append(String.valueOf(written)).append(" heads\n");
+                break;
+            case JSON:
+                if (started.get(level)) {
+                    out.append(',');
+                }
+                out.append("{\"truncated\":true}");
+                break;
+            case DOT:
+                out.append("  cut [label=\"\u2026 stopped after ").append(String.valueOf(written)).append(" heads\", shape=plaintext];\n");
+                if (node != from) {
+                    edge(out, tree.parent(node), "cut");
+                }
+                break;
+        }
+    }
+
+    private static void edge(Appendable out, int parent, String child) throws IOException {
+        out.append("  n").append(String.valueOf(parent)).append(" -> ").append(child).append(";\n");
+    }
+
+    private static void indent(Appendable out, int level) throws IOException {
+        for (int i = 0; i < level; i++) {
+            out.append("  ");
+        }
+    }
+    //</Formats>
+
+    /*
+     * Looks past the heads being written, for runs and hidden counts, but only lookAhead heads in all.
+     * Nothing is worked out up front: two siblings are compared head by head when the dump gets to them.
+     */
+    private static final class Subtrees {
+        private final HydraTree tree;
+        private final boolean runs;
+        private long budget;
+        //True if the last hidden() ran out of look-ahead before it was done
+        private boolean cut = false;
+
+        Subtrees(HydraTree tree, boolean runs, long budget) {
+            this.tree = tree;
+            this.runs = runs;
+            this.budget = budget;
+        }
+
+        boolean lastHiddenWasCut() {
+            return cut;
+        }
+
+        //Heads under node, not counting node, as far as the look-ahead goes (its children, at the very least)
+        long hidden(int node) {
+            long retVal = 0;
+            cut = false;
+            for (int n = tree.preOrderNext(node, node); n != HydraTree.NONE; n = tree.preOrderNext(n, node)) {
+                if (!spend()) {
+                    cut = true;
+                    return Math.max(retVal, tree.childCount(node));
+                }
+                retVal++;
+            }
+            return retVal;
+        }
+
+        //How many siblings in a row (starting with node) are copies of node
+        int runLength(int node) {
+            int retVal = 1;
+            if (!runs) {
+                return retVal;
+            }
+            for (int s = tree.nextSibling(node); s != HydraTree.NONE && sameShape(node, s); s = tree.nextSibling(s)) {
+                retVal++;
+            }
+            return retVal;
+        }
+
+        //The sibling after a run of run heads starting at node
+        int afterRun(int node, int run) {
+            for (int i = 0; i < run && node != HydraTree.NONE; i++) {
+                node = tree.nextSibling(node);
+            }
+            return node;
+        }
+
+        //Same ordered shape: a pre-order walk of both sees the same child counts in the same order
+        private boolean sameShape(int a, int b) {
+            int x = a, y = b;
+            while (x != HydraTree.NONE && y != HydraTree.NONE) {
+                if (!spend() || tree.childCount(x) != tree.childCount(y)) {
+                    return false;
+                }
+                x = tree.preOrderNext(x, a);
+                y = tree.preOrderNext(y, b);
+            }
+            return x == y;
+        }
+
+        private boolean spend() {
+            if (budget == 0) {
+                return false;
+            }
+            budget--;
+            return true;
+        }
+    }
+}
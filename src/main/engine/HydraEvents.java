@@ -0,0 +1,117 @@
+package main.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Flight Recorder events for the places time goes: chops, copies of the Hydra, drawing and files.
+ * They cost next to nothing unless a recording is running, e.g.
+ * 	java -XX:StartFlightRecording=filename=hydra.jfr,settings=profile main.HydraGame
+ * and then open hydra.jfr in JDK Mission Control (look under "Hydra Battle").
+ * Usage is always the same: make one, begin(), do the work, fill it in and commit().
+ * jdk.jfr is why the game needs JDK 11 or newer.
+ */
+public final class HydraEvents {
+    private HydraEvents() {
+    }
+
+    @Name("hydra.Chop")
+    @Label("Chop")
+    @Category({"Hydra Battle", "Engine"})
+    @StackTrace(false)
+    public static final class Chop extends Event {
+        @Label("Head")
+        public int head;
+
+        @Label("Copies")
+        public int copies;
+
+        @Label("Heads Grown")
+        @Description("Heads that grew back (the chopped one is not subtracted)")
+        public int grown;
+
+        @Label("Heads")
+        @Description("Heads after the chop, counting the body")
+        public int heads;
+    }
+
+    @Name("hydra.RandomChop")
+    @Label("Random Chop")
+    @Category({"Hydra Battle", "Engine"})
+    @StackTrace(false)
+    public static final class RandomChop extends Event {
+        @Label("Choppable Heads")
+        public int choppable;
+
+        @Label("Result")
+        public String result;
+    }
+
+    @Name("hydra.Clone")
+    @Label("Clone")
+    @Category({"Hydra Battle", "Engine"})
+    public static final class Clone extends Event {
+        @Label("Heads")
+        public int heads;
+    }
+
+    @Name("hydra.Transfer")
+    @Label("Import/Export")
+    @Category({"Hydra Battle", "Files"})
+    public static final class Transfer extends Event {
+        @Label("Direction")
+        public String direction;
+
+        @Label("Heads")
+        public int heads;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("hydra.Frame")
+    @Label("Frame")
+    @Category({"Hydra Battle", "Drawing"})
+    @StackTrace(false)
+    public static final class Frame extends Event {
+        @Label("Renderer")
+        public String renderer;
+
+        @Label("Heads")
+        public int heads;
+    }
+
+    /*One step of drawing a frame (layout, building shapes, lines...), nested inside a Frame*/
+    @Name("hydra.RenderPhase")
+    @Label("Render Phase")
+    @Category({"Hydra Battle", "Drawing"})
+    @StackTrace(false)
+    public static final class RenderPhase extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Heads")
+        public int heads;
+
+        /*Begin timing phase. end() it when it's done.*/
+        public static RenderPhase start(String phase) {
+            RenderPhase retVal = new RenderPhase();
+            retVal.phase = phase;
+            retVal.begin();
+            return retVal;
+        }
+
+        public void end(int heads) {
+            if (shouldCommit()) {
+                this.heads = heads;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package main.engine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * The binary Hydra file:
+ * 	"HYDR"               4 bytes of magic
+ * 	version              1 byte
+ * 	head count           varint, including the body
+ * 	child counts         one varint per head, in pre-order, starting with the body
+ * Varints are 7 bits a byte, low bits first, high bit set on every byte but the last. So a head with
+ * fewer than 128 children is one byte, and a Hydra is about a byte per head.
+ *
+ * Version 2 (writeCompact) writes every distinct subtree once instead, which is what a Hydra mostly is
+ * after a few chops with lots of copies:
+ * 	"HYDR", version 2, head count (varint, including the body)
+ * 	shape count          varint
+ * 	shapes               per shape: its number of runs, then (shape, repeat) per run, all varints
+ * A run is repeat identical siblings in a row, and a shape can only use shapes written before it, so
+ * the leaf comes first and the body is the last shape. Sibling order is kept, so reading it back builds
+ * exactly the Hydra version 1 would, ids and all.
+ *
+ * Everything goes through one reusable buffer, the tree is never turned into a String.
+ */
+public final class HydraFormat {
+    static final byte[] MAGIC = {'H', 'Y', 'D', 'R'};
+    public static final int VERSION = 1;
+    public static final int COMPACT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    //The most heads to make room for up front when we can't tell how much file is left to back them up
+    private static final int UNCHECKED_CAPACITY = 1 << 16;
+
+    private HydraFormat() {
+    }
+
+    /*
+     * Where readers get their bytes from, one at a time. next() returns -1 at the end.
+     * remaining() is how many bytes next() still has, or -1 if there's no telling (e.g. a stream).
+     */
+    interface Source {
+        int next() throws IOException;
+
+        long remaining() throws IOException;
+    }
+
+    public static void write(HydraTree tree, Path file) throws IOException {
+        FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(tree, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void write(HydraTree tree, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        putVarint(buffer, tree.size());
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            //A varint is never more than 5 bytes
+            if (buffer.remaining() < 5) {
+                drain(buffer, out);
+            }
+            putVarint(buffer, tree.childCount(n));
+        }
+        drain(buffer, out);
+    }
+
+    public static void writeCompact(HydraTree tree, Path file) throws IOException {
+        FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeCompact(tree, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Version 2: each distinct subtree once, siblings as runs. One post-order pass to find the shapes,
+     * then only the shapes are written, so a Hydra that's mostly copies comes out tiny.
+     * A Hydra with no copies at all is about three times as big as version 1 would be.
+     */
+    public static void writeCompact(HydraTree tree, WritableByteChannel out) throws IOException {
+        int[] shape = new int[tree.idBound()];
+        HashMap<Key, Integer> ids = new HashMap<Key, Integer>();
+        //Every shape's runs, one after another, each preceded by its run count
+        IntList dictionary = new IntList();
+        IntList runs = new IntList();
+        int root = tree.root();
+        for (int n = tree.postOrderFirst(root); n != HydraTree.NONE; n = tree.postOrderNext(n, root)) {
+            runs.clear();
+            for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                int last = runs.size() - 2;
+                if (last >= 0 && runs.get(last) == shape[c]) {
+                    runs.set(last + 1, runs.get(last + 1) + 1);
+                } else {
+                    runs.add(shape[c]);
+                    runs.add(1);
+                }
+            }
+            Key key = new Key(runs.toArray());
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+                dictionary.add(runs.size() / 2);
+                for (int i = 0; i < runs.size(); i++) {
+                    dictionary.add(runs.get(i));
+                }
+            }
+            shape[n] = id;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.put(MAGIC);
+        buffer.put((byte) COMPACT_VERSION);
+        putVarint(buffer, tree.size());
+        putVarint(buffer, ids.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            if (buffer.remaining() < 5) {
+                drain(buffer, out);
+            }
+            putVarint(buffer, dictionary.get(i));
+        }
+        drain(buffer, out);
+    }
+
+    /*True if the file starts with the binary format's magic (so it isn't a legacy digit file)*/
+    public static boolean isHydraFile(Path file) throws IOException {
+        FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+            while (head.hasRemaining() && in.read(head) >= 0) {
+                //Keep reading until we have the whole header (or the file ends)
+            }
+            return !head.hasRemaining() && hasMagic(head.array());
+        } finally {
+            in.close();
+        }
+    }
+
+    public static HydraTree read(Path file) throws IOException {
+        FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a Hydra written by write() or writeCompact().
+     *
+     * @throws IOException if it isn't a Hydra file, or it is cut short or doesn't add up
+     */
+    public static HydraTree read(final ReadableByteChannel in) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();
+        return read(new Source() {
+            @Override
+            public int next() throws IOException {
+                //Refill the buffer from the channel when it runs dry
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read;
+                    do {
+                        read = in.read(buffer);
+                    } while (read == 0);
+                    buffer.flip();
+                    if (read < 0) {
+                        return -1;
+                    }
+                }
+                return buffer.get() & 0xFF;
+            }
+
+            @Override
+            public long remaining() throws IOException {
+                if (!(in instanceof SeekableByteChannel)) {
+                    return -1;
+                }
+                SeekableByteChannel file = (SeekableByteChannel) in;
+                return file.size() - file.position() + buffer.remaining();
+            }
+        });
+    }
+
+    /*Read a whole Hydra (magic and all) from in, one pass, no recursion*/
+    static HydraTree read(Source in) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (nextByte(in) != (MAGIC[i] & 0xFF)) {
+                throw new IOException("Not a Hydra file.");
+            }
+        }
+        int version = nextByte(in);
+        if (version != VERSION && version != COMPACT_VERSION) {
+            throw new IOException("Unsupported Hydra file version " + version + ".");
+        }
+        int size = getVarint(in);
+        if (size < 1) {
+            throw new IOException("A Hydra needs at least a body.");
+        }
+        if (size > HydraTree.MAX_CAPACITY) {
+            throw new IOException("Too many heads: " + size + ".");
+        }
+        HydraTree retVal = version == VERSION ? readChildCounts(in, size) : readShapes(in, size);
+        if (in.next() >= 0) {
+            throw new IOException("Extra bytes after the Hydra.");
+        }
+        return retVal;
+    }
+
+    //Version 1: child counts in pre-order
+    private static HydraTree readChildCounts(Source in, int size) throws IOException {
+        //Every head's child count is at least a byte, so the header can't promise more heads than that
+        long bytesLeft = in.remaining();
+        if (bytesLeft >= 0 && size > bytesLeft) {
+            throw new EOFException("Hydra file is too short for " + size + " heads (" + bytesLeft + " bytes left).");
+        }
+        HydraTree retVal = new HydraTree(true, capacityFor(size, bytesLeft));
+        //Heads still waiting for children, and how many each is still owed
+        IntList open = new IntList();
+        IntList owed = new IntList();
+        int bodyChildren = getVarint(in);
+        if (bodyChildren > 0) {
+            open.add(retVal.root());
+            owed.add(bodyChildren);
+        }
+        for (int i = 1; i < size; i++) {
+            if (open.isEmpty()) {
+                throw new IOException("Head " + i + " has no parent.");
+            }
+            int parent = open.get(open.size() - 1);
+            int child = retVal.addChild(parent);
+            int left = owed.get(owed.size() - 1) - 1;
+            if (left == 0) {
+                open.pop();
+                owed.pop();
+            } else {
+                owed.set(owed.size() - 1, left);
+            }
+            int children = getVarint(in);
+            if (children > 0) {
+                open.add(child);
+                owed.add(children);
+            }
+        }
+        if (!open.isEmpty()) {
+            throw new IOException("Hydra file ends before every head has its children.");
+        }
+        return retVal;
+    }
+
+    /*
+     * Version 2: the shape dictionary, then the body (the last shape) is grown head by head in pre-order.
+     * Sizes are checked against the head count before anything is built, so a bad file can't make us
+     * build forever. Building is one addChild per head, nothing else.
+     */
+    private static HydraTree readShapes(Source in, int size) throws IOException {
+        int shapes = getVarint(in);
+        if (shapes < 1) {
+            throw new IOException("A Hydra needs at least a body.");
+        }
+        //Every shape has at least one head of its own, and takes at least a byte (its run count)
+        long bytesLeft = in.remaining();
+        if (shapes > size) {
+            throw new IOException("More shapes (" + shapes + ") than heads (" + size + ").");
+        }
+        if (bytesLeft >= 0 && shapes > bytesLeft) {
+            throw new EOFException("Hydra file is too short for " + shapes + " shapes (" + bytesLeft + " bytes left).");
+        }
+        //Where each shape's runs start in runs, as (shape, repeat) pairs
+        int room = capacityFor(shapes, bytesLeft);
+        int[] start = new int[room + 1];
+        long[] heads = new long[room];
+        IntList runs = new IntList();
+        for (int s = 0; s < shapes; s++) {
+            if (s == heads.length) {
+                room = (int) Math.min(2L * room, shapes);
+                start = Arrays.copyOf(start, room + 1);
+                heads = Arrays.copyOf(heads, room);
+            }
+            start[s] = runs.size();
+            int count = getVarint(in);
+            heads[s] = 1;
+            for (int r = 0; r < count; r++) {
+                int kind = getVarint(in);
+                int repeat = getVarint(in);
+                if (kind >= s || repeat < 1) {
+                    throw new IOException("Shape " + s + " has a bad run (shape " + kind + " \u00d7" + repeat + ").");
+                }
+                runs.add(kind);
+                runs.add(repeat);
+                //Anything over the head count is wrong anyway, so stop counting there (and never overflow)
+                heads[s] = Math.min(heads[s] + repeat * heads[kind], (long) size + 1);
+            }
+        }
+        start[shapes] = runs.size();
+        int body = shapes - 1;
+        if (heads[body] != size) {
+            throw new IOException("The shapes make " + (heads[body] > size ? "more" : "fewer") + " than " + size + " heads.");
+        }
+
+        HydraTree retVal = new HydraTree(true, size);
+        //Depth-first: the head being filled in, its shape, which run it's on and how many of that run are left
+        IntList node = new IntList(), shape = new IntList(), run = new IntList(), left = new IntList();
+        node.add(retVal.root());
+        shape.add(body);
+        run.add(start[body] - 2);
+        left.add(0);
+        while (!node.isEmpty()) {
+            int top = node.size() - 1;
+            int s = shape.get(top);
+            if (left.get(top) == 0) {
+                int next = run.get(top) + 2;
+                if (next == start[s + 1]) {
+                    node.pop();
+                    shape.pop();
+                    run.pop();
+                    left.pop();
+                    continue;
+                }
+                run.set(top, next);
+                left.set(top, runs.get(next + 1));
+            }
+            left.set(top, left.get(top) - 1);
+            int kind = runs.get(run.get(top));
+            int child = retVal.addChild(node.get(top));
+            if (start[kind] != start[kind + 1]) {
+                node.add(child);
+                shape.add(kind);
+                run.add(start[kind] - 2);
+                left.add(0);
+            }
+        }
+        return retVal;
+    }
+
+    //<Book Keeping>
+    //True if these are the first bytes of a binary Hydra file
+    static boolean hasMagic(byte[] head) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /*
+     * How many heads to make room for when a header says there are heads of them (already checked against
+     * the bytes left, if we know them). If we don't, start smaller and let the tree grow as heads turn up.
+     */
+    static int capacityFor(int heads, long bytesLeft) {
+        return bytesLeft >= 0 ? heads : Math.min(heads, UNCHECKED_CAPACITY);
+    }
+
+    static int getVarint(Source in) throws IOException {
+        int retVal = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = nextByte(in);
+            retVal |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (retVal < 0) {
+                    throw new IOException("Count out of range.");
+                }
+                return retVal;
+            }
+        }
+        throw new IOException("Varint too long.");
+    }
+
+    private static int nextByte(Source in) throws IOException {
+        int retVal = in.next();
+        if (retVal < 0) {
+            throw new EOFException("Hydra file ends early.");
+        }
+        return retVal;
+    }
+
+    static void drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    //A shape's runs, as a hash key
+    private static final class Key {
+        private final int[] runs;
+        private final int hash;
+
+        Key(int[] runs) {
+            this.runs = runs;
+            this.hash = Arrays.hashCode(runs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(runs, ((Key) o).runs);
+        }
+    }
+    //</Book Keeping>
+}
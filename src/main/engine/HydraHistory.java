@@ -0,0 +1,147 @@
+package main.engine;
+
+import java.util.ArrayDeque;
+
+/*
+ * The chops of a game's Hydra, for undo/redo.
+ *
+ * Instead of keeping whole versions, this keeps a log of where each chop happened: the head, its parent,
+ * the sibling it sat after and how many copies grew back. That is a few ints per chop however big the
+ * Hydra or its families are, and the copies are just a count (they are copies of the parent, which the
+ * tree still has). An undo patches the tree where the chop was: the copies come off the end of the
+ * grandparent's children and the head goes back in its old spot. A redo is the chop again. Either way
+ * that is O(depth + what the chop grew back): the regrown heads are real heads in the tree, so they have
+ * to come off (or go back on) one by one.
+ *
+ * The log can keep plain ids because HydraTree recycles them last in, first out: an undo frees exactly
+ * the ids the chop took, in reverse, so the head comes back with its old id and a redo hands the copies
+ * the same ids as the first time. That only holds if the tree is changed through this class alone
+ * between chops, so anything else (an import, auto-play) has to reset() it.
+ *
+ * The whole session is kept, unless a cap is asked for (then the oldest chops are dropped past it).
+ */
+public final class HydraHistory {
+    /*One chop, read off the tree before it happened*/
+    public static final class Chop {
+        final int head, parent, after, copies;
+        //Heads the chop grew back (not counting the one it chopped off)
+        final long grown;
+
+        Chop(int head, int parent, int after, int copies, long grown) {
+            this.head = head;
+            this.parent = parent;
+            this.after = after;
+            this.copies = copies;
+            this.grown = grown;
+        }
+    }
+
+    private final int maxChops;
+    //Chops that can be undone, oldest first, and chops that can be redone, next one first
+    private final ArrayDeque<Chop> done = new ArrayDeque<Chop>();
+    private final ArrayDeque<Chop> undone = new ArrayDeque<Chop>();
+    //Heads in the version on screen (the body counts)
+    private long size;
+
+    public HydraHistory(HydraTree start) {
+        this(start, Integer.MAX_VALUE);
+    }
+
+    /*Only keep the last maxChops chops*/
+    public HydraHistory(HydraTree start, int maxChops) {
+        if (maxChops < 0) {
+            throw new IllegalArgumentException("Can't keep " + maxChops + " chops.");
+        }
+        this.maxChops = maxChops;
+        reset(start);
+    }
+
+    /*Forget everything and start again from tree (e.g. after an import)*/
+    public void reset(HydraTree tree) {
+        done.clear();
+        undone.clear();
+        size = tree.size();
+    }
+
+    /**
+     * Where chopping head would happen and what it would grow. Call it on the tree from BEFORE the chop,
+     * then record() it once the chop went through.
+     */
+    public static Chop chopOf(HydraTree tree, int head, int copies) {
+        if (!tree.canBeChopped(head)) {
+            throw new IllegalArgumentException("Head " + head + " can't be chopped.");
+        }
+        return new Chop(head, tree.parent(head), tree.prevSibling(head), copies, tree.regrowthSize(head, copies));
+    }
+
+    /*Record chopping head off before (the tree as it was BEFORE the chop). Anything that could have been redone is dropped.*/
+    public void record(HydraTree before, int head, int copies) {
+        record(chopOf(before, head, copies));
+    }
+
+    public void record(Chop chop) {
+        undone.clear();
+        done.addLast(chop);
+        if (done.size() > maxChops) {
+            done.removeFirst();
+        }
+        size += chop.grown - 1;
+    }
+
+    public boolean canUndo() {
+        return !done.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !undone.isEmpty();
+    }
+
+    /*Take back the last chop in tree. Returns false (and leaves tree alone) if there is nothing to undo.*/
+    public boolean undo(HydraTree tree) {
+        if (!canUndo()) {
+            return false;
+        }
+        Chop chop = done.removeLast();
+        //The copies are the grandparent's last children, and came last, so they go first
+        if (grows(tree, chop.parent)) {
+            int grandparent = tree.parent(chop.parent);
+            for (int i = 0; i < chop.copies; i++) {
+                tree.deleteSubtree(tree.lastChild(grandparent));
+            }
+        }
+        if (tree.addChildAfter(chop.parent, chop.after) != chop.head) {
+            throw new IllegalStateException("The Hydra was changed behind the history's back.");
+        }
+        undone.addFirst(chop);
+        size -= chop.grown - 1;
+        return true;
+    }
+
+    public boolean redo(HydraTree tree) {
+        if (!canRedo()) {
+            return false;
+        }
+        Chop chop = undone.removeFirst();
+        if (!tree.chop(chop.head, chop.copies)) {
+            throw new IllegalStateException("The Hydra was changed behind the history's back.");
+        }
+        done.addLast(chop);
+        size += chop.grown - 1;
+        return true;
+    }
+
+    /*Versions kept, counting the one before the oldest chop*/
+    public int versionCount() {
+        return done.size() + undone.size() + 1;
+    }
+
+    /*Heads in the version on screen (the body counts)*/
+    public long size() {
+        return size;
+    }
+
+    //The same rule as HydraTree.chop: nothing grows back onto the body's level
+    private static boolean grows(HydraTree tree, int parent) {
+        return !tree.isBody(parent) && tree.parent(parent) != HydraTree.NONE;
+    }
+}
@@ -0,0 +1,194 @@
+package main.engine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Loads a Hydra file of any size: the binary format (see HydraFormat) or the old one-digit-per-head text.
+ * The file is memory-mapped a window at a time (a single mapping can't be bigger than 2GB), read once front
+ * to back, and the tree is built as we go. No recursion, no Strings, nothing allocated per head except
+ * the head itself.
+ */
+public final class HydraImporter {
+    //How much of the file is mapped at once
+    private static final long WINDOW = 1L << 30;
+    //The most heads a text Hydra gets room for before any are read
+    private static final int LEGACY_CAPACITY = 1 << 20;
+
+    private HydraImporter() {
+    }
+
+    /*What got imported, and how fast*/
+    public static final class Result {
+        private final HydraTree tree;
+        private final long bytes, nanos;
+        private final boolean binary;
+
+        Result(HydraTree tree, long bytes, long nanos, boolean binary) {
+            this.tree = tree;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.binary = binary;
+        }
+
+        public HydraTree tree() {
+            return tree;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        //False for the old digit files
+        public boolean isBinary() {
+            return binary;
+        }
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            //Binary files are about a byte a head, so heads/s says more than MB/s
+            double headsPerSecond = nanos == 0 ? 0 : tree.size() / (nanos / 1e9);
+            return String.format("Imported %d heads (%.1f MB) in %.1f ms: %.1f MB/s, %.1f M heads/s", tree.size(), bytes / 1e6, nanos / 1e6, megabytesPerSecond(), headsPerSecond / 1e6);
+        }
+    }
+
+    /**
+     * Import a Hydra file, binary or legacy text.
+     *
+     * @throws IOException if the file can't be read or isn't a complete, well-formed Hydra
+     */
+    public static Result importFile(Path file) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            Mapped in = new Mapped(channel, size);
+            boolean binary = isBinary(in, size);
+            HydraTree tree = binary ? HydraFormat.read(in) : readLegacy(in);
+            return new Result(tree, size, System.nanoTime() - start, binary);
+        } finally {
+            channel.close();
+        }
+    }
+
+    //Peek at the first bytes, then go back to the start
+    private static boolean isBinary(Mapped in, long size) throws IOException {
+        if (size < HydraFormat.MAGIC.length) {
+            return false;
+        }
+        byte[] head = new byte[HydraFormat.MAGIC.length];
+        for (int i = 0; i < head.length; i++) {
+            head[i] = (byte) in.next();
+        }
+        in.rewind();
+        return HydraFormat.hasMagic(head);
+    }
+
+    /**
+     * The old text format: the body's number of children, then (in pre-order) for every head, the number of
+     * children each of its children has. One digit per number. Trailing white space is ignored.
+     * Each head's children are added as soon as its own digits are read, so the next digits always belong
+     * to the next head of the walk.
+     */
+    static HydraTree readLegacy(HydraFormat.Source in) throws IOException {
+        //Not even the body's digit? Then it isn't a Hydra, and we haven't made room for one
+        long pos = 0;
+        int bodyChildren = digit(in.next(), pos++);
+        int room = legacyCapacity(in.remaining());
+        HydraTree retVal = new HydraTree(true, room);
+        //How many children each head should get, indexed by id
+        IntList expected = new IntList(room);
+        expected.add(bodyChildren);
+        for (int n = retVal.root(); n != HydraTree.NONE; n = retVal.preOrderNext(n, retVal.root())) {
+            for (int i = expected.get(n); i > 0; i--) {
+                int child = retVal.addChild(n);
+                while (expected.size() <= child) {
+                    expected.add(0);
+                }
+                expected.set(child, digit(in.next(), pos++));
+            }
+        }
+        for (int c = in.next(); c >= 0; c = in.next()) {
+            if (!Character.isWhitespace(c)) {
+                throw new IOException("Extra characters after the Hydra at " + pos + ".");
+            }
+            pos++;
+        }
+        return retVal;
+    }
+
+    /*
+     * Room for the heads of a text Hydra with bytesLeft bytes to go (-1 if unknown). A head is one digit, but
+     * the length is only a bound (white space, or junk a few bytes in), so make room for at most
+     * LEGACY_CAPACITY up front, never past what a HydraTree can hold, and let it grow from there.
+     */
+    private static int legacyCapacity(long bytesLeft) {
+        long heads = bytesLeft < 0 ? LEGACY_CAPACITY : bytesLeft + 1;
+        return (int) Math.min(heads, Math.min(LEGACY_CAPACITY, HydraTree.MAX_CAPACITY));
+    }
+
+    private static int digit(int c, long pos) throws IOException {
+        if (c < 0) {
+            throw new EOFException("Hydra ends early at character " + pos + ".");
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Not a digit at character " + pos + ": " + (char) c);
+        }
+        return c - '0';
+    }
+
+    //The file, mapped one window at a time
+    private static final class Mapped implements HydraFormat.Source {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart = 0;
+
+        Mapped(FileChannel channel, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            map(0);
+        }
+
+        @Override
+        public int next() throws IOException {
+            if (!window.hasRemaining()) {
+                if (windowStart + window.capacity() >= size) {
+                    return -1;
+                }
+                map(windowStart + window.capacity());
+            }
+            return window.get() & 0xFF;
+        }
+
+        @Override
+        public long remaining() {
+            return size - windowStart - window.position();
+        }
+
+        void rewind() throws IOException {
+            if (windowStart == 0) {
+                window.rewind();
+            } else {
+                map(0);
+            }
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+        }
+    }
+}
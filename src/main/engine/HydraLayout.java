@@ -0,0 +1,29 @@
+package main.engine;
+
+/*
+ * Where every head of a Hydra goes on screen. Renderers only read the numbers back out, so they don't care
+ * which layout made them.
+ */
+public interface HydraLayout {
+    /*Work out where every head goes. The body is drawn at bodyY.*/
+    void layout(HydraTree tree, double bodyY);
+
+    double x(int id);
+
+    double y(int id);
+
+    /*How many levels the Hydra had at the last layout*/
+    int levelCount();
+
+    /*Number of heads on a level*/
+    int levelSize(int depth);
+
+    /*Number of heads on a level that have children of their own*/
+    int parentCount(int depth);
+
+    /*Half the width of a head on a level*/
+    double radiusX(int depth);
+
+    /*Half the height of a head*/
+    double radiusY();
+}
@@ -0,0 +1,147 @@
+package main.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Running totals for the game and the headless runners (auto-play, the battle server), so anyone can ask
+ * how things are going without a profiler. The JFR events in HydraEvents have the per-call detail.
+ * Everything goes to global() unless a runner is handed its own. Safe from any thread.
+ */
+public final class HydraMetrics {
+    private static final HydraMetrics GLOBAL = new HydraMetrics();
+
+    private final LongAdder chops = new LongAdder();
+    private final LongAdder headsGrown = new LongAdder();
+    private final AtomicLong lastGrown = new AtomicLong();
+    private final AtomicLong liveHeads = new AtomicLong();
+    private final AtomicLong peakHeads = new AtomicLong();
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder frameNanos = new LongAdder();
+    private final AtomicLong lastFrameNanos = new AtomicLong();
+    private final AtomicLong maxFrameNanos = new AtomicLong();
+
+    /*The one everything reports to by default*/
+    public static HydraMetrics global() {
+        return GLOBAL;
+    }
+
+    /*A chop took a Hydra from headsBefore to headsAfter (both counting the body)*/
+    public void chopped(int headsBefore, int headsAfter) {
+        chops.increment();
+        //One head came off, the rest grew
+        long grown = headsAfter - headsBefore + 1;
+        headsGrown.add(grown);
+        lastGrown.lazySet(grown);
+        heads(headsAfter);
+    }
+
+    /*The Hydra being played now has this many heads (after an import, a new game...)*/
+    public void heads(int heads) {
+        liveHeads.lazySet(heads);
+        raise(peakHeads, heads);
+    }
+
+    /*A frame took this long to draw*/
+    public void frame(long nanos) {
+        frames.increment();
+        frameNanos.add(nanos);
+        lastFrameNanos.lazySet(nanos);
+        raise(maxFrameNanos, nanos);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(chops.sum(), headsGrown.sum(), lastGrown.get(), liveHeads.get(), peakHeads.get(),
+                frames.sum(), frameNanos.sum(), lastFrameNanos.get(), maxFrameNanos.get());
+    }
+
+    /*Start counting from zero*/
+    public void reset() {
+        chops.reset();
+        headsGrown.reset();
+        lastGrown.set(0);
+        liveHeads.set(0);
+        peakHeads.set(0);
+        frames.reset();
+        frameNanos.reset();
+        lastFrameNanos.set(0);
+        maxFrameNanos.set(0);
+    }
+
+    //Only ever move a high-water mark up. Usually it's already higher, so that's one read.
+    private static void raise(AtomicLong mark, long value) {
+        long current = mark.get();
+        while (value > current && !mark.compareAndSet(current, value)) {
+            current = mark.get();
+        }
+    }
+
+    /*The numbers at one moment*/
+    public static final class Snapshot {
+        private final long chops, headsGrown, lastGrown, liveHeads, peakHeads;
+        private final long frames, frameNanos, lastFrameNanos, maxFrameNanos;
+
+        Snapshot(long chops, long headsGrown, long lastGrown, long liveHeads, long peakHeads,
+                 long frames, long frameNanos, long lastFrameNanos, long maxFrameNanos) {
+            this.chops = chops;
+            this.headsGrown = headsGrown;
+            this.lastGrown = lastGrown;
+            this.liveHeads = liveHeads;
+            this.peakHeads = peakHeads;
+            this.frames = frames;
+            this.frameNanos = frameNanos;
+            this.lastFrameNanos = lastFrameNanos;
+            this.maxFrameNanos = maxFrameNanos;
+        }
+
+        public long chops() {
+            return chops;
+        }
+
+        /*Heads that grew back, over every chop*/
+        public long headsGrown() {
+            return headsGrown;
+        }
+
+        /*Heads the last chop added*/
+        public long lastGrown() {
+            return lastGrown;
+        }
+
+        public double grownPerChop() {
+            return chops == 0 ? 0 : (double) headsGrown / chops;
+        }
+
+        /*Heads in the Hydra last chopped, imported or started (counting the body)*/
+        public long liveHeads() {
+            return liveHeads;
+        }
+
+        public long peakHeads() {
+            return peakHeads;
+        }
+
+        public long frames() {
+            return frames;
+        }
+
+        public double lastFrameMillis() {
+            return lastFrameNanos / 1e6;
+        }
+
+        public double averageFrameMillis() {
+            return frames == 0 ? 0 : frameNanos / 1e6 / frames;
+        }
+
+        public double maxFrameMillis() {
+            return maxFrameNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heads=%d%npeak heads=%d%nchops=%d%ngrown per chop=%.2f (last %d)%nframes=%d%nframe ms=%.2f (avg %.2f, max %.2f)%n",
+                    liveHeads, peakHeads, chops, grownPerChop(), lastGrown, frames, lastFrameMillis(), averageFrameMillis(), maxFrameMillis());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package main.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.SplittableRandom;
+
+/*
+ * One game of Hydra Battle: the Hydra, the copy count and the rules for chopping, with no UI attached.
+ * The JavaFX game wraps one of these, and the battle server keeps one per client.
+ *
+ * Every method locks the session, so a session can be handed between threads (the server runs each
+ * request on whatever thread it likes). Sessions don't share anything with each other, except the
+ * HydraMetrics they report to (global() unless told otherwise).
+ */
+public final class HydraSession {
+    /*What happened when a head was chopped*/
+    public enum ChopResult {
+        CHOPPED,
+        //The last head is gone
+        DEFEATED,
+        //Not a head of this Hydra (already chopped, or never existed)
+        NO_SUCH_HEAD,
+        //The body, or a head with children
+        NOT_CHOPPABLE,
+        //The Hydra is already over the head limit, or this chop would grow it past it (nothing is chopped)
+        TOO_BIG
+    }
+
+    private final HydraTree tree;
+    private final SplittableRandom random;
+    private int copies = 2;
+    //Never over what the tree can hold, so a chop that's too big is TOO_BIG instead of an exception
+    private int maxHeads = HydraTree.MAX_CAPACITY;
+    private long chops = 0;
+    private HydraMetrics metrics = HydraMetrics.global();
+
+    /*A random Hydra like the game starts with*/
+    public HydraSession(int heads, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.tree = new HydraTree(true);
+        tree.growRandom(heads, random);
+        metrics.heads(tree.size());
+    }
+
+    /*Play start (it is copied, so the original is left alone)*/
+    public HydraSession(HydraTree start, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.tree = start.copy();
+        metrics.heads(tree.size());
+    }
+
+    public synchronized ChopResult chop(int head) {
+        return chop(head, null);
+    }
+
+    /*Chop a head, noting what changed in delta (which may be null)*/
+    public synchronized ChopResult chop(int head, ChopDelta delta) {
+        if (head < 0 || head >= tree.idBound() || !tree.isLive(head)) {
+            return ChopResult.NO_SUCH_HEAD;
+        }
+        if (!tree.canBeChopped(head)) {
+            return ChopResult.NOT_CHOPPABLE;
+        }
+        if (tree.size() > maxHeads || !tree.admits(head, copies, maxHeads)) {
+            return ChopResult.TOO_BIG;
+        }
+        HydraEvents.Chop event = new HydraEvents.Chop();
+        event.begin();
+        int before = tree.size();
+        tree.chop(head, copies, delta);
+        chops++;
+        metrics.chopped(before, tree.size());
+        if (event.shouldCommit()) {
+            event.head = head;
+            event.copies = copies;
+            event.grown = tree.size() - before + 1;
+            event.heads = tree.size();
+            event.commit();
+        }
+        return isDefeated() ? ChopResult.DEFEATED : ChopResult.CHOPPED;
+    }
+
+    /*Chop a random head. Returns NO_SUCH_HEAD if there is nothing left to chop.*/
+    public synchronized ChopResult randomChop(ChopDelta delta) {
+        HydraEvents.RandomChop event = new HydraEvents.RandomChop();
+        event.begin();
+        int choppable = tree.choppableCount();
+        ChopResult retVal = chop(randomHead(), delta);
+        if (event.shouldCommit()) {
+            event.choppable = choppable;
+            event.result = retVal.name();
+            event.commit();
+        }
+        return retVal;
+    }
+
+    /*A random choppable head (HydraTree.NONE if there isn't one)*/
+    public synchronized int randomHead() {
+        if (tree.choppableCount() == 0) {
+            return HydraTree.NONE;
+        }
+        return tree.choppable(random.nextInt(tree.choppableCount()));
+    }
+
+    /*Start over with a fresh random Hydra*/
+    public synchronized void reset(int heads) {
+        tree.growRandom(heads, random);
+        chops = 0;
+        metrics.heads(tree.size());
+    }
+
+    /*Throw the current Hydra away and play this one instead (it is used up)*/
+    public synchronized void replace(HydraTree other) {
+        tree.moveFrom(other);
+        chops = 0;
+        metrics.heads(tree.size());
+    }
+
+    public synchronized void setCopies(int copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        this.copies = copies;
+    }
+
+    public synchronized int copies() {
+        return copies;
+    }
+
+    /*
+     * Chops are refused once the Hydra has more heads than this (the body counts), or would have after the chop.
+     * Anything over HydraTree.MAX_CAPACITY means HydraTree.MAX_CAPACITY.
+     */
+    public synchronized void setMaxHeads(int maxHeads) {
+        this.maxHeads = Math.min(maxHeads, HydraTree.MAX_CAPACITY);
+    }
+
+    /*Report to these metrics instead of the global ones*/
+    public synchronized void setMetrics(HydraMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public synchronized long chops() {
+        return chops;
+    }
+
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    public synchronized int choppableCount() {
+        return tree.choppableCount();
+    }
+
+    /*The game is won when all the heads are gone!*/
+    public synchronized boolean isDefeated() {
+        return tree.childCount(tree.root()) == 0;
+    }
+
+    /*A seed for something that wants its own random, like an AutoPlayer*/
+    public synchronized long nextSeed() {
+        return random.nextLong();
+    }
+
+    /*A copy of the Hydra right now*/
+    public synchronized HydraTree snapshot() {
+        return tree.copy();
+    }
+
+    /*The Hydra in HydraFormat (the compact version, each distinct subtree once)*/
+    public synchronized byte[] export() {
+        HydraEvents.Transfer event = new HydraEvents.Transfer();
+        event.begin();
+        ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+        try {
+            HydraFormat.writeCompact(tree, Channels.newChannel(retVal));
+        } catch (IOException e) {
+            //ByteArrayOutputStream never throws
+            throw new UncheckedIOException(e);
+        }
+        if (event.shouldCommit()) {
+            event.direction = "export";
+            event.heads = tree.size();
+            event.bytes = retVal.size();
+            event.commit();
+        }
+        return retVal.toByteArray();
+    }
+
+    /*
+     * The live tree, without the lock. Only for an owner that never shares the session between threads
+     * (like the JavaFX game, which does everything on the FX thread).
+     */
+    public HydraTree tree() {
+        return tree;
+    }
+}
@@ -0,0 +1,159 @@
+package main.engine;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/*
+ * One interned (hash-consed) subtree shape. A shape is a multiset of child shapes: each distinct child
+ * shape is stored once next to how many times it appears, so n identical copies cost one array slot.
+ * Shapes are immutable and only ever made by a ShapeTable, so two shapes from the same table are
+ * structurally equal if and only if they are the same object.
+ *
+ * Sibling order is not kept. The rules of the game don't care about it, and that is what lets copies be shared.
+ */
+public final class HydraShape {
+    /*Distinct child shapes, sorted by id, and how many of each*/
+    final HydraShape[] kinds;
+    final long[] counts;
+
+    /*Unique within the table that made this shape*/
+    private final int id;
+    private final int hash;
+
+    /*
+     * Worked out as the shape is made, from its children's (a table always makes the children first).
+     * Asking for them later never recurses, however tall the Hydra. size and heads can get astronomically big.
+     */
+    private final BigInteger size, heads;
+    private final int height;
+    private final long canonicalHash;
+
+    HydraShape(int id, HydraShape[] kinds, long[] counts) {
+        this.id = id;
+        this.kinds = kinds;
+        this.counts = counts;
+        this.hash = contentHash(kinds, counts);
+
+        BigInteger s = BigInteger.ONE;
+        BigInteger h = kinds.length == 0 ? BigInteger.ONE : BigInteger.ZERO;
+        int tallest = 0;
+        //Children are summed, so their order doesn't matter to the canonical hash
+        long sum = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            BigInteger count = BigInteger.valueOf(counts[i]);
+            s = s.add(kinds[i].size.multiply(count));
+            h = h.add(kinds[i].heads.multiply(count));
+            tallest = Math.max(tallest, kinds[i].height + 1);
+            sum += counts[i] * mix(kinds[i].canonicalHash);
+        }
+        this.size = s;
+        this.heads = h;
+        this.height = tallest;
+        this.canonicalHash = mix(sum + 0x9E3779B97F4A7C15L);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public boolean isLeaf() {
+        return kinds.length == 0;
+    }
+
+    /*How many distinct child shapes there are*/
+    public int kindCount() {
+        return kinds.length;
+    }
+
+    public HydraShape kind(int i) {
+        return kinds[i];
+    }
+
+    /*How many copies of kind(i) hang off this shape*/
+    public long count(int i) {
+        return counts[i];
+    }
+
+    /*Where child shape c sits in kinds, or -1*/
+    public int indexOf(HydraShape c) {
+        int lo = 0, hi = kinds.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Integer.compare(kinds[mid].id, c.id);
+            if (cmp == 0) {
+                return kinds[mid] == c ? mid : -1;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /*Total number of nodes in the expanded subtree (including this one)*/
+    public BigInteger size() {
+        return size;
+    }
+
+    /*Number of leaves (choppable heads) in the expanded subtree. A leaf counts itself.*/
+    public BigInteger heads() {
+        return heads;
+    }
+
+    /*Longest path down to a leaf, in edges*/
+    public int height() {
+        return height;
+    }
+
+    /*
+     * A hash of the shape itself, not of its ids, so the same shape made by two different tables (on two
+     * threads, say) hashes the same, and sibling order doesn't matter either.
+     */
+    public long canonicalHash() {
+        return canonicalHash;
+    }
+
+    //The SplittableRandom/murmur3 finaliser, so sums of hashes don't cancel out easily
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    static int contentHash(HydraShape[] kinds, long[] counts) {
+        int h = 17;
+        for (int i = 0; i < kinds.length; i++) {
+            h = h * 31 + kinds[i].id;
+            h = h * 31 + Long.hashCode(counts[i]);
+        }
+        return h;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    //Identity is equality for interned shapes
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("S").append(id).append('[');
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(counts[i]).append("xS").append(kinds[i].id);
+        }
+        return sb.append(']').toString();
+    }
+
+    long[] countsCopy() {
+        return Arrays.copyOf(counts, counts.length);
+    }
+}
@@ -0,0 +1,357 @@
+package main.engine;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Looks ahead a few chops to find the head to chop to kill the Hydra fastest (or, for stress testing, slowest).
+ *
+ * Every possible chop is tried, then every chop after that, down to depth chops. The Hydras left at the
+ * bottom are scored by counting exactly how long the DEEPEST strategy takes to finish them
+ * (see ChopCalculator). So the answer is a real bound:
+ * 	FASTEST: chop the hint, then play it out as searched, and the Hydra is dead in at most that many chops
+ * 	SLOWEST: there is a way to make it last at least that many chops
+ *
+ * Positions are unordered shapes (see SharedHydra), so heads that are copies of each other are only tried
+ * once. Positions are remembered in a fixed-size transposition table keyed by HydraShape.canonicalHash(),
+ * which is the same for the same shape on any thread. The table never grows: a new entry just
+ * replaces whatever was in its slot (unless that is the same position searched deeper).
+ * The table is kept between solves, so asking again after a chop finds most of the work already done.
+ *
+ * The first chops are split between the threads of a ForkJoinPool. Each task builds its own ShapeTable,
+ * since tables aren't thread safe; only the transposition table is shared.
+ */
+public final class HydraSolver {
+    public enum Goal {
+        FASTEST, SLOWEST
+    }
+
+    //First chops per task. Each task pays for turning the whole tree into shapes once.
+    private static final int MOVES_PER_TASK = 4;
+
+    private final int copies;
+    private final Goal goal;
+    private int depth = 2;
+    private int maxBits = ChopCalculator.DEFAULT_MAX_BITS;
+
+    private AtomicReferenceArray<Entry> table;
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+
+    public HydraSolver(int copies, Goal goal) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        this.copies = copies;
+        this.goal = goal;
+        tableSize(1 << 16);
+    }
+
+    /*How many chops to look ahead (at least 1)*/
+    public HydraSolver depth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Need to look at least one chop ahead: " + depth);
+        }
+        this.depth = depth;
+        return this;
+    }
+
+    /*Positions the transposition table holds (rounded up to a power of two). Clears it.*/
+    public HydraSolver tableSize(int entries) {
+        int size = Integer.highestOneBit(Math.max(1, entries - 1)) << 1;
+        table = new AtomicReferenceArray<Entry>(size);
+        return this;
+    }
+
+    /*Counts bigger than this many bits are just "too big"*/
+    public HydraSolver maxBits(int maxBits) {
+        this.maxBits = maxBits;
+        return this;
+    }
+
+    /*The best chop on the common pool*/
+    public Result solve(HydraTree tree) {
+        return solve(tree, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The best chop in tree, searching on pool.
+     * Returns a result with no head (HydraTree.NONE) if the Hydra is already dead.
+     */
+    public Result solve(HydraTree tree, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long positionsBefore = positions.sum(), hitsBefore = tableHits.sum();
+        if (tree.childCount(tree.root()) == 0) {
+            return new Result(HydraTree.NONE, BigInteger.ZERO, 0, 0, 0, 0);
+        }
+
+        //One head for each chop that leaves a different Hydra
+        ShapeTable shapes = new ShapeTable();
+        HydraShape[] shapeOf = SharedHydra.shapesOf(tree, shapes);
+        IdentityHashMap<HydraShape, Boolean> seen = new IdentityHashMap<HydraShape, Boolean>();
+        ArrayList<Integer> moves = new ArrayList<Integer>();
+        for (int i = 0; i < tree.choppableCount(); i++) {
+            int head = tree.choppable(i);
+            HydraShape after = chop(new SharedHydra(shapes, shapeOf[tree.root()]), pathTo(tree, shapeOf, head));
+            if (after == null || seen.put(after, Boolean.TRUE) == null) {
+                moves.add(head);
+            }
+        }
+
+        int[] heads = new int[moves.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = moves.get(i);
+        }
+        Best best = pool.invoke(new FirstChops(tree, heads, 0, heads.length));
+        return new Result(best.head, best.chops, depth, positions.sum() - positionsBefore,
+                tableHits.sum() - hitsBefore, System.nanoTime() - start);
+    }
+
+    //<Search>
+    //The first chops in [from, to), tried in parallel
+    private final class FirstChops extends RecursiveTask<Best> {
+        private static final long serialVersionUID = 1L;
+
+        private final HydraTree tree;
+        private final int[] heads;
+        private final int from, to;
+
+        FirstChops(HydraTree tree, int[] heads, int from, int to) {
+            this.tree = tree;
+            this.heads = heads;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Best compute() {
+            if (to - from > MOVES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                FirstChops left = new FirstChops(tree, heads, from, middle);
+                left.fork();
+                Best right = new FirstChops(tree, heads, middle, to).compute();
+                //Ties go to the earlier head, so the answer doesn't depend on the threads
+                Best l = left.join();
+                return better(right.chops, l.chops) ? right : l;
+            }
+
+            Worker worker = new Worker();
+            HydraShape[] shapeOf = SharedHydra.shapesOf(tree, worker.shapes);
+            Best retVal = null;
+            for (int i = from; i < to; i++) {
+                HydraShape after = chop(new SharedHydra(worker.shapes, shapeOf[tree.root()]), pathTo(tree, shapeOf, heads[i]));
+                BigInteger chops = plusOne(after == null ? null : worker.search(after, depth - 1));
+                if (retVal == null || better(chops, retVal.chops)) {
+                    retVal = new Best(heads[i], chops);
+                }
+            }
+            return retVal;
+        }
+    }
+
+    //Everything one thread needs for searching: its own shapes, and what DEEPEST made of them so far
+    private final class Worker {
+        final ShapeTable shapes = new ShapeTable();
+        final IdentityHashMap<HydraShape, BigInteger[]> deepest = new IdentityHashMap<HydraShape, BigInteger[]>();
+        final ChopCalculator calculator = new ChopCalculator(copies, maxBits);
+
+        //Chops left from body, looking left more chops ahead. null means more than maxBits bits.
+        BigInteger search(HydraShape body, int left) {
+            if (body.isLeaf()) {
+                return BigInteger.ZERO;
+            }
+            positions.increment();
+            long hash = body.canonicalHash();
+            int slot = (int) (hash ^ (hash >>> 32)) & (table.length() - 1);
+            Entry known = table.get(slot);
+            //Only the same depth counts, so the answer never depends on which thread got there first
+            if (known != null && known.hash == hash && known.depth == left) {
+                tableHits.increment();
+                return known.chops;
+            }
+
+            BigInteger retVal;
+            if (left == 0) {
+                retVal = score(body);
+            } else {
+                retVal = null;
+                boolean first = true;
+                for (int[] path : chops(body)) {
+                    HydraShape after = chop(new SharedHydra(shapes, body), path);
+                    BigInteger chops = plusOne(after == null ? null : search(after, left - 1));
+                    if (first || better(chops, retVal)) {
+                        retVal = chops;
+                        first = false;
+                    }
+                }
+            }
+
+            if (known == null || known.hash != hash || known.depth <= left) {
+                table.set(slot, new Entry(hash, left, retVal));
+            }
+            return retVal;
+        }
+
+        //How long DEEPEST takes from here (null if too long to write down)
+        private BigInteger score(HydraShape body) {
+            if (copies == 0) {
+                return body.size().subtract(BigInteger.ONE);
+            }
+            try {
+                return calculator.deepest(body, deepest);
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+    }
+
+    //Paths to one head of every kind (copies of a head are the same chop)
+    private static ArrayList<int[]> chops(HydraShape body) {
+        ArrayList<int[]> retVal = new ArrayList<int[]>();
+        //Depth-first without recursion: the shapes down to here, and which kind we're on at each
+        ArrayList<HydraShape> chain = new ArrayList<HydraShape>();
+        IntList kind = new IntList();
+        chain.add(body);
+        kind.add(0);
+        while (!chain.isEmpty()) {
+            int top = chain.size() - 1;
+            HydraShape s = chain.get(top);
+            int k = kind.get(top);
+            if (k == s.kindCount()) {
+                chain.remove(top);
+                kind.pop();
+                if (top > 0) {
+                    kind.set(top - 1, kind.get(top - 1) + 1);
+                }
+                continue;
+            }
+            HydraShape child = s.kind(k);
+            if (child.isLeaf()) {
+                int[] path = new int[top + 1];
+                for (int i = 0; i <= top; i++) {
+                    path[i] = kind.get(i);
+                }
+                retVal.add(path);
+                kind.set(top, k + 1);
+            } else {
+                chain.add(child);
+                kind.add(0);
+            }
+        }
+        return retVal;
+    }
+
+    //Where head is, as kinds to step into from the body
+    private static int[] pathTo(HydraTree tree, HydraShape[] shapeOf, int head) {
+        int[] retVal = new int[tree.depth(head)];
+        for (int n = head; tree.parent(n) != HydraTree.NONE; n = tree.parent(n)) {
+            retVal[tree.depth(n) - 1] = shapeOf[tree.parent(n)].indexOf(shapeOf[n]);
+        }
+        return retVal;
+    }
+
+    //The Hydra after the chop at path (null if it has more copies of something than a long can count)
+    private HydraShape chop(SharedHydra hydra, int[] path) {
+        try {
+            hydra.chop(path, copies);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return hydra.body();
+    }
+
+    private static BigInteger plusOne(BigInteger chops) {
+        return chops == null ? null : chops.add(BigInteger.ONE);
+    }
+
+    //Is a strictly better than b for our goal? null is bigger than anything.
+    private boolean better(BigInteger a, BigInteger b) {
+        if (a == null || b == null) {
+            return goal == Goal.FASTEST ? b == null && a != null : a == null && b != null;
+        }
+        int cmp = a.compareTo(b);
+        return goal == Goal.FASTEST ? cmp < 0 : cmp > 0;
+    }
+    //</Search>
+
+    //One slot of the transposition table. Never changes once made.
+    private static final class Entry {
+        final long hash;
+        final int depth;
+        final BigInteger chops;
+
+        Entry(long hash, int depth, BigInteger chops) {
+            this.hash = hash;
+            this.depth = depth;
+            this.chops = chops;
+        }
+    }
+
+    private static final class Best {
+        final int head;
+        final BigInteger chops;
+
+        Best(int head, BigInteger chops) {
+            this.head = head;
+            this.chops = chops;
+        }
+    }
+
+    /*What solve() found*/
+    public static final class Result {
+        private final int head;
+        private final BigInteger chops;
+        private final int depth;
+        private final long positions, tableHits, nanos;
+
+        Result(int head, BigInteger chops, int depth, long positions, long tableHits, long nanos) {
+            this.head = head;
+            this.chops = chops;
+            this.depth = depth;
+            this.positions = positions;
+            this.tableHits = tableHits;
+            this.nanos = nanos;
+        }
+
+        /*The head to chop (an id in the tree that was solved), or HydraTree.NONE if it's already dead*/
+        public int head() {
+            return head;
+        }
+
+        /*
+         * Chops to defeat the Hydra, counting this one: at most this many for FASTEST, at least this many
+         * for SLOWEST. null if the number is too big to work out.
+         */
+        public BigInteger chops() {
+            return chops;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        /*Positions looked at, and how many of those were already in the table*/
+        public long positions() {
+            return positions;
+        }
+
+        public long tableHits() {
+            return tableHits;
+        }
+
+        public double millis() {
+            return nanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("chop head %d, %s chops (%d chops ahead, %d positions, %d from the table, %.1f ms)",
+                    head, chops == null ? "too many" : chops.toString(), depth, positions, tableHits, millis());
+        }
+    }
+}
@@ -0,0 +1,847 @@
+package main.engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/*
+ * The headless Hydra. Every head is just an int id, and everything we know about a head lives in
+ * parallel int arrays indexed by that id. There is no JavaFX in here, so the model can be used (and
+ * simulated) without a toolkit, and a head costs a few dozen bytes instead of a whole object graph.
+ *
+ * Children are kept as a doubly linked sibling list so adding to the end and removing from anywhere are O(1).
+ * The heads that can be chopped are also kept in a packed array, so picking one at random is O(1).
+ * Every level (depth) keeps its heads in a linked list in left-to-right order, so drawing a level or
+ * counting its heads doesn't need a walk over the whole tree.
+ * Ids of removed heads are recycled, so never hang on to an id after the head has been chopped.
+ */
+public final class HydraTree {
+    /*Marks "no node" in any of the link arrays*/
+    public static final int NONE = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    /*The most heads (counting the body) a tree can ever hold. chop() refuses to grow it past this.*/
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /*The parallel arrays. depth is -1 for slots that are not in use.*/
+    private int[] parent, firstChild, lastChild, nextSibling, prevSibling, depth, childCount;
+
+    /*Every slot below highWater has been handed out at least once*/
+    private int highWater = 0;
+    private int size = 0;
+
+    /*Recycled slots, chained through nextSibling*/
+    private int freeList = NONE;
+
+    /*Every choppable head, packed into the front of choppable. choppableSlot[id] is where id sits (or NONE).*/
+    private int[] choppable, choppableSlot;
+    private int choppableCount = 0;
+
+    /*Per head: its neighbours on the same level, left to right*/
+    private int[] levelPrev, levelNext;
+    /*
+     * Per head: the right-most of its grandchildren (or NONE). Grandchildren sit next to each other on their
+     * level, so this is easy to keep up, and it is how addChild() finds its spot without walking the level.
+     */
+    private int[] lastGrandchild;
+    /*Per depth: first and last head on the level, how many heads, and how many of those have children*/
+    private int[] levelFirst = new int[0], levelLast = new int[0], levelSize = new int[0], levelParents = new int[0];
+    /*Number of levels that have at least one head*/
+    private int height = 0;
+
+    private final int root;
+    private final boolean rootIsBody;
+
+    public HydraTree(boolean rootIsBody) {
+        this(rootIsBody, DEFAULT_CAPACITY);
+    }
+
+    public HydraTree(boolean rootIsBody, int capacity) {
+        newArrays(capacity);
+        this.rootIsBody = rootIsBody;
+        this.root = allocate(NONE, 0);
+        levelInsertAfter(root, NONE);
+    }
+
+    //Copy constructor used by copy()
+    private HydraTree(HydraTree other) {
+        root = other.root;
+        rootIsBody = other.rootIsBody;
+        copyArrays(other);
+    }
+
+    /*A completely independent snapshot of this tree. Ids are preserved.*/
+    public HydraTree copy() {
+        return new HydraTree(this);
+    }
+
+    /*Make this tree an exact copy of other (e.g. a snapshot from another thread). Ids are preserved.*/
+    public void copyFrom(HydraTree other) {
+        if (other.root != root || other.rootIsBody != rootIsBody) {
+            throw new IllegalArgumentException("Can only copy a tree with the same kind of root.");
+        }
+        copyArrays(other);
+    }
+
+    /*
+     * Like copyFrom(other), but takes over other's storage instead of copying it (handy for big trees nobody
+     * else needs). other is left with nothing but its root.
+     */
+    public void moveFrom(HydraTree other) {
+        if (other.root != root || other.rootIsBody != rootIsBody) {
+            throw new IllegalArgumentException("Can only copy a tree with the same kind of root.");
+        }
+        HydraTree emptied = new HydraTree(other.rootIsBody, 1);
+        takeArrays(other);
+        other.takeArrays(emptied);
+    }
+
+    /*
+     * Give every head its pre-order position as its id, with nothing on the free list. That is exactly the
+     * tree HydraFormat.read() builds, so from here on the same chops give the same ids in both.
+     * Old ids are meaningless afterwards.
+     */
+    public void renumber() {
+        HydraTree fresh = new HydraTree(rootIsBody, size);
+        for (int c = firstChild[root]; c != NONE; c = nextSibling[c]) {
+            fresh.graft(this, c, fresh.root);
+        }
+        moveFrom(fresh);
+    }
+
+    /**
+     * Build a Hydra from the game's export string: the body's number of children, then (in pre-order) for every
+     * head, the number of children each of its children has. One digit per number.
+     *
+     * @throws IllegalArgumentException if the string isn't a complete Hydra
+     */
+    public static HydraTree fromExportString(final String data) {
+        try {
+            return HydraImporter.readLegacy(new HydraFormat.Source() {
+                private int pos = 0;
+
+                @Override
+                public int next() {
+                    return pos < data.length() ? data.charAt(pos++) : -1;
+                }
+
+                @Override
+                public long remaining() {
+                    return data.length() - pos;
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public int root() {
+        return root;
+    }
+
+    //The root is the body if the tree was created as a Hydra (and not just a loose subtree)
+    public boolean isBody(int node) {
+        return rootIsBody && node == root;
+    }
+
+    /*Number of heads (including the body) currently in the tree*/
+    public int size() {
+        return size;
+    }
+
+    /*Every live id is strictly less than this. Handy for sizing side arrays indexed by id.*/
+    public int idBound() {
+        return highWater;
+    }
+
+    public boolean isLive(int node) {
+        return node >= 0 && node < highWater && depth[node] >= 0;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int lastChild(int node) {
+        return lastChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int prevSibling(int node) {
+        return prevSibling[node];
+    }
+
+    public int depth(int node) {
+        return depth[node];
+    }
+
+    public int childCount(int node) {
+        return childCount[node];
+    }
+
+    /*Returns true if this node can be chopped (Not a body and has no children)*/
+    public boolean canBeChopped(int node) {
+        return !isBody(node) && firstChild[node] == NONE;
+    }
+
+    /*How many heads can be chopped right now*/
+    public int choppableCount() {
+        return choppableCount;
+    }
+
+    /*The i'th choppable head (0 <= i < choppableCount()). The order changes as heads come and go.*/
+    public int choppable(int i) {
+        if (i < 0 || i >= choppableCount) {
+            throw new IndexOutOfBoundsException("Choppable head " + i + " out of " + choppableCount);
+        }
+        return choppable[i];
+    }
+
+    /*Number of levels in the tree (the body alone is 1 level)*/
+    public int height() {
+        return height;
+    }
+
+    /*Number of heads at a depth*/
+    public int levelSize(int depth) {
+        return depth >= 0 && depth < height ? levelSize[depth] : 0;
+    }
+
+    /*Number of heads at a depth that have children of their own*/
+    public int levelParents(int depth) {
+        return depth >= 0 && depth < height ? levelParents[depth] : 0;
+    }
+
+    /*Left-most head at a depth (NONE if the level is empty)*/
+    public int levelFirst(int depth) {
+        return depth >= 0 && depth < height ? levelFirst[depth] : NONE;
+    }
+
+    /*Right-most head at a depth (NONE if the level is empty)*/
+    public int levelLast(int depth) {
+        return depth >= 0 && depth < height ? levelLast[depth] : NONE;
+    }
+
+    /*The next head to the right on node's level (NONE at the end). The order is the same as pre-order.*/
+    public int levelNext(int node) {
+        return levelNext[node];
+    }
+
+    /*The next head to the left on node's level (NONE at the start)*/
+    public int levelPrev(int node) {
+        return levelPrev[node];
+    }
+
+    /*Attach a brand new head to the end of node's children and return its id*/
+    public int addChild(int node) {
+        int child = allocate(node, depth[node] + 1);
+        //Find the head left of the new one before it is linked (after that it is its parent's last child)
+        int left = levelLeftOf(node);
+        link(node, child);
+        levelInsertAfter(child, left);
+        return child;
+    }
+
+    /*Attach a brand new head to node just after its child after (or in front of them all if after is NONE)*/
+    public int addChildAfter(int node, int after) {
+        if (after == lastChild[node]) {
+            return addChild(node);
+        }
+        int child = allocate(node, depth[node] + 1);
+        //Siblings sit side by side on their level, so the head to the left is after (or whatever is left of the family)
+        int left = after != NONE ? after : levelPrev[firstChild[node]];
+        linkAfter(node, child, after);
+        levelInsertAfter(child, left);
+        return child;
+    }
+
+    /**
+     * Chop a head and re-grow.
+     * If the node's parent is the body (or there is no grandparent to grow onto) nothing grows back.
+     * Otherwise the parent, minus the chopped head, is copied onto the grandparent copies times.
+     *
+     * @return false (and nothing changes) if the node cannot be chopped
+     */
+    public boolean chop(int node, int copies) {
+        return chop(node, copies, null);
+    }
+
+    /*Same as chop(node, copies), and also records what changed into delta (if it isn't null)*/
+    public boolean chop(int node, int copies, ChopDelta delta) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        if (!canBeChopped(node)) {
+            return false;
+        }
+
+        //Check before anything changes, so a chop that can't fit leaves the Hydra as it was
+        if (!admits(node, copies, MAX_CAPACITY)) {
+            throw new IllegalStateException("Hydra is too big: chopping head " + node + " would grow "
+                    + regrowthSize(node, copies) + " heads onto " + size + ".");
+        }
+
+        boolean describe = delta != null && delta.beginChop();
+        int p = parent[node];
+        if (describe) {
+            delta.removed.add(node);
+            delta.removedDepths.add(depth[node]);
+        }
+        deleteLeaf(node);
+        if (describe) {
+            if (firstChild[p] == NONE && !isBody(p)) {
+                delta.flipped.add(p);
+            }
+        }
+        if (!isBody(p) && parent[p] != NONE) {
+            int grandparent = parent[p];
+            for (int i = 0; i < copies; i++) {
+                int copy = copySubtree(p, grandparent);
+                if (describe) {
+                    delta.regrown.add(copy);
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Heads that chopping node would grow back (not counting the one chopped off), without chopping it.
+     * That is copies times what's left under node's parent, or 0 if nothing grows back.
+     */
+    public long regrowthSize(int node, int copies) {
+        int p = parent[node];
+        if (p == NONE || isBody(p) || parent[p] == NONE) {
+            return 0;
+        }
+        return copies * (subtreeSize(p) - 1);
+    }
+
+    /*
+     * Would the Hydra still have at most limit heads (counting the body) after chopping node?
+     * Most of the time size * (copies + 1) is already under the limit and this doesn't need to walk anything.
+     */
+    public boolean admits(int node, int copies, long limit) {
+        if ((long) size * (copies + 1L) <= limit) {
+            return true;
+        }
+        return size - 1 + regrowthSize(node, copies) <= limit;
+    }
+
+    /*Heads in the subtree under node, node included*/
+    public long subtreeSize(int node) {
+        long retVal = 0;
+        for (int n = node; n != NONE; n = preOrderNext(n, node)) {
+            retVal++;
+        }
+        return retVal;
+    }
+
+    /*Remove a head that has no children. The body can never be removed.*/
+    public void deleteLeaf(int node) {
+        if (node == root || firstChild[node] != NONE) {
+            throw new UnsupportedOperationException("Only heads without children can be removed.");
+        }
+        unlink(node);
+        release(node);
+    }
+
+    /*
+     * Remove node and everything under it. Heads go in the exact reverse of the order a copy hands out
+     * their ids (last child first, deepest first), so the recycled ids end up as they were before the copy.
+     */
+    public void deleteSubtree(int node) {
+        int n = node;
+        while (true) {
+            while (lastChild[n] != NONE) {
+                n = lastChild[n];
+            }
+            int prev = prevSibling[n];
+            int up = parent[n];
+            boolean done = n == node;
+            deleteLeaf(n);
+            if (done) {
+                return;
+            }
+            n = prev != NONE ? prev : up;
+        }
+    }
+
+    /*Copy the subtree under src and attach the copy to the end of newParent's children. Returns the copy's id.*/
+    public int copySubtree(int src, int newParent) {
+        return graft(this, src, newParent);
+    }
+
+    /**
+     * Copy the subtree under srcNode (which may live in another tree) onto the end of newParent's children.
+     * This walks the source iteratively, so tall hydras don't blow the stack.
+     * newParent must not be inside the copied subtree.
+     */
+    public int graft(HydraTree src, int srcNode, int newParent) {
+        int copy = addChild(newParent);
+        int s = srcNode;
+        int d = copy;
+        //Walk src in pre-order, mirroring every step onto d.
+        //Note: arrays may be re-allocated while we go, so always go through the fields.
+        while (true) {
+            if (src.firstChild[s] != NONE) {
+                s = src.firstChild[s];
+                d = addChild(d);
+                continue;
+            }
+            while (s != srcNode && src.nextSibling[s] == NONE) {
+                s = src.parent[s];
+                d = parent[d];
+            }
+            if (s == srcNode) {
+                return copy;
+            }
+            s = src.nextSibling[s];
+            d = addChild(parent[d]);
+        }
+    }
+
+    /*Drop every head, leaving only the root*/
+    public void clear() {
+        Arrays.fill(depth, 0, highWater, -1);
+        highWater = 0;
+        size = 0;
+        freeList = NONE;
+        choppableCount = 0;
+        Arrays.fill(levelSize, 0);
+        Arrays.fill(levelParents, 0);
+        height = 0;
+        levelInsertAfter(allocate(NONE, 0), NONE);
+    }
+
+    /*
+     * Start over with a random Hydra of the given number of heads (the game starts with 5).
+     * Between 1 and heads of them hang off the body, the rest go on random heads (or the body again).
+     */
+    public void growRandom(int heads, SplittableRandom random) {
+        clear();
+        //We cannot have a body with zero heads. It's impossible.
+        int onBody = random.nextInt(heads) + 1;
+        for (int i = 0; i < onBody; i++) {
+            addChild(root);
+        }
+        for (int left = heads - onBody; left > 0; ) {
+            int index = random.nextInt(highWater);
+            if (!isLive(index)) {
+                continue;
+            }
+            addChild(index);
+            left--;
+        }
+    }
+
+    /*
+     * Pre-order successor of node, without leaving the subtree under subtreeRoot.
+     * Returns NONE when the walk is done. No stack, no allocation.
+     */
+    public int preOrderNext(int node, int subtreeRoot) {
+        if (firstChild[node] != NONE) {
+            return firstChild[node];
+        }
+        while (node != subtreeRoot) {
+            if (nextSibling[node] != NONE) {
+                return nextSibling[node];
+            }
+            node = parent[node];
+        }
+        return NONE;
+    }
+
+    /*First head of a post-order walk of the subtree under subtreeRoot (its left-most leaf)*/
+    public int postOrderFirst(int subtreeRoot) {
+        int node = subtreeRoot;
+        while (firstChild[node] != NONE) {
+            node = firstChild[node];
+        }
+        return node;
+    }
+
+    /*Post-order successor of node, without leaving the subtree under subtreeRoot. NONE when the walk is done.*/
+    public int postOrderNext(int node, int subtreeRoot) {
+        if (node == subtreeRoot) {
+            return NONE;
+        }
+        if (nextSibling[node] != NONE) {
+            return postOrderFirst(nextSibling[node]);
+        }
+        return parent[node];
+    }
+
+    /**
+     * Walk the subtree under from, calling enter() on the way down and leave() on the way back up.
+     * If enter() returns false, that head's children are skipped (leave() is still called for it).
+     * Iterative, so tall hydras are fine.
+     */
+    public void walk(int from, HydraVisitor visitor) {
+        int node = from;
+        while (true) {
+            if (visitor.enter(node) && firstChild[node] != NONE) {
+                node = firstChild[node];
+                continue;
+            }
+            //Go back up until there's a sibling to move on to
+            visitor.leave(node);
+            while (node != from && nextSibling[node] == NONE) {
+                node = parent[node];
+                visitor.leave(node);
+            }
+            if (node == from) {
+                return;
+            }
+            node = nextSibling[node];
+        }
+    }
+
+    /*Every head under (and including) from, parents before children*/
+    public PrimitiveIterator.OfInt preOrder(int from) {
+        return new Traversals.PreOrder(this, from);
+    }
+
+    /*Every head under (and including) from, children before parents*/
+    public PrimitiveIterator.OfInt postOrder(int from) {
+        return new Traversals.PostOrder(this, from);
+    }
+
+    /*Every head under (and including) from, one level at a time*/
+    public PrimitiveIterator.OfInt levelOrder(int from) {
+        return new Traversals.LevelOrder(this, from);
+    }
+
+    /**
+     * Every head under (and including) from, in pre-order, as a stream.
+     * Call .parallel() on it to have the subtree split between threads.
+     */
+    public IntStream nodes(int from) {
+        //Everything on from's level and below: exact for the body, too high for anything else, but it's
+        //the right size of number for the stream to know whether splitting is worth it
+        long estimate = 0;
+        for (int d = depth[from]; d < height; d++) {
+            estimate += levelSize[d];
+        }
+        return StreamSupport.intStream(new Traversals.PreOrderSpliterator(this, from, NONE, estimate), false);
+    }
+
+    //<Book Keeping>
+    private void newArrays(int capacity) {
+        capacity = Math.max(capacity, 1);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        prevSibling = new int[capacity];
+        depth = new int[capacity];
+        childCount = new int[capacity];
+        choppable = new int[capacity];
+        choppableSlot = new int[capacity];
+        levelPrev = new int[capacity];
+        levelNext = new int[capacity];
+        lastGrandchild = new int[capacity];
+    }
+
+    //Share other's arrays (so only use this when other is about to be thrown away or emptied)
+    private void takeArrays(HydraTree other) {
+        parent = other.parent;
+        firstChild = other.firstChild;
+        lastChild = other.lastChild;
+        nextSibling = other.nextSibling;
+        prevSibling = other.prevSibling;
+        depth = other.depth;
+        childCount = other.childCount;
+        choppable = other.choppable;
+        choppableSlot = other.choppableSlot;
+        choppableCount = other.choppableCount;
+        levelPrev = other.levelPrev;
+        levelNext = other.levelNext;
+        lastGrandchild = other.lastGrandchild;
+        levelFirst = other.levelFirst;
+        levelLast = other.levelLast;
+        levelSize = other.levelSize;
+        levelParents = other.levelParents;
+        height = other.height;
+        highWater = other.highWater;
+        size = other.size;
+        freeList = other.freeList;
+    }
+
+    //Reuses this tree's arrays when they are big enough, so resetting a game doesn't allocate
+    private void copyArrays(HydraTree other) {
+        parent = copyInto(other.parent, parent);
+        firstChild = copyInto(other.firstChild, firstChild);
+        lastChild = copyInto(other.lastChild, lastChild);
+        nextSibling = copyInto(other.nextSibling, nextSibling);
+        prevSibling = copyInto(other.prevSibling, prevSibling);
+        depth = copyInto(other.depth, depth);
+        childCount = copyInto(other.childCount, childCount);
+        choppable = copyInto(other.choppable, choppable);
+        choppableSlot = copyInto(other.choppableSlot, choppableSlot);
+        choppableCount = other.choppableCount;
+        levelPrev = copyInto(other.levelPrev, levelPrev);
+        levelNext = copyInto(other.levelNext, levelNext);
+        lastGrandchild = copyInto(other.lastGrandchild, lastGrandchild);
+        levelFirst = copyInto(other.levelFirst, levelFirst);
+        levelLast = copyInto(other.levelLast, levelLast);
+        levelSize = copyInto(other.levelSize, levelSize);
+        levelParents = copyInto(other.levelParents, levelParents);
+        //Levels past other's are empty (slots past its highWater get set up by allocate())
+        Arrays.fill(levelSize, other.levelSize.length, levelSize.length, 0);
+        Arrays.fill(levelParents, other.levelParents.length, levelParents.length, 0);
+        height = other.height;
+        highWater = other.highWater;
+        size = other.size;
+        freeList = other.freeList;
+    }
+
+    private static int[] copyInto(int[] from, int[] to) {
+        if (to == null || to.length < from.length) {
+            return from.clone();
+        }
+        System.arraycopy(from, 0, to, 0, from.length);
+        return to;
+    }
+
+    private int allocate(int parentNode, int nodeDepth) {
+        int node;
+        if (freeList != NONE) {
+            node = freeList;
+            freeList = nextSibling[node];
+        } else {
+            if (highWater == parent.length) {
+                grow();
+            }
+            node = highWater++;
+        }
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        lastChild[node] = NONE;
+        nextSibling[node] = NONE;
+        prevSibling[node] = NONE;
+        depth[node] = nodeDepth;
+        childCount[node] = 0;
+        choppableSlot[node] = NONE;
+        lastGrandchild[node] = NONE;
+        size++;
+        //A new head has no children, so it can be chopped (unless it is the body)
+        if (parentNode != NONE || !rootIsBody) {
+            addChoppable(node);
+        }
+        return node;
+    }
+
+    private void release(int node) {
+        removeChoppable(node);
+        levelRemove(node);
+        depth[node] = -1;
+        parent[node] = NONE;
+        nextSibling[node] = freeList;
+        freeList = node;
+        size--;
+    }
+
+    private void link(int node, int child) {
+        linkAfter(node, child, lastChild[node]);
+    }
+
+    //Put child among node's children right after after (NONE for the front)
+    private void linkAfter(int node, int child, int after) {
+        int next = after == NONE ? firstChild[node] : nextSibling[after];
+        prevSibling[child] = after;
+        nextSibling[child] = next;
+        if (after == NONE) {
+            firstChild[node] = child;
+        } else {
+            nextSibling[after] = child;
+        }
+        if (next == NONE) {
+            lastChild[node] = child;
+        } else {
+            prevSibling[next] = child;
+        }
+        if (childCount[node]++ == 0) {
+            removeChoppable(node);
+            levelParents[depth[node]]++;
+        }
+    }
+
+    private void unlink(int node) {
+        int p = parent[node];
+        int prev = prevSibling[node];
+        int next = nextSibling[node];
+        if (prev == NONE) {
+            firstChild[p] = next;
+        } else {
+            nextSibling[prev] = next;
+        }
+        if (next == NONE) {
+            lastChild[p] = prev;
+        } else {
+            prevSibling[next] = prev;
+        }
+        if (--childCount[p] == 0) {
+            levelParents[depth[p]]--;
+            if (!isBody(p)) {
+                addChoppable(p);
+            }
+        }
+    }
+
+    private void addChoppable(int node) {
+        choppableSlot[node] = choppableCount;
+        choppable[choppableCount++] = node;
+    }
+
+    //Swap the last choppable head into the hole so the array stays packed
+    private void removeChoppable(int node) {
+        int slot = choppableSlot[node];
+        if (slot == NONE) {
+            return;
+        }
+        int last = choppable[--choppableCount];
+        choppable[slot] = last;
+        choppableSlot[last] = slot;
+        choppableSlot[node] = NONE;
+    }
+
+    /*
+     * The head that will sit just left of a new last child of node, one level down.
+     * That is the last child of node itself, or else of the nearest head left of node that has children.
+     * Instead of walking left along the level to find that head, this goes by family: if node is the last
+     * of its siblings it's the parent's last grandchild, and a family without grandchildren is jumped over
+     * in one go. Only a head in the middle of its siblings looks along them (never past the family).
+     */
+    private int levelLeftOf(int node) {
+        if (lastChild[node] != NONE) {
+            return lastChild[node];
+        }
+        int n = node;
+        while (true) {
+            int p = parent[n];
+            if (p == NONE) {
+                return NONE;
+            }
+            if (lastGrandchild[p] == NONE) {
+                //Nobody in n's family has children: carry on from the last head before the family
+                int before = levelPrev[firstChild[p]];
+                if (before == NONE || lastChild[before] != NONE) {
+                    return before == NONE ? NONE : lastChild[before];
+                }
+                n = before;
+            } else if (n == lastChild[p]) {
+                return lastGrandchild[p];
+            } else {
+                for (int s = prevSibling[n]; s != NONE; s = prevSibling[s]) {
+                    if (lastChild[s] != NONE) {
+                        return lastChild[s];
+                    }
+                }
+                //All of the family's grandchildren are right of n, so it goes just before the first of them
+                int s = nextSibling[n];
+                while (firstChild[s] == NONE) {
+                    s = nextSibling[s];
+                }
+                return levelPrev[firstChild[s]];
+            }
+        }
+    }
+
+    //Put node on its level right after left (or at the front if left is NONE)
+    private void levelInsertAfter(int node, int left) {
+        int d = depth[node];
+        if (d >= levelSize.length) {
+            int newLength = Math.max(d + 1, levelSize.length * 2);
+            levelFirst = Arrays.copyOf(levelFirst, newLength);
+            levelLast = Arrays.copyOf(levelLast, newLength);
+            levelSize = Arrays.copyOf(levelSize, newLength);
+            levelParents = Arrays.copyOf(levelParents, newLength);
+        }
+        if (levelSize[d] == 0) {
+            levelFirst[d] = NONE;
+            levelLast[d] = NONE;
+        }
+
+        int right = left == NONE ? levelFirst[d] : levelNext[left];
+        levelPrev[node] = left;
+        levelNext[node] = right;
+        if (left == NONE) {
+            levelFirst[d] = node;
+        } else {
+            levelNext[left] = node;
+        }
+        if (right == NONE) {
+            levelLast[d] = node;
+        } else {
+            levelPrev[right] = node;
+        }
+        levelSize[d]++;
+        height = Math.max(height, d + 1);
+        //Grandchildren are side by side, so a new one is the last if it went in after the old last
+        if (d >= 2) {
+            int grandparent = parent[parent[node]];
+            if (lastGrandchild[grandparent] == NONE || lastGrandchild[grandparent] == left) {
+                lastGrandchild[grandparent] = node;
+            }
+        }
+    }
+
+    private void levelRemove(int node) {
+        int d = depth[node];
+        int left = levelPrev[node];
+        int right = levelNext[node];
+        if (d >= 2) {
+            int grandparent = parent[parent[node]];
+            if (lastGrandchild[grandparent] == node) {
+                lastGrandchild[grandparent] = left != NONE && parent[parent[left]] == grandparent ? left : NONE;
+            }
+        }
+        if (left == NONE) {
+            levelFirst[d] = right;
+        } else {
+            levelNext[left] = right;
+        }
+        if (right == NONE) {
+            levelLast[d] = left;
+        } else {
+            levelPrev[right] = left;
+        }
+        levelSize[d]--;
+        //Only the deepest levels can empty out (a head's parent is always one level up)
+        while (height > 0 && levelSize[height - 1] == 0) {
+            height--;
+        }
+    }
+
+    private void grow() {
+        int capacity = parent.length;
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Hydra is too big: " + capacity + " heads.");
+        }
+        int newCapacity = (int) Math.min((long) capacity + (capacity >> 1) + 1, MAX_CAPACITY);
+        parent = Arrays.copyOf(parent, newCapacity);
+        firstChild = Arrays.copyOf(firstChild, newCapacity);
+        lastChild = Arrays.copyOf(lastChild, newCapacity);
+        nextSibling = Arrays.copyOf(nextSibling, newCapacity);
+        prevSibling = Arrays.copyOf(prevSibling, newCapacity);
+        depth = Arrays.copyOf(depth, newCapacity);
+        childCount = Arrays.copyOf(childCount, newCapacity);
+        choppable = Arrays.copyOf(choppable, newCapacity);
+        choppableSlot = Arrays.copyOf(choppableSlot, newCapacity);
+        levelPrev = Arrays.copyOf(levelPrev, newCapacity);
+        levelNext = Arrays.copyOf(levelNext, newCapacity);
+        lastGrandchild = Arrays.copyOf(lastGrandchild, newCapacity);
+    }
+    //</Book Keeping>
+}
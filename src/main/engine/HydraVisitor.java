@@ -0,0 +1,14 @@
+package main.engine;
+
+/*
+ * Gets called for every head during HydraTree.walk(). Heads come in pre-order through enter()
+ * and in post-order through leave(), so one visitor can do both top-down and bottom-up work.
+ */
+public interface HydraVisitor {
+    /*Called on the way down. Return false to skip everything under this head.*/
+    boolean enter(int node);
+
+    /*Called on the way back up, after everything under this head*/
+    default void leave(int node) {
+    }
+}
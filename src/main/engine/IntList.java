@@ -0,0 +1,64 @@
+package main.engine;
+
+import java.util.Arrays;
+
+/*
+ * A growable list of ints. Saves boxing every head id into an Integer.
+ */
+public final class IntList {
+    private int[] values;
+    private int size = 0;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(size + (size >> 1), size + 1));
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+        values[index] = value;
+    }
+
+    //Removes and returns the last value
+    public int pop() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        return values[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,115 @@
+package main.engine;
+
+/*
+ * The classic Hydra Battle layout: every level of the tree is its own row, and the heads on a row are
+ * spread evenly across the screen in pre-order. The body sits at the bottom, the deepest heads at the top.
+ * This is just the math. Whoever draws the Hydra reads the numbers back out.
+ */
+public final class LevelLayout implements HydraLayout {
+    private final double width, height;
+
+    //Indexed by head id
+    private double[] x = new double[0], y = new double[0];
+
+    //Indexed by depth
+    private int[] levelSizes = new int[0], parentCounts = new int[0];
+    private int levelCount = 0;
+
+    /*width and height of the area the Hydra is drawn in*/
+    public LevelLayout(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /*Work out where every head goes. The body is drawn at bodyY.*/
+    @Override
+    public void layout(HydraTree tree, double bodyY) {
+        //<Book Keeping>
+        levelCount = tree.height();
+        if (levelSizes.length < levelCount) {
+            levelSizes = new int[Math.max(levelCount, levelSizes.length * 2)];
+            parentCounts = new int[levelSizes.length];
+        }
+        for (int d = 0; d < levelCount; d++) {
+            levelSizes[d] = tree.levelSize(d);
+            parentCounts[d] = tree.levelParents(d);
+        }
+        if (x.length < tree.idBound()) {
+            x = new double[tree.idBound()];
+            y = new double[tree.idBound()];
+        }
+        //</Book Keeping>
+
+        for (int d = 0; d < levelCount; d++) {
+            layoutLevel(tree, d, bodyY);
+        }
+    }
+
+    //Spread one level's heads across the screen, left to right
+    private void layoutLevel(HydraTree tree, int d, double bodyY) {
+        //Determine dynamic node sizing that changes based on # of nodes and screen size.
+        double nodeWidth = radiusX(d);
+        double distanceInbetween = (1 - (((nodeWidth * 2) / width) * levelSizes[d])) / (levelSizes[d] + 1);
+        distanceInbetween = distanceInbetween * this.width;
+        double levelY = d == 0 ? bodyY : height - ((d + 1) * (height / (levelCount + 1)));
+
+        int nodesDrawn = 0;
+        for (int n = tree.levelFirst(d); n != HydraTree.NONE; n = tree.levelNext(n)) {
+            x[n] = (distanceInbetween * (nodesDrawn + 1)) + (((nodesDrawn * 2) + 1) * nodeWidth);
+            y[n] = levelY;
+            nodesDrawn++;
+        }
+    }
+
+    @Override
+    public double x(int id) {
+        return x[id];
+    }
+
+    @Override
+    public double y(int id) {
+        return y[id];
+    }
+
+    /*How many levels the Hydra had at the last layout*/
+    @Override
+    public int levelCount() {
+        return levelCount;
+    }
+
+    /*Number of heads on a level*/
+    @Override
+    public int levelSize(int depth) {
+        return depth < levelCount ? levelSizes[depth] : 0;
+    }
+
+    /*Number of heads on a level that have children of their own*/
+    @Override
+    public int parentCount(int depth) {
+        return depth < levelCount ? parentCounts[depth] : 0;
+    }
+
+    //Just an off-site calculation to help break up complicated graphics calculations
+    @Override
+    public double radiusX(int depth) {
+        double retVal = width / ((levelSize(depth) + 1) * 2);
+
+        if (retVal > (width * .075)) {
+            return width * .075;
+        }
+
+        return retVal;
+    }
+
+    //Don't ever let the nodes be taller than 20% of the display
+    @Override
+    public double radiusY() {
+        double retVal = height / ((levelCount + 2) * 2);
+
+        if (retVal > height * .0625) {
+            return height * .0625;
+        }
+
+        return retVal;
+    }
+}
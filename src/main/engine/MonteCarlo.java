@@ -0,0 +1,302 @@
+package main.engine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Plays lots of independent Hydra battles at once, headless, on a fork/join pool, and reports how long
+ * the games took (in chops), how big the Hydras got and how fast it all went.
+ *
+ * Games are split into halves until a piece is small enough to play on one thread. Each piece gets its
+ * own SplittableRandom split off its parent's, so no two threads share a generator, and because the
+ * splitting only depends on the game count the same seed gives the same games on any number of cores.
+ *
+ * Usage: java main.engine.MonteCarlo [--games 10000] [--copies 2] [--strategy random] [--seed 1]
+ *        [--heads 5] [--file hydra.bin] [--max-chops 1000000] [--max-heads 1000000]
+ */
+public final class MonteCarlo {
+    /*Which head gets chopped each turn*/
+    public enum Strategy {
+        //Any choppable head, all equally likely (what the game's Chop button does)
+        RANDOM,
+        //The first choppable head in pre-order
+        LEFTMOST,
+        //The last choppable head in pre-order
+        RIGHTMOST,
+        //A head on the deepest level
+        DEEPEST
+    }
+
+    //Games played on one thread without splitting any further
+    private static final int GAMES_PER_TASK = 16;
+
+    private final int copies;
+    private final Strategy strategy;
+    //null means every game starts from its own random Hydra of startHeads heads
+    private final HydraTree start;
+    private int startHeads = 5;
+    private long maxChops = 1000000;
+    private int maxHeads = 1000000;
+
+    /**
+     * start: the Hydra every game starts from, or null for a random one per game (like new Hydra(...)).
+     * It is only read, but don't change it while run() is going.
+     */
+    public MonteCarlo(HydraTree start, int copies, Strategy strategy) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        this.start = start;
+        this.copies = copies;
+        this.strategy = strategy;
+    }
+
+    /*Size of the random starting Hydras (ignored if a start Hydra was given)*/
+    public MonteCarlo startHeads(int startHeads) {
+        if (startHeads < 1) {
+            throw new IllegalArgumentException("A Hydra needs at least one head: " + startHeads);
+        }
+        this.startHeads = startHeads;
+        return this;
+    }
+
+    /*Give up on a game after this many chops*/
+    public MonteCarlo maxChops(long maxChops) {
+        this.maxChops = maxChops;
+        return this;
+    }
+
+    /*Give up on a game rather than let a chop grow the Hydra past this many heads (the body counts)*/
+    public MonteCarlo maxHeads(int maxHeads) {
+        this.maxHeads = maxHeads;
+        return this;
+    }
+
+    /*Play games on the common pool*/
+    public Report run(int games, long seed) {
+        return run(games, seed, ForkJoinPool.commonPool());
+    }
+
+    public Report run(int games, long seed, ForkJoinPool pool) {
+        Report retVal = new Report(games, pool.getParallelism());
+        long started = System.nanoTime();
+        pool.invoke(new Games(retVal, 0, games, new SplittableRandom(seed)));
+        retVal.finish(System.nanoTime() - started);
+        return retVal;
+    }
+
+    /*Play one game on tree (which is used up). Writes the outcome into report at index game.*/
+    private void play(HydraTree tree, SplittableRandom random, Report report, int game) {
+        long chops = 0;
+        int peak = tree.size();
+        while (tree.choppableCount() > 0 && chops < maxChops) {
+            int head = pick(tree, random);
+            //One chop can grow more than the whole Hydra, so check before growing it (like HydraSession does)
+            if (!tree.admits(head, copies, maxHeads)) {
+                break;
+            }
+            tree.chop(head, copies);
+            chops++;
+            peak = Math.max(peak, tree.size());
+        }
+        report.chops[game] = chops;
+        report.peakHeads[game] = peak;
+        report.defeated[game] = tree.choppableCount() == 0;
+    }
+
+    //The head strategy wants chopped next
+    private int pick(HydraTree tree, SplittableRandom random) {
+        int node = tree.root();
+        switch (strategy) {
+            case RANDOM:
+                return tree.choppable(random.nextInt(tree.choppableCount()));
+            case LEFTMOST:
+                while (tree.firstChild(node) != HydraTree.NONE) {
+                    node = tree.firstChild(node);
+                }
+                return node;
+            case RIGHTMOST:
+                while (tree.lastChild(node) != HydraTree.NONE) {
+                    node = tree.lastChild(node);
+                }
+                return node;
+            case DEEPEST:
+                //Nothing on the last level has children
+                return tree.levelFirst(tree.height() - 1);
+            default:
+                throw new IllegalStateException("Unknown strategy " + strategy);
+        }
+    }
+
+    //A range of games. Splits in half (and splits its random) until it is small enough to just play.
+    @SuppressWarnings("serial")
+    private final class Games extends RecursiveAction {
+        private final Report report;
+        private final int from, to;
+        private final SplittableRandom random;
+
+        Games(Report report, int from, int to, SplittableRandom random) {
+            this.report = report;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                Games left = new Games(report, from, middle, random.split());
+                Games right = new Games(report, middle, to, random.split());
+                invokeAll(left, right);
+                return;
+            }
+            //One tree for all of this piece's games, so its arrays get reused
+            HydraTree tree = new HydraTree(true);
+            for (int game = from; game < to; game++) {
+                SplittableRandom gameRandom = random.split();
+                if (start == null) {
+                    tree.growRandom(startHeads, gameRandom);
+                } else {
+                    tree.copyFrom(start);
+                }
+                play(tree, gameRandom, report, game);
+            }
+        }
+    }
+
+    /*What happened in every game, plus a summary*/
+    public static final class Report {
+        //Per game
+        private final long[] chops;
+        private final int[] peakHeads;
+        private final boolean[] defeated;
+
+        private final int threads;
+        private long nanos;
+        private long[] sortedChops;
+        private int[] sortedPeaks;
+
+        private Report(int games, int threads) {
+            chops = new long[games];
+            peakHeads = new int[games];
+            defeated = new boolean[games];
+            this.threads = threads;
+        }
+
+        private void finish(long nanos) {
+            this.nanos = nanos;
+            sortedChops = chops.clone();
+            Arrays.sort(sortedChops);
+            sortedPeaks = peakHeads.clone();
+            Arrays.sort(sortedPeaks);
+        }
+
+        public int games() {
+            return chops.length;
+        }
+
+        public long chops(int game) {
+            return chops[game];
+        }
+
+        public int peakHeads(int game) {
+            return peakHeads[game];
+        }
+
+        /*False if the game hit maxChops first, or gave up on a chop that would pass maxHeads*/
+        public boolean defeated(int game) {
+            return defeated[game];
+        }
+
+        public int defeatedCount() {
+            int retVal = 0;
+            for (boolean d : defeated) {
+                if (d) {
+                    retVal++;
+                }
+            }
+            return retVal;
+        }
+
+        public long totalChops() {
+            long retVal = 0;
+            for (long c : chops) {
+                retVal += c;
+            }
+            return retVal;
+        }
+
+        /*Game length (in chops) that p of the games are at or under, e.g. 0.5 for the median*/
+        public long chopsPercentile(double p) {
+            return sortedChops[index(p)];
+        }
+
+        public int peakHeadsPercentile(double p) {
+            return sortedPeaks[index(p)];
+        }
+
+        private int index(double p) {
+            if (games() == 0) {
+                throw new IllegalStateException("No games were played");
+            }
+            return (int) Math.min(games() - 1, Math.max(0, Math.ceil(p * games()) - 1));
+        }
+
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            if (games() == 0) {
+                return "No games played";
+            }
+            double seconds = seconds();
+            return String.format("%d games on %d threads, %d defeated (%d gave up)%n"
+                            + "chops per game: min %d, median %d, p90 %d, p99 %d, max %d, mean %.1f%n"
+                            + "peak heads:     min %d, median %d, p90 %d, p99 %d, max %d%n"
+                            + "%.3f s, %.0f games/s, %.0f chops/s",
+                    games(), threads, defeatedCount(), games() - defeatedCount(),
+                    sortedChops[0], chopsPercentile(.5), chopsPercentile(.9), chopsPercentile(.99), sortedChops[games() - 1], (double) totalChops() / games(),
+                    sortedPeaks[0], peakHeadsPercentile(.5), peakHeadsPercentile(.9), peakHeadsPercentile(.99), sortedPeaks[games() - 1],
+                    seconds, games() / seconds, totalChops() / seconds);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = 10000, copies = 2, heads = 5, maxHeads = 1000000;
+        long seed = System.nanoTime(), maxChops = 1000000;
+        Strategy strategy = Strategy.RANDOM;
+        HydraTree start = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--games")) {
+                games = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--copies")) {
+                copies = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--strategy")) {
+                strategy = Strategy.valueOf(args[i + 1].toUpperCase());
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--heads")) {
+                heads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--file")) {
+                start = HydraImporter.importFile(Paths.get(args[i + 1])).tree();
+            } else if (args[i].equals("--max-chops")) {
+                maxChops = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--max-heads")) {
+                maxHeads = Integer.parseInt(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.out.println("seed " + seed + ", " + copies + " copies, " + strategy.name().toLowerCase());
+        MonteCarlo simulator = new MonteCarlo(start, copies, strategy).startHeads(heads).maxChops(maxChops).maxHeads(maxHeads);
+        System.out.println(simulator.run(games, seed));
+    }
+}
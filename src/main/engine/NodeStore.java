@@ -0,0 +1,29 @@
+package main.engine;
+
+import java.io.Closeable;
+
+/*
+ * Where a BigHydra keeps its heads: a table of fixed-width int records, one per head id.
+ * ArrayNodeStore keeps them on the Java heap, OffHeapNodeStore outside it (in direct memory, or in a
+ * memory-mapped file), so a Hydra can get much bigger than -Xmx without the garbage collector ever
+ * having to look at it.
+ */
+public interface NodeStore extends Closeable {
+    /*Field field of node's record*/
+    int get(int node, int field);
+
+    void set(int node, int field, int value);
+
+    /*Make sure records [0, nodes) exist. Existing records keep their values; new ones start at 0.*/
+    void ensureCapacity(int nodes);
+
+    /*Records that exist right now*/
+    int capacity();
+
+    /*Memory the records take up*/
+    long bytes();
+
+    /*Give the memory back. The store can't be used afterwards.*/
+    @Override
+    void close();
+}
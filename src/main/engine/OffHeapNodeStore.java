@@ -0,0 +1,110 @@
+package main.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * NodeStore outside the Java heap, in chunks of direct ByteBuffers, or of a memory-mapped file.
+ * Direct memory is limited by -XX:MaxDirectMemorySize (the same as -Xmx by default) instead of the heap.
+ * A mapped file is only limited by the disk: the OS pages records in and out as they are touched.
+ * Either way the GC only sees one small buffer object per chunk.
+ *
+ * Buffers are ints in the machine's own byte order, so a mapped file is a scratch file for this machine,
+ * not something to share. These are ByteBuffers and not MemorySegments because the game builds for
+ * JDK 11 and the foreign memory API is only final in 22. A ByteBuffer can't be unmapped on demand, so
+ * after close() the memory goes back whenever the GC gets to the buffer objects.
+ */
+public final class OffHeapNodeStore implements NodeStore {
+    private final int recordBytes;
+    private final int chunkShift, chunkMask;
+    private final FileChannel file;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /*In direct memory, records of fields ints, 2^chunkShift at a time*/
+    public OffHeapNodeStore(int fields, int chunkShift) {
+        this(fields, chunkShift, null);
+    }
+
+    public OffHeapNodeStore(int fields) {
+        this(fields, 18, null);
+    }
+
+    /*Mapped from file (which is created, or truncated if it's already there)*/
+    public OffHeapNodeStore(int fields, int chunkShift, Path file) {
+        if ((long) fields * 4 << chunkShift > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A chunk can't be over 2GB: " + fields + " fields, 2^" + chunkShift + " records.");
+        }
+        this.recordBytes = fields * 4;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        try {
+            this.file = file == null ? null : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open " + file, e);
+        }
+    }
+
+    @Override
+    public int get(int node, int field) {
+        return chunks[node >>> chunkShift].getInt((node & chunkMask) * recordBytes + (field << 2));
+    }
+
+    @Override
+    public void set(int node, int field, int value) {
+        chunks[node >>> chunkShift].putInt((node & chunkMask) * recordBytes + (field << 2), value);
+    }
+
+    @Override
+    public void ensureCapacity(int nodes) {
+        int needed = (int) (((long) nodes + chunkMask) >>> chunkShift);
+        if (needed <= chunks.length) {
+            return;
+        }
+        int had = chunks.length;
+        chunks = Arrays.copyOf(chunks, needed);
+        int chunkBytes = recordBytes << chunkShift;
+        for (int i = had; i < needed; i++) {
+            ByteBuffer chunk;
+            if (file == null) {
+                chunk = ByteBuffer.allocateDirect(chunkBytes);
+            } else {
+                try {
+                    //Mapping past the end makes the file longer (sparse, so unused space costs nothing)
+                    chunk = file.map(FileChannel.MapMode.READ_WRITE, (long) i * chunkBytes, chunkBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Can't map more of the node file", e);
+                }
+            }
+            chunks[i] = chunk.order(ByteOrder.nativeOrder());
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return (int) Math.min((long) chunks.length << chunkShift, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long bytes() {
+        return ((long) chunks.length << chunkShift) * recordBytes;
+    }
+
+    @Override
+    public void close() {
+        chunks = new ByteBuffer[0];
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package main.engine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/*
+ * Hands out interned HydraShapes. Every structurally distinct subtree is made exactly once per table,
+ * so shapes can be compared (and used as map keys) by identity.
+ * Not thread safe: give each thread (or each game) its own table.
+ */
+public final class ShapeTable {
+    private static final Comparator<HydraShape> BY_ID = new Comparator<HydraShape>() {
+        @Override
+        public int compare(HydraShape a, HydraShape b) {
+            return Integer.compare(a.id(), b.id());
+        }
+    };
+
+    private final HashMap<Key, HydraShape> shapes = new HashMap<Key, HydraShape>();
+    private final HydraShape leaf;
+
+    public ShapeTable() {
+        leaf = intern(new HydraShape[0], new long[0]);
+    }
+
+    /*The shape of a head with no children*/
+    public HydraShape leaf() {
+        return leaf;
+    }
+
+    /*How many distinct shapes have been made so far*/
+    public int size() {
+        return shapes.size();
+    }
+
+    /**
+     * The shape with the given children. kinds may come in any order and may repeat,
+     * counts line up with kinds, and anything with a count of zero is dropped.
+     */
+    public HydraShape of(HydraShape[] kinds, long[] counts) {
+        if (kinds.length != counts.length) {
+            throw new IllegalArgumentException("Every child shape needs a count.");
+        }
+        Integer[] order = new Integer[kinds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        final HydraShape[] k = kinds;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return BY_ID.compare(k[a], k[b]);
+            }
+        });
+
+        //Merge repeats and drop empties
+        HydraShape[] mergedKinds = new HydraShape[kinds.length];
+        long[] mergedCounts = new long[kinds.length];
+        int n = 0;
+        for (int i : order) {
+            if (counts[i] < 0) {
+                throw new IllegalArgumentException("A shape cannot have a negative number of children.");
+            }
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (n > 0 && mergedKinds[n - 1] == kinds[i]) {
+                mergedCounts[n - 1] = Math.addExact(mergedCounts[n - 1], counts[i]);
+            } else {
+                mergedKinds[n] = kinds[i];
+                mergedCounts[n] = counts[i];
+                n++;
+            }
+        }
+        return intern(Arrays.copyOf(mergedKinds, n), Arrays.copyOf(mergedCounts, n));
+    }
+
+    /*shape with delta more (or, if negative, fewer) copies of child*/
+    public HydraShape adjust(HydraShape shape, HydraShape child, long delta) {
+        int i = shape.indexOf(child);
+        if (i < 0) {
+            if (delta < 0) {
+                throw new IllegalArgumentException("Cannot remove a child shape that is not there.");
+            }
+            HydraShape[] kinds = Arrays.copyOf(shape.kinds, shape.kinds.length + 1);
+            long[] counts = Arrays.copyOf(shape.counts, shape.counts.length + 1);
+            kinds[kinds.length - 1] = child;
+            counts[counts.length - 1] = delta;
+            return of(kinds, counts);
+        }
+
+        long[] counts = shape.countsCopy();
+        counts[i] = Math.addExact(counts[i], delta);
+        if (counts[i] < 0) {
+            throw new IllegalArgumentException("Cannot remove more copies of a child shape than there are.");
+        }
+        if (counts[i] == 0) {
+            return of(shape.kinds, counts);
+        }
+        return intern(shape.kinds, counts);
+    }
+
+    /*shape with one copy of oldChild swapped for newCount copies of newChild*/
+    public HydraShape replace(HydraShape shape, HydraShape oldChild, HydraShape newChild, long newCount) {
+        int i = shape.indexOf(oldChild);
+        if (i < 0) {
+            throw new IllegalArgumentException("Cannot replace a child shape that is not there.");
+        }
+        HydraShape[] kinds = Arrays.copyOf(shape.kinds, shape.kinds.length + 1);
+        long[] counts = Arrays.copyOf(shape.counts, shape.counts.length + 1);
+        counts[i]--;
+        kinds[kinds.length - 1] = newChild;
+        counts[counts.length - 1] = newCount;
+        return of(kinds, counts);
+    }
+
+    //kinds must already be sorted by id with no repeats or zero counts
+    private HydraShape intern(HydraShape[] kinds, long[] counts) {
+        Key key = new Key(kinds, counts);
+        HydraShape existing = shapes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        HydraShape shape = new HydraShape(shapes.size(), kinds, counts);
+        shapes.put(key, shape);
+        return shape;
+    }
+
+    //Lookup key so we don't have to make a shape (and burn an id) just to see if it exists
+    private static final class Key {
+        private final HydraShape[] kinds;
+        private final long[] counts;
+        private final int hash;
+
+        Key(HydraShape[] kinds, long[] counts) {
+            this.kinds = kinds;
+            this.counts = counts;
+            this.hash = HydraShape.contentHash(kinds, counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (other.kinds.length != kinds.length) {
+                return false;
+            }
+            for (int i = 0; i < kinds.length; i++) {
+                if (other.kinds[i] != kinds[i] || other.counts[i] != counts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
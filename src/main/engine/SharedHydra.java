@@ -0,0 +1,174 @@
+package main.engine;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/*
+ * A Hydra stored as interned shapes instead of one slot per head.
+ * Identical subtrees exist once, and siblings are (shape, how many) pairs, so re-growing n copies is just
+ * a count going up by n. Chopping a head inside a shared copy only re-builds the shapes on the path from
+ * the body down to that head (copy-on-write), everything else stays shared.
+ *
+ * Heads are addressed by path: path[i] is which kind of child to step into at depth i, and the last step
+ * must land on a leaf. Which copy doesn't matter, they are all the same.
+ */
+public final class SharedHydra {
+    private final ShapeTable table;
+    private HydraShape body;
+
+    public SharedHydra(ShapeTable table, HydraShape body) {
+        this.table = table;
+        this.body = body;
+    }
+
+    /*Share everything that can be shared in a regular tree*/
+    public static SharedHydra of(HydraTree tree) {
+        ShapeTable table = new ShapeTable();
+        return new SharedHydra(table, shapesOf(tree, table)[tree.root()]);
+    }
+
+    /*The shape of every subtree in tree, indexed by head id. Dead ids are null.*/
+    public static HydraShape[] shapesOf(HydraTree tree, ShapeTable table) {
+        //Children always come after their parent in pre-order, so going backwards builds children first
+        int[] order = new int[tree.size()];
+        int count = 0;
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            order[count++] = n;
+        }
+
+        HydraShape[] shapes = new HydraShape[tree.idBound()];
+        for (int i = count - 1; i >= 0; i--) {
+            int n = order[i];
+            HydraShape[] kinds = new HydraShape[tree.childCount(n)];
+            long[] counts = new long[kinds.length];
+            int k = 0;
+            for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                kinds[k] = shapes[c];
+                counts[k++] = 1;
+            }
+            shapes[n] = table.of(kinds, counts);
+        }
+        return shapes;
+    }
+
+    public HydraShape body() {
+        return body;
+    }
+
+    public ShapeTable table() {
+        return table;
+    }
+
+    /*Number of heads including the body*/
+    public BigInteger size() {
+        return body.size();
+    }
+
+    /*Number of heads that can be chopped right now*/
+    public BigInteger heads() {
+        return body.isLeaf() ? BigInteger.ZERO : body.heads();
+    }
+
+    //The game is won when all the heads are gone!
+    public boolean isDefeated() {
+        return body.isLeaf();
+    }
+
+    /**
+     * Chop the head at the end of path and re-grow copies of its parent onto its grandparent.
+     *
+     * @return false (and nothing changes) if the path doesn't end on a head without children
+     */
+    public boolean chop(int[] path, long copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("Number of copies cannot be negative: " + copies);
+        }
+        if (path.length == 0) {
+            return false;
+        }
+
+        //Every shape from the body down to the head
+        HydraShape[] chain = new HydraShape[path.length + 1];
+        chain[0] = body;
+        for (int i = 0; i < path.length; i++) {
+            if (path[i] < 0 || path[i] >= chain[i].kinds.length) {
+                throw new IllegalArgumentException("No such child at depth " + i + ": " + path[i]);
+            }
+            chain[i + 1] = chain[i].kinds[path[i]];
+        }
+        int k = path.length;
+        if (!chain[k].isLeaf()) {
+            return false;
+        }
+
+        HydraShape newParent = table.adjust(chain[k - 1], chain[k], -1);
+        if (k == 1) {
+            //No re-growth occurs for nodes connected to the body
+            body = newParent;
+            return true;
+        }
+
+        //The grandparent swaps the old parent for the new one plus its copies, then every ancestor swaps in its new child
+        HydraShape replacement = table.replace(chain[k - 2], chain[k - 1], newParent, Math.addExact(copies, 1));
+        for (int i = k - 3; i >= 0; i--) {
+            replacement = table.replace(chain[i], chain[i + 1], replacement, 1);
+        }
+        body = replacement;
+        return true;
+    }
+
+    /*
+     * The path to the index'th choppable head (0 <= index < heads()), counting the copies.
+     * Handy for picking a head uniformly at random.
+     */
+    public int[] headPath(BigInteger index) {
+        if (index.signum() < 0 || index.compareTo(heads()) >= 0) {
+            throw new IndexOutOfBoundsException("No head " + index + " in a Hydra with " + heads() + " heads.");
+        }
+        int[] path = new int[body.height()];
+        int length = 0;
+        HydraShape s = body;
+        while (!s.isLeaf()) {
+            for (int i = 0; i < s.kinds.length; i++) {
+                BigInteger each = s.kinds[i].heads();
+                BigInteger block = each.multiply(BigInteger.valueOf(s.counts[i]));
+                if (index.compareTo(block) < 0) {
+                    path[length++] = i;
+                    index = index.mod(each);
+                    s = s.kinds[i];
+                    break;
+                }
+                index = index.subtract(block);
+            }
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /*Expand back into a regular tree. Throws if that would take more than maxNodes heads.*/
+    public HydraTree toTree(int maxNodes) {
+        if (body.size().compareTo(BigInteger.valueOf(maxNodes)) > 0) {
+            throw new IllegalStateException("Hydra has " + body.size() + " heads, more than " + maxNodes + ".");
+        }
+        int total = body.size().intValue();
+        HydraTree tree = new HydraTree(true, total);
+
+        //Explicit stack of (shape, where it goes) so deep hydras don't blow the call stack
+        HydraShape[] shapeStack = new HydraShape[total];
+        int[] nodeStack = new int[total];
+        int top = 0;
+        shapeStack[top] = body;
+        nodeStack[top++] = tree.root();
+        while (top > 0) {
+            top--;
+            HydraShape s = shapeStack[top];
+            int node = nodeStack[top];
+            for (int i = 0; i < s.kinds.length; i++) {
+                for (long c = 0; c < s.counts[i]; c++) {
+                    shapeStack[top] = s.kinds[i];
+                    nodeStack[top++] = tree.addChild(node);
+                }
+            }
+        }
+        return tree;
+    }
+}
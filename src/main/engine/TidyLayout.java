@@ -0,0 +1,352 @@
+package main.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * A tidy tree layout (Reingold-Tilford): every parent sits centred over its children, subtrees are pushed
+ * together as close as they can go without overlapping at any level, and a subtree always looks the same
+ * wherever it is. Rows are the same as LevelLayout's, so only the x positions differ.
+ *
+ * The expensive part, fitting subtrees together, is done once per distinct subtree shape and kept in a
+ * Cache. Re-growth copies a whole subtree, so a big Hydra is mostly copies of a few shapes, and after a
+ * chop only the shapes along the chopped head's path (which really did change) are new. Everything else
+ * is an O(1) lookup. Placing the heads from the cached shapes is one more pass.
+ *
+ * A subtree's outline (its contour) is kept as a linked list, one entry per level, each holding its x
+ * relative to the level above. Moving a whole outline sideways then only touches its first entry, and a
+ * parent can share the tail of its tallest child's outline. Fitting a child against its left siblings
+ * only walks as deep as the shorter of the two, which keeps the whole layout linear in the heads.
+ */
+public final class TidyLayout implements HydraLayout {
+    //Gap between neighbouring heads, in head widths
+    private static final double SEPARATION = 1;
+
+    /*
+     * Every shape laid out so far. Only touch one from one thread at a time; it can be shared by any number
+     * of TidyLayouts that are used that way (BackgroundLayout makes a new layout per frame, but keeps the cache).
+     */
+    public static final class Cache {
+        //Forget everything past this many shapes, so a long game doesn't fill the heap
+        private static final int MAX_SHAPES = 1 << 20;
+
+        private final HashMap<Key, Shape> shapes = new HashMap<Key, Shape>();
+        private Shape[] byId = new Shape[64];
+        private long built = 0;
+
+        public Cache() {
+            clear();
+        }
+
+        /*Shapes that had to be fitted together, ever. Cache hits don't count.*/
+        public long shapesBuilt() {
+            return built;
+        }
+
+        public int size() {
+            return shapes.size();
+        }
+
+        private void clear() {
+            shapes.clear();
+            Arrays.fill(byId, null);
+            Shape leaf = new Shape(0, new Shape[0]);
+            shapes.put(new Key(new int[0], 0), leaf);
+            byId[0] = leaf;
+        }
+
+        //The shape with these children, fitting it together if it's new
+        private Shape of(Key probe) {
+            Shape retVal = shapes.get(probe);
+            if (retVal == null) {
+                Shape[] children = new Shape[probe.length];
+                for (int i = 0; i < probe.length; i++) {
+                    children[i] = byId[probe.children[i]];
+                }
+                retVal = new Shape(shapes.size(), children);
+                shapes.put(probe.copy(), retVal);
+                if (retVal.id == byId.length) {
+                    byId = Arrays.copyOf(byId, byId.length * 2);
+                }
+                byId[retVal.id] = retVal;
+                built++;
+            }
+            return retVal;
+        }
+    }
+
+    private final double width, height;
+    private final Cache cache;
+
+    //Indexed by head id
+    private int[] shape = new int[0];
+    private double[] x = new double[0], y = new double[0];
+
+    //Indexed by depth
+    private int[] levelSizes = new int[0], parentCounts = new int[0];
+    private int levelCount = 0;
+    private double headWidth = 0;
+
+    /*width and height of the area the Hydra is drawn in*/
+    public TidyLayout(double width, double height) {
+        this(width, height, new Cache());
+    }
+
+    public TidyLayout(double width, double height, Cache cache) {
+        this.width = width;
+        this.height = height;
+        this.cache = cache;
+    }
+
+    @Override
+    public void layout(HydraTree tree, double bodyY) {
+        //<Book Keeping>
+        if (cache.size() > Cache.MAX_SHAPES) {
+            cache.clear();
+        }
+        levelCount = tree.height();
+        if (levelSizes.length < levelCount) {
+            levelSizes = new int[Math.max(levelCount, levelSizes.length * 2)];
+            parentCounts = new int[levelSizes.length];
+        }
+        for (int d = 0; d < levelCount; d++) {
+            levelSizes[d] = tree.levelSize(d);
+            parentCounts[d] = tree.levelParents(d);
+        }
+        if (x.length < tree.idBound()) {
+            shape = new int[tree.idBound()];
+            x = new double[tree.idBound()];
+            y = new double[tree.idBound()];
+        }
+        //</Book Keeping>
+
+        //Bottom up: the shape of every subtree (fitting together only the ones we haven't seen)
+        Key probe = new Key(new int[16], 0);
+        for (int n = tree.postOrderFirst(tree.root()); n != HydraTree.NONE; n = tree.postOrderNext(n, tree.root())) {
+            if (tree.firstChild(n) == HydraTree.NONE) {
+                shape[n] = 0;
+                continue;
+            }
+            probe.clear();
+            for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                probe.add(shape[c]);
+            }
+            shape[n] = cache.of(probe).id;
+        }
+
+        //Top down: every head's x, in head widths from the body
+        x[tree.root()] = 0;
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            double[] offsets = cache.byId[shape[n]].offsets;
+            int i = 0;
+            for (int c = tree.firstChild(n); c != HydraTree.NONE; c = tree.nextSibling(c)) {
+                x[c] = x[n] + offsets[i++];
+            }
+        }
+
+        //Scale the whole thing to fit the screen, and put each level on its row
+        Shape body = cache.byId[shape[tree.root()]];
+        double left = 0, right = 0, l = 0, r = 0;
+        for (Contour a = body.left, b = body.right; a != null; a = a.next, b = b.next) {
+            l += a.dx;
+            r += b.dx;
+            left = Math.min(left, l);
+            right = Math.max(right, r);
+        }
+        headWidth = Math.min(width / (right - left + 1), width * .15);
+        double margin = (width - (right - left) * headWidth) / 2;
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            int d = tree.depth(n);
+            x[n] = margin + (x[n] - left) * headWidth;
+            y[n] = d == 0 ? bodyY : height - ((d + 1) * (height / (levelCount + 1)));
+        }
+    }
+
+    /*The cache this layout fits shapes into*/
+    public Cache cache() {
+        return cache;
+    }
+
+    @Override
+    public double x(int id) {
+        return x[id];
+    }
+
+    @Override
+    public double y(int id) {
+        return y[id];
+    }
+
+    @Override
+    public int levelCount() {
+        return levelCount;
+    }
+
+    @Override
+    public int levelSize(int depth) {
+        return depth < levelCount ? levelSizes[depth] : 0;
+    }
+
+    @Override
+    public int parentCount(int depth) {
+        return depth < levelCount ? parentCounts[depth] : 0;
+    }
+
+    //Every head is the same size here, a little narrower than the space it gets
+    @Override
+    public double radiusX(int depth) {
+        return headWidth * .4;
+    }
+
+    //Don't ever let the nodes be taller than 20% of the display
+    @Override
+    public double radiusY() {
+        double retVal = height / ((levelCount + 2) * 2);
+
+        if (retVal > height * .0625) {
+            return height * .0625;
+        }
+
+        return retVal;
+    }
+
+    //One level of an outline. dx is relative to the level above (the first level's is relative to the subtree's root).
+    private static final class Contour {
+        final double dx;
+        final Contour next;
+
+        Contour(double dx, Contour next) {
+            this.dx = dx;
+            this.next = next;
+        }
+    }
+
+    //One distinct subtree shape, fitted together
+    private static final class Shape {
+        final int id;
+        //Levels, counting the root
+        final int height;
+        //Where each child sits, relative to this root
+        final double[] offsets;
+        //The left- and rightmost x on each level, starting with the root (at 0)
+        final Contour left, right;
+
+        Shape(int id, Shape[] children) {
+            this.id = id;
+            this.offsets = new double[children.length];
+            if (children.length == 0) {
+                height = 1;
+                left = right = new Contour(0, null);
+                return;
+            }
+
+            //The outline of the children placed so far. The first entries are absolute (within this shape).
+            Contour accLeft = children[0].left, accRight = children[0].right;
+            int accHeight = children[0].height;
+            for (int i = 1; i < children.length; i++) {
+                Shape child = children[i];
+                //Push the child right until it clears everything on its left at every level they share
+                double shift = Double.NEGATIVE_INFINITY;
+                double r = 0, l = 0;
+                Contour a = accRight, b = child.left;
+                for (int level = 0, shared = Math.min(accHeight, child.height); level < shared; level++) {
+                    r += a.dx;
+                    l += b.dx;
+                    shift = Math.max(shift, r - l + SEPARATION);
+                    a = a.next;
+                    b = b.next;
+                }
+                offsets[i] = shift;
+
+                Contour childLeft = new Contour(child.left.dx + shift, child.left.next);
+                Contour childRight = new Contour(child.right.dx + shift, child.right.next);
+                //Right outline: the new child, then whatever hangs below it on the left
+                accRight = child.height >= accHeight ? childRight : splice(childRight, child.height, accRight);
+                //Left outline: what we had, then whatever of the new child hangs below it
+                accLeft = accHeight >= child.height ? accLeft : splice(accLeft, accHeight, childLeft);
+                accHeight = Math.max(accHeight, child.height);
+            }
+
+            //Centre the root over its first and last child
+            double middle = (offsets[0] + offsets[children.length - 1]) / 2;
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] -= middle;
+            }
+            height = accHeight + 1;
+            left = new Contour(0, new Contour(accLeft.dx - middle, accLeft.next));
+            right = new Contour(0, new Contour(accRight.dx - middle, accRight.next));
+        }
+
+        //The first levels of upper, then lower from that depth down. Copies upper (it's the shorter one).
+        private static Contour splice(Contour upper, int levels, Contour lower) {
+            double[] dx = new double[levels];
+            double upperX = 0, lowerX = 0;
+            Contour u = upper, w = lower;
+            for (int i = 0; i < levels; i++) {
+                dx[i] = u.dx;
+                upperX += u.dx;
+                lowerX += w.dx;
+                u = u.next;
+                w = w.next;
+            }
+            //Where lower carries on, relative to upper's last level
+            Contour retVal = new Contour(lowerX - upperX + w.dx, w.next);
+            for (int i = levels - 1; i >= 0; i--) {
+                retVal = new Contour(dx[i], retVal);
+            }
+            return retVal;
+        }
+    }
+
+    //Child shape ids, as a hash key. One is reused to probe, and only copied when a new shape goes in.
+    private static final class Key {
+        private int[] children;
+        private int length;
+
+        Key(int[] children, int length) {
+            this.children = children;
+            this.length = length;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        void add(int id) {
+            if (length == children.length) {
+                children = Arrays.copyOf(children, length * 2);
+            }
+            children[length++] = id;
+        }
+
+        Key copy() {
+            return new Key(Arrays.copyOf(children, length), length);
+        }
+
+        @Override
+        public int hashCode() {
+            int retVal = 1;
+            for (int i = 0; i < length; i++) {
+                retVal = 31 * retVal + children[i];
+            }
+            return retVal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (children[i] != other.children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package main.engine;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/*
+ * The iterators behind HydraTree's traversal methods. None of them keep a list or a stack of heads,
+ * they just follow the tree's links, so walking a huge (or very tall) Hydra costs nothing extra.
+ * Like any iterator, don't change the tree while you are walking it.
+ */
+final class Traversals {
+    private Traversals() {
+    }
+
+    static final class PreOrder implements PrimitiveIterator.OfInt {
+        private final HydraTree tree;
+        private final int from;
+        private int next;
+
+        PreOrder(HydraTree tree, int from) {
+            this.tree = tree;
+            this.from = from;
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != HydraTree.NONE;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next == HydraTree.NONE) {
+                throw new NoSuchElementException();
+            }
+            int current = next;
+            next = tree.preOrderNext(current, from);
+            return current;
+        }
+    }
+
+    static final class PostOrder implements PrimitiveIterator.OfInt {
+        private final HydraTree tree;
+        private final int from;
+        private int next;
+
+        PostOrder(HydraTree tree, int from) {
+            this.tree = tree;
+            this.from = from;
+            this.next = tree.postOrderFirst(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != HydraTree.NONE;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next == HydraTree.NONE) {
+                throw new NoSuchElementException();
+            }
+            int current = next;
+            next = tree.postOrderNext(current, from);
+            return current;
+        }
+    }
+
+    /*
+     * Level by level, each level in pre-order. From the root this just follows the tree's level lists.
+     * For a subtree each level is found by a walk that doesn't go any deeper than that level, so this
+     * costs O(heads x levels) but never allocates. Hydras are wide, not tall.
+     */
+    static final class LevelOrder implements PrimitiveIterator.OfInt {
+        private final HydraTree tree;
+        private final int from;
+        private int level = 0;
+        private int next;
+
+        LevelOrder(HydraTree tree, int from) {
+            this.tree = tree;
+            this.from = from;
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != HydraTree.NONE;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next == HydraTree.NONE) {
+                throw new NoSuchElementException();
+            }
+            int current = next;
+            if (from == tree.root()) {
+                next = tree.levelNext(current);
+                if (next == HydraTree.NONE) {
+                    next = tree.levelFirst(++level);
+                }
+                return current;
+            }
+            next = nextOnLevel(current);
+            while (next == HydraTree.NONE && deeperLevelExists()) {
+                level++;
+                next = firstOnLevel();
+            }
+            return current;
+        }
+
+        //How deep a head is, counting from the head we started at
+        private int relativeDepth(int node) {
+            return tree.depth(node) - tree.depth(from);
+        }
+
+        private boolean deeperLevelExists() {
+            return firstOnLevel(level + 1) != HydraTree.NONE;
+        }
+
+        private int firstOnLevel() {
+            return firstOnLevel(level);
+        }
+
+        private int firstOnLevel(int wanted) {
+            for (int n = from; n != HydraTree.NONE; n = pruned(n, wanted)) {
+                if (relativeDepth(n) == wanted) {
+                    return n;
+                }
+            }
+            return HydraTree.NONE;
+        }
+
+        private int nextOnLevel(int node) {
+            for (int n = pruned(node, level); n != HydraTree.NONE; n = pruned(n, level)) {
+                if (relativeDepth(n) == level) {
+                    return n;
+                }
+            }
+            return HydraTree.NONE;
+        }
+
+        //Pre-order successor that never goes below the wanted level
+        private int pruned(int node, int wanted) {
+            if (relativeDepth(node) < wanted && tree.firstChild(node) != HydraTree.NONE) {
+                return tree.firstChild(node);
+            }
+            while (node != from) {
+                if (tree.nextSibling(node) != HydraTree.NONE) {
+                    return tree.nextSibling(node);
+                }
+                node = tree.parent(node);
+            }
+            return HydraTree.NONE;
+        }
+    }
+
+    /*
+     * Pre-order over [cur, fence): everything from cur up to (not including) fence, where fence is NONE,
+     * a child of one of cur's ancestors, or one of the children a split of cur's own subtree cut at.
+     * Splitting hands off the front half of cur's children (or of the first head under cur with more than
+     * one, so a neck doesn't stop the split), or else of cur's later siblings, which keeps the prefix in
+     * encounter order. Siblings are never used at from itself, they aren't part of the subtree.
+     */
+    static final class PreOrderSpliterator implements Spliterator.OfInt {
+        private final HydraTree tree;
+        private final int from;
+        private int cur;
+        private final int fence;
+        private long estimate;
+
+        PreOrderSpliterator(HydraTree tree, int from, int fence, long estimate) {
+            this.tree = tree;
+            this.from = from;
+            this.cur = from;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        private PreOrderSpliterator(HydraTree tree, int from, int cur, int fence, long estimate) {
+            this.tree = tree;
+            this.from = from;
+            this.cur = cur;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (cur == HydraTree.NONE || cur == fence) {
+                return false;
+            }
+            int current = cur;
+            cur = tree.preOrderNext(current, from);
+            action.accept(current);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            int n = cur;
+            cur = fence;
+            for (; n != HydraTree.NONE && n != fence; n = tree.preOrderNext(n, from)) {
+                action.accept(n);
+            }
+        }
+
+        @Override
+        public OfInt trySplit() {
+            if (cur == HydraTree.NONE || cur == fence) {
+                return null;
+            }
+
+            //First choice: split cur's own children in half (going down past any heads with only one)
+            int split = cur;
+            while (tree.childCount(split) == 1 && tree.firstChild(split) != fence) {
+                split = tree.firstChild(split);
+            }
+            int mid = middle(tree.firstChild(split));
+            //Otherwise split the siblings that come after cur, unless the fence is under cur (then they're past it)
+            if (mid == HydraTree.NONE && cur != from && (fence == HydraTree.NONE || tree.depth(fence) <= tree.depth(cur))) {
+                mid = middle(tree.nextSibling(cur));
+            }
+            if (mid == HydraTree.NONE) {
+                return null;
+            }
+
+            long half = estimate >>> 1;
+            PreOrderSpliterator prefix = new PreOrderSpliterator(tree, from, cur, mid, half);
+            cur = mid;
+            estimate -= half;
+            return prefix;
+        }
+
+        //The middle of a run of siblings that are still before the fence, or NONE if there are fewer than two
+        private int middle(int first) {
+            int count = 0;
+            for (int s = first; s != HydraTree.NONE && s != fence; s = tree.nextSibling(s)) {
+                count++;
+            }
+            if (count < 2) {
+                return HydraTree.NONE;
+            }
+            int mid = first;
+            for (int i = 0; i < count / 2; i++) {
+                mid = tree.nextSibling(mid);
+            }
+            return mid;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+    }
+}
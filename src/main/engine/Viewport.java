@@ -0,0 +1,128 @@
+package main.engine;
+
+/*
+ * Which part of a layout is on screen. Layouts place the Hydra in a world the size of the drawing area;
+ * the viewport scales that up by scale() and slides it by an offset, so
+ * 	screen = (world - offset) * scale
+ * It never zooms out past the whole Hydra, and never pans off the edge of it.
+ *
+ * Zooming is animated: zoomAt() only sets where the zoom is headed, and step() gets a bit closer each
+ * frame, keeping the point under the mouse where it is. This is just the math, the renderer calls step().
+ */
+public final class Viewport {
+    /*How far in we can go (a 2 pixel head becomes half a million pixels)*/
+    public static final double MAX_SCALE = 1 << 18;
+
+    private double width = 1, height = 1;
+    private double scale = 1, offsetX = 0, offsetY = 0;
+    //Where an animated zoom is headed, and the point (on screen) it zooms around
+    private double targetScale = 1, aroundX = 0, aroundY = 0;
+
+    /*The world (and the screen) is this big*/
+    public void setSize(double width, double height) {
+        if (width <= 0 || height <= 0 || (width == this.width && height == this.height)) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        clamp();
+    }
+
+    public double scale() {
+        return scale;
+    }
+
+    public boolean isZoomed() {
+        return scale != 1 || targetScale != 1;
+    }
+
+    //<Conversions>
+    public double toScreenX(double x) {
+        return (x - offsetX) * scale;
+    }
+
+    public double toScreenY(double y) {
+        return (y - offsetY) * scale;
+    }
+
+    public double toWorldX(double screenX) {
+        return screenX / scale + offsetX;
+    }
+
+    public double toWorldY(double screenY) {
+        return screenY / scale + offsetY;
+    }
+
+    /*The edges of what's on screen, in world coordinates*/
+    public double left() {
+        return offsetX;
+    }
+
+    public double right() {
+        return offsetX + width / scale;
+    }
+
+    public double top() {
+        return offsetY;
+    }
+
+    public double bottom() {
+        return offsetY + height / scale;
+    }
+    //</Conversions>
+
+    /*Drag the view by this many pixels (the Hydra moves with the mouse)*/
+    public void panBy(double dx, double dy) {
+        offsetX -= dx / scale;
+        offsetY -= dy / scale;
+        clamp();
+    }
+
+    /*Start zooming by factor (over 1 is in) around a point on screen. Zooms add up if they come quickly.*/
+    public void zoomAt(double screenX, double screenY, double factor) {
+        targetScale = Math.max(1, Math.min(MAX_SCALE, targetScale * factor));
+        aroundX = screenX;
+        aroundY = screenY;
+    }
+
+    /*
+     * Move fraction (0 to 1) of the way to the zoom asked for, on a log scale so every frame looks like the
+     * same amount of zoom. Returns true if there's still further to go.
+     */
+    public boolean step(double fraction) {
+        if (scale == targetScale) {
+            return false;
+        }
+        double next = scale * Math.pow(targetScale / scale, fraction);
+        //Close enough: land exactly, so the animation ends
+        if (Math.abs(next / targetScale - 1) < 1e-3) {
+            next = targetScale;
+        }
+        zoomTo(next);
+        return scale != targetScale;
+    }
+
+    /*Back to the whole Hydra, straight away*/
+    public void reset() {
+        scale = 1;
+        targetScale = 1;
+        offsetX = 0;
+        offsetY = 0;
+    }
+
+    //Set the scale, keeping the world point under (aroundX, aroundY) there
+    private void zoomTo(double newScale) {
+        double worldX = toWorldX(aroundX);
+        double worldY = toWorldY(aroundY);
+        scale = newScale;
+        offsetX = worldX - aroundX / scale;
+        offsetY = worldY - aroundY / scale;
+        clamp();
+    }
+
+    //Keep the view inside the world
+    private void clamp() {
+        offsetX = Math.max(0, Math.min(offsetX, width - width / scale));
+        offsetY = Math.max(0, Math.min(offsetY, height - height / scale));
+    }
+}
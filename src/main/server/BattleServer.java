@@ -0,0 +1,269 @@
+package main.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import main.engine.HydraMetrics;
+import main.engine.HydraSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hosts lots of Hydra games at once over plain HTTP on localhost, one HydraSession per client.
+ * Answers are plain text, except export which is HydraFormat bytes.
+ *
+ * 	POST   /sessions                    new game, answers with its id
+ * 	GET    /sessions/{id}               heads, choppable heads, chops, copies, defeated
+ * 	POST   /sessions/{id}/chop?head=X   chop head X
+ * 	POST   /sessions/{id}/random        chop a random head
+ * 	POST   /sessions/{id}/copies?n=N    set the copy count
+ * 	GET    /sessions/{id}/export        the Hydra in HydraFormat
+ * 	DELETE /sessions/{id}               end the game
+ * 	GET    /metrics                     chops, heads grown per chop, peak heads... (see HydraMetrics)
+ *
+ * Every request runs on its own virtual thread when the JDK has them (21+), otherwise on a cached pool.
+ * Sessions only share the map they live in; each one locks itself, so two clients never wait on each other.
+ *
+ * Usage: java main.server.BattleServer [--port 8364] [--max-heads 1000000] [--max-sessions 100000]
+ */
+public final class BattleServer {
+    public static final int DEFAULT_PORT = 8364;
+
+    static {
+        //Otherwise small answers sit waiting on Nagle + delayed ACKs (~40ms each). Read once, when the first server is made.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, HydraSession> sessions = new ConcurrentHashMap<Long, HydraSession>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final int maxHeads;
+    private final int maxSessions;
+
+    /*Listen on localhost (port 0 picks a free one, see port())*/
+    public BattleServer(int port, int maxHeads, int maxSessions) throws IOException {
+        this.maxHeads = maxHeads;
+        this.maxSessions = maxSessions;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/sessions", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    route(exchange);
+                } catch (RuntimeException e) {
+                    send(exchange, 500, String.valueOf(e));
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    drain(exchange.getRequestBody());
+                    send(exchange, 200, HydraMetrics.global().snapshot().toString());
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /*Stop taking requests, give the ones in flight a second, then drop every session*/
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        sessions.clear();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /*
+     * A virtual thread per task if this JDK has them. Looked up by reflection so the game still
+     * builds and runs on JDK 11 to 20, which don't.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    //<Routing>
+    private void route(HttpExchange exchange) throws IOException {
+        drain(exchange.getRequestBody());
+        String method = exchange.getRequestMethod();
+        //"", "/sessions", then maybe an id and an action
+        String[] path = exchange.getRequestURI().getPath().split("/");
+
+        if (path.length == 2) {
+            if (method.equals("POST")) {
+                create(exchange);
+            } else {
+                send(exchange, 405, "POST to start a game");
+            }
+            return;
+        }
+
+        HydraSession session;
+        long id;
+        try {
+            id = Long.parseLong(path[2]);
+            session = sessions.get(id);
+        } catch (NumberFormatException e) {
+            session = null;
+            id = -1;
+        }
+        if (session == null) {
+            send(exchange, 404, "No such session");
+            return;
+        }
+
+        String action = path.length > 3 ? path[3] : "";
+        if (action.isEmpty() && method.equals("GET")) {
+            send(exchange, 200, describe(session));
+        } else if (action.isEmpty() && method.equals("DELETE")) {
+            sessions.remove(id);
+            send(exchange, 200, "Bye");
+        } else if (action.equals("chop") && method.equals("POST")) {
+            int head = intParameter(exchange, "head");
+            chopped(exchange, session, head < 0 ? HydraSession.ChopResult.NO_SUCH_HEAD : session.chop(head));
+        } else if (action.equals("random") && method.equals("POST")) {
+            chopped(exchange, session, session.randomChop(null));
+        } else if (action.equals("copies") && method.equals("POST")) {
+            int copies = intParameter(exchange, "n");
+            if (copies < 0) {
+                send(exchange, 400, "n must be a number of copies");
+                return;
+            }
+            session.setCopies(copies);
+            send(exchange, 200, describe(session));
+        } else if (action.equals("export") && method.equals("GET")) {
+            byte[] body = session.export();
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } else {
+            send(exchange, 404, "Unknown request");
+        }
+    }
+
+    private void create(HttpExchange exchange) throws IOException {
+        if (sessions.size() >= maxSessions) {
+            send(exchange, 503, "Too many games going");
+            return;
+        }
+        HydraSession session = new HydraSession(5, ThreadLocalRandom.current().nextLong());
+        session.setMaxHeads(maxHeads);
+        long id = nextId.getAndIncrement();
+        sessions.put(id, session);
+        send(exchange, 201, String.valueOf(id));
+    }
+
+    private static void chopped(HttpExchange exchange, HydraSession session, HydraSession.ChopResult result) throws IOException {
+        int status;
+        switch (result) {
+            case CHOPPED:
+            case DEFEATED:
+                status = 200;
+                break;
+            case NO_SUCH_HEAD:
+                status = 404;
+                break;
+            default:
+                status = 409;
+                break;
+        }
+        send(exchange, status, result.name().toLowerCase() + "\n" + describe(session));
+    }
+    //</Routing>
+
+    //<Helpers>
+    private static String describe(HydraSession session) {
+        return "heads=" + (session.size() - 1) + "\nchoppable=" + session.choppableCount() + "\nchops=" + session.chops()
+                + "\ncopies=" + session.copies() + "\ndefeated=" + session.isDefeated() + "\n";
+    }
+
+    //A non-negative int from the query string, or -1 if it's missing or bad
+    private static int intParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return -1;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                try {
+                    return Math.max(-1, Integer.parseInt(pair.substring(name.length() + 1)));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    //Read whatever the client sent so the connection can be kept alive
+    private static void drain(InputStream in) throws IOException {
+        byte[] skip = new byte[512];
+        while (in.read(skip) >= 0) {
+            //Nothing to do with it
+        }
+    }
+    //</Helpers>
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT, maxHeads = 1000000, maxSessions = 100000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--max-heads")) {
+                maxHeads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--max-sessions")) {
+                maxSessions = Integer.parseInt(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        BattleServer server = new BattleServer(port, maxHeads, maxSessions);
+        server.start();
+        System.out.println("Hydra battle server on http://localhost:" + server.port() + "/sessions");
+    }
+}
@@ -0,0 +1,220 @@
+package main.server;
+
+import main.engine.HydraMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Hammers a BattleServer with lots of clients at once, each playing its own game with random chops
+ * (and starting a new one whenever it wins or the Hydra gets too big), then prints requests per second
+ * and latency percentiles.
+ *
+ * Usage: java main.server.LoadGenerator [--url http://localhost:8364] [--clients 1000] [--seconds 10]
+ *        [--copies 2] [--server]   (--server starts one in this JVM first)
+ */
+public final class LoadGenerator {
+    private final String base;
+    private final int clients;
+    private final long nanos;
+    private final int copies;
+
+    public LoadGenerator(String base, int clients, long seconds, int copies) {
+        this.base = base;
+        this.clients = clients;
+        this.nanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.copies = copies;
+    }
+
+    /*Run every client until time is up and collect what they saw*/
+    public Result run() throws InterruptedException {
+        final Client[] all = new Client[clients];
+        final CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService executor = BattleServer.newExecutor();
+        final long deadline = System.nanoTime() + nanos;
+        long started = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            all[i] = new Client();
+            final Client client = all[i];
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        client.play(deadline);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return new Result(all, System.nanoTime() - started);
+    }
+
+    //One client: its own game and its own latencies, so clients never touch each other's data
+    private final class Client {
+        private long[] latencies = new long[256];
+        private int requests = 0;
+        private int errors = 0;
+
+        void play(long deadline) {
+            String session = null;
+            while (System.nanoTime() < deadline) {
+                try {
+                    if (session == null) {
+                        session = request("POST", "/sessions").trim();
+                        request("POST", "/sessions/" + session + "/copies?n=" + copies);
+                    }
+                    String answer = request("POST", "/sessions/" + session + "/random");
+                    //Won, or the Hydra got too big to keep going: start over
+                    if (answer == null || answer.startsWith("defeated") || answer.startsWith("too_big")) {
+                        request("DELETE", "/sessions/" + session);
+                        session = null;
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    session = null;
+                }
+            }
+            if (session != null) {
+                try {
+                    request("DELETE", "/sessions/" + session);
+                } catch (IOException e) {
+                    errors++;
+                }
+            }
+        }
+
+        //Send one request, time it, and return the body (null for an error status)
+        private String request(String method, String path) throws IOException {
+            long start = System.nanoTime();
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+            connection.setRequestMethod(method);
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String retVal = in == null ? "" : read(in);
+            record(System.nanoTime() - start);
+            if (status >= 400 && status != 409) {
+                errors++;
+                return null;
+            }
+            return retVal;
+        }
+
+        private void record(long latency) {
+            if (requests == latencies.length) {
+                latencies = Arrays.copyOf(latencies, requests * 2);
+            }
+            latencies[requests++] = latency;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        byte[] buffer = new byte[512];
+        StringBuilder retVal = new StringBuilder();
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            retVal.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+        }
+        in.close();
+        return retVal.toString();
+    }
+
+    /*Every client's latencies put together*/
+    public static final class Result {
+        private final long[] latencies;
+        private final int errors;
+        private final long nanos;
+        private final int clients;
+
+        private Result(Client[] all, long nanos) {
+            int total = 0, errors = 0;
+            for (Client c : all) {
+                total += c.requests;
+                errors += c.errors;
+            }
+            latencies = new long[total];
+            int at = 0;
+            for (Client c : all) {
+                System.arraycopy(c.latencies, 0, latencies, at, c.requests);
+                at += c.requests;
+            }
+            Arrays.sort(latencies);
+            this.errors = errors;
+            this.nanos = nanos;
+            this.clients = all.length;
+        }
+
+        public int requests() {
+            return latencies.length;
+        }
+
+        public int errors() {
+            return errors;
+        }
+
+        public double requestsPerSecond() {
+            return latencies.length * 1e9 / nanos;
+        }
+
+        /*Latency in milliseconds that p of the requests beat, e.g. 0.99 for p99*/
+        public double percentileMillis(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.max(0, Math.ceil(p * latencies.length) - 1));
+            return latencies[index] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d clients, %d requests (%d errors) in %.1f s: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    clients, requests(), errors, nanos / 1e9, requestsPerSecond(), percentileMillis(.5), percentileMillis(.99), percentileMillis(1));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String url = "http://localhost:" + BattleServer.DEFAULT_PORT;
+        int clients = 1000, copies = 2;
+        long seconds = 10;
+        BattleServer server = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--server")) {
+                server = new BattleServer(0, 100000, Integer.MAX_VALUE);
+                server.start();
+                url = "http://localhost:" + server.port();
+            } else if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            } else if (args[i].equals("--url")) {
+                url = args[++i];
+            } else if (args[i].equals("--clients")) {
+                clients = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--seconds")) {
+                seconds = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--copies")) {
+                copies = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        //Keep a connection alive for every client (the JDK only keeps 5 per server by default)
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(clients));
+        }
+        System.out.println(new LoadGenerator(url, clients, seconds, copies).run());
+        if (server != null) {
+            //The server is in this JVM, so its totals are ours too
+            System.out.print(HydraMetrics.global().snapshot());
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package test;
+
+import main.engine.AutoPlayer;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutoPlayerTest {
+
+    //Waits for the worker thread, taking snapshots along the way like the UI would
+    private static HydraTree playOut(AutoPlayer player) throws InterruptedException {
+        HydraTree last = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean finished = player.isFinished();
+            HydraTree snapshot = player.takeSnapshot();
+            if (snapshot != null) {
+                last = snapshot;
+            }
+            if (finished) {
+                return last;
+            }
+            Thread.sleep(1);
+        }
+        fail("Auto-play never finished");
+        return null;
+    }
+
+    @Test
+    void givenNoRegrowth_whenAutoPlayed_thenHydraIsDefeatedAndOriginalIsUntouched() throws InterruptedException {
+        HydraTree start = new HydraTree(true);
+        int neck = start.addChild(start.root());
+        start.addChild(start.addChild(neck));
+        start.addChild(neck);
+
+        AutoPlayer player = new AutoPlayer(start, 0, 0, 1);
+        player.start();
+        HydraTree end = playOut(player);
+
+        assertEquals(0, end.childCount(end.root()));
+        assertEquals(4, player.chopsDone());
+        assertEquals(5, start.size());
+        assertNull(player.failure());
+    }
+
+    @Test
+    void givenChopLimit_whenAutoPlayed_thenStopsAfterThatManyChops() throws InterruptedException {
+        //A tall enough Hydra that 50 chops can't possibly beat it
+        HydraTree start = new HydraTree(true);
+        int head = start.root();
+        for (int i = 0; i < 5; i++) {
+            head = start.addChild(head);
+        }
+
+        AutoPlayer player = new AutoPlayer(start, 2, 50, 1);
+        player.start();
+        HydraTree end = playOut(player);
+
+        assertEquals(50, player.chopsDone());
+        assertTrue(end.size() > 1);
+    }
+}
@@ -0,0 +1,96 @@
+package test;
+
+import main.engine.ArrayNodeStore;
+import main.engine.BigHydra;
+import main.engine.HydraDump;
+import main.engine.HydraTree;
+import main.engine.NodeStore;
+import main.engine.OffHeapNodeStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BigHydraTest {
+
+    //Plays the same random game on a HydraTree and a BigHydra, checking they agree on every chop
+    private static void playAlongside(NodeStore store, int chops) {
+        SplittableRandom random = new SplittableRandom(6);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(8, random);
+        //Pre-order ids, the same as BigHydra.from hands out
+        tree.renumber();
+        BigHydra SUT = BigHydra.from(tree, store);
+        try {
+            for (int i = 0; i < chops && tree.choppableCount() > 0; i++) {
+                assertEquals(tree.choppableCount(), SUT.choppableCount());
+                int pick = random.nextInt(tree.choppableCount());
+                int head = tree.choppable(pick);
+                assertEquals(head, SUT.choppable(pick));
+                assertEquals(tree.regrowthSize(head, 2), SUT.regrowthSize(head, 2));
+
+                tree.chop(head, 2);
+                SUT.chop(head, 2);
+                assertEquals(tree.size(), SUT.size());
+            }
+            HydraDump dump = new HydraDump();
+            HydraTree back = SUT.toTree();
+            assertEquals(dump.toString(tree, tree.root()), dump.toString(back, back.root()));
+        } finally {
+            SUT.close();
+        }
+    }
+
+    @Test
+    void givenHeapStore_whenPlayed_thenSameHydraAsHydraTree() {
+        //Tiny chunks, so the game grows across lots of them
+        playAlongside(new ArrayNodeStore(BigHydra.FIELDS, 4), 300);
+    }
+
+    @Test
+    void givenOffHeapStore_whenPlayed_thenSameHydraAsHydraTree() {
+        playAlongside(new OffHeapNodeStore(BigHydra.FIELDS, 4), 300);
+    }
+
+    @Test
+    void givenMappedStore_whenPlayed_thenSameHydraAsHydraTree(@TempDir Path dir) {
+        playAlongside(new OffHeapNodeStore(BigHydra.FIELDS, 4, dir.resolve("heads.bin")), 300);
+    }
+
+    @Test
+    void givenStore_whenGrown_thenOldRecordsKeepTheirValues() {
+        OffHeapNodeStore SUT = new OffHeapNodeStore(3, 2);
+        SUT.ensureCapacity(5);
+        assertEquals(8, SUT.capacity());
+        SUT.set(6, 2, -7);
+        SUT.ensureCapacity(100);
+        assertEquals(-7, SUT.get(6, 2));
+        assertEquals(0, SUT.get(99, 1));
+        assertEquals(100L * 3 * 4, SUT.bytes());
+        SUT.close();
+    }
+
+    @Test
+    void givenHeadLimit_whenChopWouldGrowPastIt_thenRefusedBeforeAnythingChanges() {
+        //Body - neck - {a, b, c}: chopping a grows 2 copies of the neck with its other two heads
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        int a = tree.addChild(neck);
+        tree.addChild(neck);
+        tree.addChild(neck);
+        int lone = tree.addChild(tree.root());
+
+        assertEquals(6, tree.regrowthSize(a, 2));
+        assertEquals(0, tree.regrowthSize(lone, 2));
+        //6 heads counting the body, one chopped off, 6 grown back
+        assertTrue(tree.admits(a, 2, 11));
+        assertFalse(tree.admits(a, 2, 10));
+        assertTrue(tree.admits(lone, 2, 5));
+
+        tree.chop(a, 2);
+        assertEquals(11, tree.size());
+    }
+}
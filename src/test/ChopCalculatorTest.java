@@ -0,0 +1,81 @@
+package test;
+
+import main.engine.ChopCalculator;
+import main.engine.ChopCalculator.Strategy;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChopCalculatorTest {
+
+    //Chop the Hydra to death the slow way. Returns -1 if it takes more than limit chops.
+    private static long simulate(HydraTree tree, Strategy strategy, int copies, long limit) {
+        long chops = 0;
+        while (tree.choppableCount() > 0) {
+            if (++chops > limit) {
+                return -1;
+            }
+            int head = tree.root();
+            if (strategy == Strategy.RIGHTMOST) {
+                while (tree.lastChild(head) != HydraTree.NONE) {
+                    head = tree.lastChild(head);
+                }
+            } else {
+                head = tree.levelFirst(tree.height() - 1);
+            }
+            assertTrue(tree.chop(head, copies));
+        }
+        return chops;
+    }
+
+    private static HydraTree randomHydra(Random r, int heads) {
+        HydraTree retVal = new HydraTree(true);
+        for (int i = 0; i < heads; i++) {
+            int parent;
+            do {
+                parent = r.nextInt(retVal.idBound());
+            } while (retVal.depth(parent) >= 3);
+            retVal.addChild(parent);
+        }
+        return retVal;
+    }
+
+    @Test
+    void givenThreeHeadChain_whenCounted_thenMatchesHandCount() {
+        ChopCalculator SUT = new ChopCalculator(1);
+        //Body -> neck -> neck -> head takes 8 chops with one copy growing back
+        assertEquals(BigInteger.valueOf(8), SUT.chopsToDefeat("1110", Strategy.RIGHTMOST));
+        assertEquals(BigInteger.valueOf(8), SUT.chopsToDefeat("1110", Strategy.DEEPEST));
+    }
+
+    @Test
+    void givenSmallRandomHydras_whenCounted_thenMatchesSimulation() {
+        Random r = new Random(11);
+        int compared = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int copies = 1 + r.nextInt(2);
+            HydraTree tree = randomHydra(r, 1 + r.nextInt(6));
+            for (Strategy strategy : new Strategy[]{Strategy.DEEPEST, Strategy.RIGHTMOST}) {
+                long expected = simulate(tree.copy(), strategy, copies, 200000);
+                if (expected < 0) {
+                    continue;
+                }
+                assertEquals(BigInteger.valueOf(expected), new ChopCalculator(copies).chopsToDefeat(tree, strategy));
+                compared++;
+            }
+        }
+        assertTrue(compared > 100);
+    }
+
+    @Test
+    void givenTallHydra_whenCountedWithFewBits_thenArithmeticException() {
+        ChopCalculator SUT = new ChopCalculator(2, 64);
+        HydraTree tree = HydraTree.fromExportString("111111110");
+        assertThrows(ArithmeticException.class, () -> SUT.chopsToDefeat(tree, Strategy.DEEPEST));
+        assertThrows(ArithmeticException.class, () -> SUT.chopsToDefeat(tree, Strategy.RIGHTMOST));
+    }
+}
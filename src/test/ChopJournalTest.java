@@ -0,0 +1,136 @@
+package test;
+
+import main.engine.AutoPlayer;
+import main.engine.ChopJournal;
+import main.engine.HydraDump;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChopJournalTest {
+
+    //Exact shape, sibling order included
+    private static String shapeOf(HydraTree tree) {
+        return new HydraDump().compressRuns(false).toString(tree, tree.root());
+    }
+
+    private static HydraTree startingHydra(SplittableRandom random) {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(40, random);
+        return tree;
+    }
+
+    @Test
+    void givenJournaledGame_whenReplayed_thenSameHydraAtEveryCut(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("game.journal");
+        SplittableRandom random = new SplittableRandom(17);
+        HydraTree tree = startingHydra(random);
+
+        //Where each chop ended in the file, and what the Hydra looked like then
+        ArrayList<Long> ends = new ArrayList<Long>();
+        ArrayList<String> shapes = new ArrayList<String>();
+        ChopJournal.Writer SUT = ChopJournal.create(file, tree, 25);
+        try {
+            for (int i = 0; i < 120 && tree.choppableCount() > 0 && tree.size() < 20000; i++) {
+                assertTrue(SUT.chop(tree, tree.choppable(random.nextInt(tree.choppableCount())), 1 + random.nextInt(2)));
+                SUT.flush();
+                ends.add(Files.size(file));
+                shapes.add(shapeOf(tree));
+            }
+            assertFalse(SUT.chop(tree, tree.root(), 2));
+        } finally {
+            SUT.close();
+        }
+
+        ChopJournal.Replay whole = ChopJournal.replay(file);
+        assertEquals(ends.size(), whole.chops());
+        assertEquals(shapes.get(shapes.size() - 1), shapeOf(whole.tree()));
+        assertTrue(whole.checkpoints() > 1);
+        assertTrue(whole.replayed() < 25);
+
+        //Cut the file off one byte into the next record, like a crash would
+        for (int i = 0; i + 1 < ends.size(); i += 7) {
+            Path cut = dir.resolve("cut" + i + ".journal");
+            Files.copy(file, cut);
+            RandomAccessFile raf = new RandomAccessFile(cut.toFile(), "rw");
+            try {
+                raf.setLength(ends.get(i) + 1);
+            } finally {
+                raf.close();
+            }
+            ChopJournal.Replay replay = ChopJournal.replay(cut);
+            assertEquals(i + 1, replay.chops());
+            assertEquals(shapes.get(i), shapeOf(replay.tree()));
+        }
+    }
+
+    @Test
+    void givenChopTooBigForTheHydra_whenJournaled_thenItThrowsAndNothingIsWritten(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("big.journal");
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        int head = tree.addChild(neck);
+        tree.addChild(neck);
+        ChopJournal.Writer SUT = ChopJournal.create(file, tree, 0);
+        try {
+            assertTrue(SUT.chop(tree, head, 1));
+            SUT.flush();
+            long before = Files.size(file);
+            String shape = shapeOf(tree);
+
+            int last = tree.lastChild(tree.lastChild(tree.root()));
+            assertThrows(IllegalStateException.class, () -> SUT.chop(tree, last, Integer.MAX_VALUE));
+            SUT.flush();
+            assertEquals(before, Files.size(file));
+            assertEquals(shape, shapeOf(tree));
+        } finally {
+            SUT.close();
+        }
+        assertEquals(1, ChopJournal.replay(file).chops());
+    }
+
+    @Test
+    void givenNotAJournal_whenReplayed_thenIOException(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("nope.journal");
+        Files.write(file, "HYDR nope".getBytes("US-ASCII"));
+        assertThrows(IOException.class, () -> ChopJournal.replay(file));
+    }
+
+    @Test
+    void givenJournaledAutoPlay_whenReplayed_thenSameHydraAsTheAutoPlayerEndedWith(@TempDir Path dir) throws IOException, InterruptedException {
+        Path file = dir.resolve("auto.journal");
+        HydraTree start = startingHydra(new SplittableRandom(5));
+        AutoPlayer player = new AutoPlayer(start, 1, 3000, 9);
+        player.journal(file, 500);
+        player.start();
+
+        HydraTree last = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean finished = player.isFinished();
+            HydraTree snapshot = player.takeSnapshot();
+            if (snapshot != null) {
+                last = snapshot;
+            }
+            if (finished) {
+                break;
+            }
+            Thread.sleep(1);
+        }
+        assertTrue(player.isFinished());
+        assertNull(player.failure());
+
+        ChopJournal.Replay replay = ChopJournal.replay(file);
+        assertEquals(player.chopsDone(), replay.chops());
+        assertEquals(shapeOf(last), shapeOf(replay.tree()));
+    }
+}
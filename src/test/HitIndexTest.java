@@ -0,0 +1,131 @@
+package test;
+
+import main.engine.ChopDelta;
+import main.engine.HitIndex;
+import main.engine.HydraLayout;
+import main.engine.HydraTree;
+import main.engine.LevelLayout;
+import main.engine.TidyLayout;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HitIndexTest {
+    private static final double WIDTH = 1000, HEIGHT = 600;
+
+    //The slow way: try every head
+    private static int scan(HydraTree tree, HydraLayout layout, double x, double y) {
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            double dx = (x - layout.x(n)) / layout.radiusX(tree.depth(n));
+            double dy = (y - layout.y(n)) / layout.radiusY();
+            if (dx * dx + dy * dy <= 1) {
+                return n;
+            }
+        }
+        return HydraTree.NONE;
+    }
+
+    private static void assertSameAsScan(HitIndex SUT, HydraTree tree, HydraLayout layout, SplittableRandom random) {
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            assertEquals(n, SUT.headAt(layout.x(n), layout.y(n)));
+        }
+        for (int i = 0; i < 2000; i++) {
+            double x = random.nextDouble() * WIDTH, y = random.nextDouble() * HEIGHT;
+            assertEquals(scan(tree, layout, x, y), SUT.headAt(x, y));
+        }
+    }
+
+    @Test
+    void givenLevelLayout_whenClicked_thenSameHeadAsCheckingEveryHead() {
+        SplittableRandom random = new SplittableRandom(1);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(200, random);
+        LevelLayout layout = new LevelLayout(WIDTH, HEIGHT);
+        layout.layout(tree, HEIGHT);
+        HitIndex SUT = new HitIndex();
+        SUT.rebuild(tree, layout);
+
+        assertSameAsScan(SUT, tree, layout, random);
+    }
+
+    @Test
+    void givenTidyLayout_whenClicked_thenSameHeadAsCheckingEveryHead() {
+        SplittableRandom random = new SplittableRandom(2);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(200, random);
+        TidyLayout layout = new TidyLayout(WIDTH, HEIGHT);
+        layout.layout(tree, HEIGHT);
+        HitIndex SUT = new HitIndex();
+        SUT.rebuild(tree, layout);
+
+        assertSameAsScan(SUT, tree, layout, random);
+    }
+
+    @Test
+    void givenManyChops_whenUpdatedEachTime_thenStillSameHeadAsCheckingEveryHead() {
+        SplittableRandom random = new SplittableRandom(3);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(60, random);
+        LevelLayout layout = new LevelLayout(WIDTH, HEIGHT);
+        layout.layout(tree, HEIGHT);
+        HitIndex SUT = new HitIndex();
+        SUT.rebuild(tree, layout);
+
+        ChopDelta delta = new ChopDelta();
+        for (int i = 0; i < 40 && tree.choppableCount() > 0; i++) {
+            delta.clear();
+            tree.chop(tree.choppable(random.nextInt(tree.choppableCount())), 1, delta);
+            layout.layout(tree, HEIGHT);
+            SUT.update(tree, layout, delta);
+            assertSameAsScan(SUT, tree, layout, random);
+        }
+    }
+
+    @Test
+    void givenWindowOnARow_whenSearched_thenExactlyTheHeadsInsideIt() {
+        SplittableRandom random = new SplittableRandom(4);
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(500, random);
+        TidyLayout layout = new TidyLayout(WIDTH, HEIGHT);
+        layout.layout(tree, HEIGHT);
+        HitIndex SUT = new HitIndex();
+        SUT.rebuild(tree, layout);
+
+        for (int i = 0; i < 200; i++) {
+            int d = random.nextInt(SUT.rowCount());
+            double left = random.nextDouble() * WIDTH, right = left + random.nextDouble() * WIDTH / 4;
+            int inside = 0;
+            for (int n = tree.levelFirst(d); n != HydraTree.NONE; n = tree.levelNext(n)) {
+                if (layout.x(n) >= left && layout.x(n) < right) {
+                    inside++;
+                }
+            }
+            int from = SUT.firstFrom(d, left), to = SUT.firstFrom(d, right);
+            assertEquals(inside, to - from);
+            for (int j = from; j < to; j++) {
+                assertEquals(d, tree.depth(SUT.rowHead(d, j)));
+                assertEquals(layout.x(SUT.rowHead(d, j)), SUT.rowX(d, j));
+            }
+        }
+        assertEquals(0, SUT.firstFrom(0, -1));
+        assertEquals(1, SUT.firstFrom(0, WIDTH + 1));
+    }
+
+    @Test
+    void givenPointBetweenRows_whenClicked_thenNoHead() {
+        HydraTree tree = new HydraTree(true);
+        tree.addChild(tree.addChild(tree.root()));
+        LevelLayout layout = new LevelLayout(WIDTH, HEIGHT);
+        layout.layout(tree, HEIGHT);
+        HitIndex SUT = new HitIndex();
+        SUT.rebuild(tree, layout);
+
+        int head = tree.firstChild(tree.root());
+        double between = (layout.y(head) + layout.y(tree.root())) / 2;
+        assertEquals(-1, SUT.rowAt(between));
+        assertEquals(HydraTree.NONE, SUT.headAt(layout.x(head), between));
+        assertEquals(1, SUT.rowAt(layout.y(head)));
+    }
+}
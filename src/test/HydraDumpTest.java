@@ -0,0 +1,111 @@
+package test;
+
+import main.engine.HydraDump;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraDumpTest {
+
+    private HydraTree tree;
+    private HydraDump SUT;
+
+    @BeforeEach
+    public void setup() {
+        //Reset system under test each time
+        tree = new HydraTree(true);
+        SUT = new HydraDump();
+    }
+
+    @Test
+    void givenSmallHydra_whenDumped_thenOneIndentedLinePerHead() {
+        int a = tree.addChild(tree.root());
+        tree.addChild(a);
+        tree.addChild(a);
+        tree.addChild(tree.addChild(tree.root()));
+
+        assertEquals("Body [2]\n  Head [2]\n    Head \u00d72 identical subtrees\n  Head [1]\n    Head\n", SUT.toString(tree, tree.root()));
+        assertEquals("Body [2]\n  Head [2]\n    Head\n    Head\n  Head [1]\n    Head\n", SUT.compressRuns(false).toString(tree, tree.root()));
+    }
+
+    @Test
+    void givenManyIdenticalNecks_whenDumped_thenTheyAreWrittenOnce() {
+        for (int i = 0; i < 37; i++) {
+            tree.addChild(tree.addChild(tree.root()));
+        }
+        int odd = tree.addChild(tree.root());
+
+        String dump = SUT.toString(tree, tree.root());
+        assertEquals("Body [38]\n  Head [1] \u00d737 identical subtrees\n    Head\n  Head\n", dump);
+        assertEquals("Head\n", SUT.toString(tree, odd));
+    }
+
+    @Test
+    void givenLimits_whenDumped_thenHiddenHeadsAreCountedAndOutputStops() {
+        int p = tree.root();
+        for (int i = 0; i < 5; i++) {
+            p = tree.addChild(p);
+        }
+
+        assertEquals("Body [1]\n  Head [1] \u2026 4 heads below\n", SUT.maxDepth(1).toString(tree, tree.root()));
+        assertEquals("Body [1]\n  Head [1]\n    \u2026 stopped after 2 heads\n", new HydraDump().maxNodes(2).toString(tree, tree.root()));
+    }
+
+    @Test
+    void givenHugeHydra_whenAFewHeadsAreDumped_thenOnlyTheLookAheadIsLookedAt() {
+        //A million heads in a row under one neck: counting or comparing them all would blow the look-ahead
+        int neck = tree.addChild(tree.root());
+        for (int i = 0; i < 1000000; i++) {
+            tree.addChild(neck);
+        }
+        int other = tree.addChild(tree.root());
+        tree.addChild(other);
+
+        //Out of look-ahead, a head still hides at least its children
+        assertEquals("Body [2]\n  Head [1000000] \u2026 1000000+ heads below\n  Head [1] \u2026 1+ heads below\n",
+                SUT.lookAhead(1000).maxDepth(1).toString(tree, tree.root()));
+        //One look to tell the necks apart, then 999 to find the run
+        assertEquals("Body [2]\n  Head [1000000]\n    Head \u00d71000 identical subtrees\n    \u2026 stopped after 3 heads\n",
+                new HydraDump().lookAhead(1000).maxNodes(3).toString(tree, tree.root()));
+    }
+
+    @Test
+    void givenVeryTallHydra_whenDumpedAsJson_thenNoStackOverflowAndBracketsBalance() throws IOException {
+        int p = tree.root();
+        for (int i = 0; i < 200000; i++) {
+            p = tree.addChild(p);
+        }
+        tree.addChild(tree.parent(p));
+
+        StringBuilder out = new StringBuilder();
+        SUT.format(HydraDump.Format.JSON).dump(tree, tree.root(), out);
+        int depth = 0;
+        for (int i = 0; i < out.length(); i++) {
+            char ch = out.charAt(i);
+            depth += ch == '{' || ch == '[' ? 1 : ch == '}' || ch == ']' ? -1 : 0;
+            assertTrue(depth >= 0);
+        }
+        assertEquals(0, depth);
+        assertTrue(out.toString().startsWith("{\"id\":" + tree.root() + ",\"body\":true,\"children\":[{"));
+
+        //Cut short, the open objects still get closed
+        String cut = new HydraDump().format(HydraDump.Format.JSON).maxNodes(3).toString(tree, tree.root());
+        assertTrue(cut.endsWith("{\"truncated\":true}]}]}]}\n"));
+    }
+
+    @Test
+    void givenSmallHydra_whenDumpedAsDot_thenEveryHeadHasAnEdgeFromItsParent() {
+        int a = tree.addChild(tree.root());
+        int b = tree.addChild(a);
+
+        String dot = SUT.format(HydraDump.Format.DOT).toString(tree, tree.root());
+        assertTrue(dot.startsWith("digraph hydra {\n"));
+        assertTrue(dot.contains("  n" + tree.root() + " -> n" + a + ";\n"));
+        assertTrue(dot.contains("  n" + a + " -> n" + b + ";\n"));
+        assertTrue(dot.endsWith("}\n"));
+    }
+}
@@ -0,0 +1,195 @@
+package test;
+
+import main.engine.HydraFormat;
+import main.engine.HydraImporter;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraFormatTest {
+
+    private static byte[] write(HydraTree tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HydraFormat.write(tree, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static HydraTree read(byte[] data) throws IOException {
+        return HydraFormat.read(Channels.newChannel(new ByteArrayInputStream(data)));
+    }
+
+    //Child counts in pre-order, which pins down the whole shape
+    private static int[] shape(HydraTree tree) {
+        int[] retVal = new int[tree.size()];
+        int i = 0;
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            retVal[i++] = tree.childCount(n);
+        }
+        return retVal;
+    }
+
+    @Test
+    void givenHeadWithHundredsOfChildren_whenWrittenAndRead_thenShapeSurvives() throws IOException {
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        for (int i = 0; i < 300; i++) {
+            tree.addChild(neck);
+        }
+        Random r = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            tree.addChild(r.nextInt(tree.idBound()));
+        }
+
+        byte[] data = write(tree);
+        assertArrayEquals(shape(tree), shape(read(data)));
+        //Header plus about a byte a head
+        assertTrue(data.length < 5 + 3 + tree.size() + 10);
+    }
+
+    private static byte[] writeCompact(HydraTree tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HydraFormat.writeCompact(tree, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    void givenLateGameHydra_whenWrittenCompact_thenShapeSurvivesInAFractionOfTheBytes() throws IOException {
+        //A tall neck, then keep chopping the deepest head with lots of copies
+        HydraTree tree = new HydraTree(true);
+        int p = tree.root();
+        for (int i = 0; i < 6; i++) {
+            p = tree.addChild(p);
+        }
+        tree.addChild(tree.root());
+        while (tree.size() < 200000) {
+            int deepest = tree.choppable(0);
+            for (int i = 1; i < tree.choppableCount(); i++) {
+                if (tree.depth(tree.choppable(i)) > tree.depth(deepest)) {
+                    deepest = tree.choppable(i);
+                }
+            }
+            tree.chop(deepest, 5);
+        }
+
+        byte[] compact = writeCompact(tree);
+        HydraTree back = read(compact);
+        assertArrayEquals(shape(tree), shape(back));
+        assertTrue(compact.length * 100 < write(tree).length);
+
+        //Built in the same order as version 1, so the same ids can be chopped in both
+        HydraTree plain = read(write(tree));
+        assertEquals(plain.choppableCount(), back.choppableCount());
+        for (int i = 0; i < plain.choppableCount(); i++) {
+            assertEquals(plain.choppable(i), back.choppable(i));
+        }
+    }
+
+    @Test
+    void givenHydraWithoutCopies_whenWrittenCompact_thenShapeSurvives() throws IOException {
+        HydraTree tree = new HydraTree(true);
+        Random r = new Random(8);
+        for (int i = 0; i < 3000; i++) {
+            tree.addChild(r.nextInt(tree.idBound()));
+        }
+        assertArrayEquals(shape(tree), shape(read(writeCompact(tree))));
+        assertArrayEquals(shape(new HydraTree(true)), shape(read(writeCompact(new HydraTree(true)))));
+    }
+
+    @Test
+    void givenCompactFileThatDoesNotAddUp_whenRead_thenIOException() {
+        //Header, then: 3 heads, 2 shapes (the leaf, and a body with 3 leaves)
+        byte[] tooMany = {'H', 'Y', 'D', 'R', 2, 3, 2, 0, 1, 0, 3};
+        //The body uses itself
+        byte[] loop = {'H', 'Y', 'D', 'R', 2, 3, 2, 0, 1, 1, 2};
+        byte[] good = {'H', 'Y', 'D', 'R', 2, 4, 2, 0, 1, 0, 3};
+        assertThrows(IOException.class, () -> read(tooMany));
+        assertThrows(IOException.class, () -> read(loop));
+        assertEquals(4, assertDoesNotThrow(() -> read(good)).size());
+    }
+
+    @Test
+    void givenTruncatedFile_whenRead_thenIOException() throws IOException {
+        HydraTree tree = new HydraTree(true);
+        tree.addChild(tree.addChild(tree.root()));
+        byte[] data = write(tree);
+        assertThrows(IOException.class, () -> read(Arrays.copyOf(data, data.length - 1)));
+    }
+
+    @Test
+    void givenHeaderClaimingBillionsOfHeads_whenRead_thenIOExceptionBeforeAllocating(@TempDir Path dir) throws IOException {
+        //Version 1 with Integer.MAX_VALUE - 10 heads, then one child count
+        byte[] huge = {'H', 'Y', 'D', 'R', 1, (byte) 0xF5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0};
+        //Integer.MAX_VALUE heads, more than any HydraTree can hold
+        byte[] tooBig = {'H', 'Y', 'D', 'R', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0};
+        Path file = dir.resolve("huge.bin");
+        Files.write(file, huge);
+        assertThrows(IOException.class, () -> HydraFormat.read(file));
+        assertThrows(IOException.class, () -> HydraImporter.importFile(file));
+        assertThrows(IOException.class, () -> read(tooBig));
+    }
+
+    @Test
+    void givenCompactHeaderClaimingMoreShapesThanItHas_whenRead_thenIOExceptionBeforeAllocating(@TempDir Path dir) throws IOException {
+        //Version 2 with Integer.MAX_VALUE - 10 heads and as many shapes, then one run count
+        byte[] huge = {'H', 'Y', 'D', 'R', 2, (byte) 0xF5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07,
+                (byte) 0xF5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0};
+        //3 heads but 4 shapes
+        byte[] moreShapesThanHeads = {'H', 'Y', 'D', 'R', 2, 3, 4, 0, 0, 0, 0};
+        Path file = dir.resolve("huge.bin");
+        Files.write(file, huge);
+        assertThrows(IOException.class, () -> HydraFormat.read(file));
+        assertThrows(IOException.class, () -> read(huge));
+        assertThrows(IOException.class, () -> read(moreShapesThanHeads));
+    }
+
+    @Test
+    void givenLegacyDigits_whenRead_thenNotAHydraFile() {
+        assertThrows(IOException.class, () -> read("3000".getBytes("US-ASCII")));
+    }
+
+    @Test
+    void givenBothFormats_whenImported_thenSameHydra(@TempDir Path dir) throws IOException {
+        //Body with 2 heads, the first has 3 heads of its own and the second of those has 1
+        HydraTree tree = HydraTree.fromExportString("2300100");
+        assertArrayEquals(new int[]{2, 3, 0, 1, 0, 0, 0}, shape(tree));
+
+        Path binary = dir.resolve("hydra.bin");
+        HydraFormat.write(tree, binary);
+        Path legacy = dir.resolve("hydra.txt");
+        Files.write(legacy, "2300100\n".getBytes("US-ASCII"));
+
+        HydraImporter.Result fromBinary = HydraImporter.importFile(binary);
+        HydraImporter.Result fromLegacy = HydraImporter.importFile(legacy);
+        assertTrue(fromBinary.isBinary());
+        assertFalse(fromLegacy.isBinary());
+        assertArrayEquals(shape(tree), shape(fromBinary.tree()));
+        assertArrayEquals(shape(tree), shape(fromLegacy.tree()));
+    }
+
+    @Test
+    void givenBigFileThatIsNotAHydra_whenImported_thenIOException(@TempDir Path dir) throws IOException {
+        //No digit up front, so it's turned down before room is made for 64M heads
+        byte[] junk = new byte[1 << 26];
+        Path file = dir.resolve("junk.bin");
+        Files.write(file, junk);
+        assertThrows(IOException.class, () -> HydraImporter.importFile(file));
+    }
+
+    @Test
+    void givenLegacyFileWithBadDigit_whenImported_thenIOException(@TempDir Path dir) throws IOException {
+        Path legacy = dir.resolve("hydra.txt");
+        Files.write(legacy, "2x0".getBytes("US-ASCII"));
+        assertThrows(IOException.class, () -> HydraImporter.importFile(legacy));
+    }
+}
@@ -0,0 +1,157 @@
+package test;
+
+import main.engine.HydraDump;
+import main.engine.HydraHistory;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraHistoryTest {
+
+    //Exact shape, sibling order included
+    private static String shapeOf(HydraTree tree) {
+        return new HydraDump().compressRuns(false).toString(tree, tree.root());
+    }
+
+    @Test
+    void givenRandomChops_whenUndoneAndRedone_thenEveryVersionComesBackExactly() {
+        HydraTree tree = new HydraTree(true);
+        int a = tree.addChild(tree.root());
+        int b = tree.addChild(a);
+        tree.addChild(tree.addChild(b));
+        tree.addChild(b);
+        tree.addChild(a);
+        tree.addChild(tree.root());
+
+        HydraHistory SUT = new HydraHistory(tree);
+        ArrayList<String> seen = new ArrayList<String>();
+        seen.add(shapeOf(tree));
+        Random r = new Random(11);
+        for (int i = 0; i < 60 && tree.choppableCount() > 0 && tree.size() < 3000; i++) {
+            int head = tree.choppable(r.nextInt(tree.choppableCount()));
+            int copies = r.nextInt(3);
+            SUT.record(tree, head, copies);
+            tree.chop(head, copies);
+            seen.add(shapeOf(tree));
+            assertEquals(tree.size(), SUT.size());
+        }
+
+        for (int v = seen.size() - 2; v >= 0; v--) {
+            assertTrue(SUT.undo(tree));
+            assertEquals(seen.get(v), shapeOf(tree));
+        }
+        assertFalse(SUT.undo(tree));
+        for (int v = 1; v < seen.size(); v++) {
+            assertTrue(SUT.redo(tree));
+            assertEquals(seen.get(v), shapeOf(tree));
+        }
+        assertFalse(SUT.redo(tree));
+    }
+
+    @Test
+    void givenUndo_whenANewChopIsRecorded_thenRedoListIsDropped() {
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        tree.addChild(neck);
+        tree.addChild(neck);
+        HydraHistory SUT = new HydraHistory(tree);
+
+        SUT.record(tree, tree.firstChild(neck), 2);
+        tree.chop(tree.firstChild(neck), 2);
+        assertTrue(SUT.undo(tree));
+        assertTrue(SUT.canRedo());
+
+        neck = tree.firstChild(tree.root());
+        SUT.record(tree, tree.lastChild(neck), 0);
+        tree.chop(tree.lastChild(neck), 0);
+        assertFalse(SUT.canRedo());
+        assertEquals(2, SUT.versionCount());
+        assertEquals(3, SUT.size());
+    }
+
+    @Test
+    void givenHugeRegrowth_whenChoppedAndUndone_thenCopiesComeOffAgain() {
+        //A neck with 1000 heads, one chopped with 1000 copies: about a million heads grow back
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.addChild(tree.root()));
+        for (int i = 0; i < 1000; i++) {
+            tree.addChild(neck);
+        }
+        String before = shapeOf(tree);
+        HydraHistory SUT = new HydraHistory(tree);
+
+        int head = tree.firstChild(neck);
+        SUT.record(tree, head, 1000);
+        tree.chop(head, 1000);
+
+        assertEquals(2 + 1001L * 1000, tree.size());
+        assertEquals(tree.size(), SUT.size());
+        assertTrue(SUT.undo(tree));
+        assertEquals(1003, tree.size());
+        assertEquals(before, shapeOf(tree));
+        assertTrue(SUT.redo(tree));
+        assertEquals(2 + 1001L * 1000, tree.size());
+    }
+
+    @Test
+    void givenUndoRedoAndNewChopsMixed_whenPlayed_thenTreeAlwaysMatchesItsVersion() {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(12, new SplittableRandom(3));
+        HydraHistory SUT = new HydraHistory(tree);
+        //Every version, and how many of them are on the undo side
+        ArrayList<String> versions = new ArrayList<String>();
+        versions.add(shapeOf(tree));
+        int current = 0;
+        Random r = new Random(5);
+        for (int i = 0; i < 400; i++) {
+            int move = r.nextInt(3);
+            if (move == 0 && tree.choppableCount() > 0 && tree.size() < 2000) {
+                int head = tree.choppable(r.nextInt(tree.choppableCount()));
+                int copies = r.nextInt(3);
+                SUT.record(tree, head, copies);
+                tree.chop(head, copies);
+                while (versions.size() > current + 1) {
+                    versions.remove(versions.size() - 1);
+                }
+                versions.add(shapeOf(tree));
+                current++;
+            } else if (move == 1) {
+                assertEquals(current > 0, SUT.undo(tree));
+                current = Math.max(0, current - 1);
+            } else {
+                assertEquals(current + 1 < versions.size(), SUT.redo(tree));
+                current = Math.min(versions.size() - 1, current + 1);
+            }
+            assertEquals(versions.get(current), shapeOf(tree));
+            assertEquals(tree.size(), SUT.size());
+            assertEquals(versions.size(), SUT.versionCount());
+        }
+    }
+
+    @Test
+    void givenMoreChopsThanKept_whenUndoneAll_thenOnlyTheLastOnesComeBack() {
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        for (int i = 0; i < 10; i++) {
+            tree.addChild(neck);
+        }
+        HydraHistory SUT = new HydraHistory(tree, 3);
+        for (int i = 0; i < 5; i++) {
+            SUT.record(tree, tree.firstChild(neck), 0);
+            tree.chop(tree.firstChild(neck), 0);
+        }
+
+        assertEquals(4, SUT.versionCount());
+        int undone = 0;
+        while (SUT.undo(tree)) {
+            undone++;
+        }
+        assertEquals(3, undone);
+        assertEquals(10, tree.size());
+    }
+}
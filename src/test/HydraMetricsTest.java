@@ -0,0 +1,93 @@
+package test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import main.engine.HydraMetrics;
+import main.engine.HydraSession;
+import main.engine.HydraTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraMetricsTest {
+
+    //Body - head - head, so chopping the top head with 3 copies grows 3 heads back
+    private static HydraSession chain(HydraMetrics metrics) {
+        HydraTree tree = new HydraTree(true);
+        tree.addChild(tree.addChild(tree.root()));
+        HydraSession retVal = new HydraSession(tree, 1);
+        retVal.setMetrics(metrics);
+        retVal.setCopies(3);
+        return retVal;
+    }
+
+    @Test
+    void givenSessionWithItsOwnMetrics_whenChopped_thenChopsGrowthAndPeakAreCounted() {
+        HydraMetrics SUT = new HydraMetrics();
+        HydraSession session = chain(SUT);
+        int top = session.tree().levelFirst(2);
+
+        assertEquals(HydraSession.ChopResult.CHOPPED, session.chop(top));
+        HydraMetrics.Snapshot snapshot = SUT.snapshot();
+        assertEquals(1, snapshot.chops());
+        //The top head comes off and three copies of the (now bare) middle head grow on the body
+        assertEquals(3, snapshot.lastGrown());
+        assertEquals(5, snapshot.liveHeads());
+        assertEquals(5, snapshot.peakHeads());
+
+        while (!session.isDefeated()) {
+            session.randomChop(null);
+        }
+        snapshot = SUT.snapshot();
+        assertEquals(session.chops(), snapshot.chops());
+        assertEquals(1, snapshot.liveHeads());
+        assertEquals(5, snapshot.peakHeads());
+        //Every chop takes one head off, so what grew is the change in size plus a head a chop
+        assertEquals(session.chops() + 1 - 3, snapshot.headsGrown());
+    }
+
+    @Test
+    void givenFrames_whenSnapshotted_thenAverageAndMaxFrameTime() {
+        HydraMetrics SUT = new HydraMetrics();
+        SUT.frame(1000000);
+        SUT.frame(3000000);
+
+        HydraMetrics.Snapshot snapshot = SUT.snapshot();
+        assertEquals(2, snapshot.frames());
+        assertEquals(3, snapshot.lastFrameMillis(), 1e-9);
+        assertEquals(2, snapshot.averageFrameMillis(), 1e-9);
+        assertEquals(3, snapshot.maxFrameMillis(), 1e-9);
+
+        SUT.reset();
+        assertEquals(0, SUT.snapshot().frames());
+    }
+
+    @Test
+    void givenFlightRecording_whenChopped_thenChopEventsAreRecorded(@TempDir Path dir) throws IOException {
+        HydraSession session = chain(new HydraMetrics());
+        Path file = dir.resolve("chops.jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable("hydra.Chop").withThreshold(Duration.ZERO);
+            recording.start();
+            session.chop(session.tree().levelFirst(2));
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(1, events.size());
+        assertEquals(3, events.get(0).getInt("copies"));
+        assertEquals(3, events.get(0).getInt("grown"));
+        assertEquals(5, events.get(0).getInt("heads"));
+    }
+}
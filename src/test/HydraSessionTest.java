@@ -0,0 +1,113 @@
+package test;
+
+import main.engine.HydraFormat;
+import main.engine.HydraSession;
+import main.engine.HydraTree;
+import main.server.BattleServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraSessionTest {
+
+    //Body -> neck -> two heads
+    private static HydraTree neckWithTwoHeads() {
+        HydraTree tree = new HydraTree(true);
+        int neck = tree.addChild(tree.root());
+        tree.addChild(neck);
+        tree.addChild(neck);
+        return tree;
+    }
+
+    @Test
+    void givenSession_whenChoppingBadHeads_thenRefusedAndNothingChanges() {
+        HydraSession SUT = new HydraSession(neckWithTwoHeads(), 1);
+        HydraTree tree = SUT.tree();
+        int neck = tree.firstChild(tree.root());
+
+        assertEquals(HydraSession.ChopResult.NOT_CHOPPABLE, SUT.chop(tree.root()));
+        assertEquals(HydraSession.ChopResult.NOT_CHOPPABLE, SUT.chop(neck));
+        assertEquals(HydraSession.ChopResult.NO_SUCH_HEAD, SUT.chop(-1));
+        assertEquals(HydraSession.ChopResult.NO_SUCH_HEAD, SUT.chop(1000));
+        assertEquals(4, SUT.size());
+        assertEquals(0, SUT.chops());
+    }
+
+    @Test
+    void givenCopyCount_whenChopped_thenSessionsCopyCountIsUsedUntilDefeated() {
+        HydraSession SUT = new HydraSession(neckWithTwoHeads(), 1);
+        SUT.setCopies(3);
+        HydraTree tree = SUT.tree();
+
+        assertEquals(HydraSession.ChopResult.CHOPPED, SUT.chop(tree.firstChild(tree.firstChild(tree.root()))));
+        //The neck (one head left) plus three copies of it
+        assertEquals(9, SUT.size());
+
+        SUT.setMaxHeads(8);
+        assertEquals(HydraSession.ChopResult.TOO_BIG, SUT.randomChop(null));
+        SUT.setMaxHeads(Integer.MAX_VALUE);
+
+        SUT.setCopies(0);
+        HydraSession.ChopResult last = null;
+        while (SUT.choppableCount() > 0) {
+            last = SUT.randomChop(null);
+        }
+        assertEquals(HydraSession.ChopResult.DEFEATED, last);
+        assertTrue(SUT.isDefeated());
+        assertEquals(HydraSession.ChopResult.NO_SUCH_HEAD, SUT.randomChop(null));
+    }
+
+    private static String request(int port, String method, String path, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        assertEquals(expectedStatus, connection.getResponseCode());
+        InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            body.write(buffer, 0, n);
+        }
+        in.close();
+        return new String(body.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void givenServer_whenTwoClientsPlay_thenTheirGamesAreSeparate() throws IOException {
+        BattleServer server = new BattleServer(0, 100000, 10);
+        server.start();
+        try {
+            int port = server.port();
+            String a = request(port, "POST", "/sessions", 201);
+            String b = request(port, "POST", "/sessions", 201);
+            assertNotEquals(a, b);
+            assertEquals(2, server.sessionCount());
+
+            assertTrue(request(port, "POST", "/sessions/" + a + "/copies?n=0", 200).contains("copies=0"));
+            assertTrue(request(port, "POST", "/sessions/" + a + "/random", 200).contains("chops=1"));
+            assertTrue(request(port, "GET", "/sessions/" + b, 200).contains("chops=0\ncopies=2"));
+            request(port, "POST", "/sessions/" + a + "/chop?head=0", 409);
+            request(port, "POST", "/sessions/" + a + "/copies?n=x", 400);
+
+            //Export comes back as a HydraFormat file of the right size
+            String heads = request(port, "GET", "/sessions/" + b, 200).split("\n")[0];
+            byte[] exported = request(port, "GET", "/sessions/" + b + "/export", 200).getBytes(StandardCharsets.ISO_8859_1);
+            HydraTree tree = HydraFormat.read(Channels.newChannel(new ByteArrayInputStream(exported)));
+            assertEquals("heads=" + (tree.size() - 1), heads);
+
+            request(port, "DELETE", "/sessions/" + a, 200);
+            request(port, "GET", "/sessions/" + a, 404);
+            assertEquals(1, server.sessionCount());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package test;
+
+import main.engine.ChopCalculator;
+import main.engine.HydraShape;
+import main.engine.HydraSolver;
+import main.engine.HydraTree;
+import main.engine.ShapeTable;
+import main.engine.SharedHydra;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraSolverTest {
+
+    //Body - a - {b, c - d}, plus a lone head on the body
+    private static HydraTree smallHydra() {
+        HydraTree tree = new HydraTree(true);
+        int a = tree.addChild(tree.root());
+        tree.addChild(a);
+        tree.addChild(tree.addChild(a));
+        tree.addChild(tree.root());
+        return tree;
+    }
+
+    //The slow way: try every chop, every time (only for tiny Hydras)
+    private static int fewestChops(HydraTree tree, int copies, HashMap<Long, Integer> memo) {
+        if (tree.childCount(tree.root()) == 0) {
+            return 0;
+        }
+        long key = SharedHydra.of(tree).body().canonicalHash();
+        Integer known = memo.get(key);
+        if (known != null) {
+            return known;
+        }
+        int retVal = Integer.MAX_VALUE;
+        for (int i = 0; i < tree.choppableCount(); i++) {
+            HydraTree after = tree.copy();
+            after.chop(after.choppable(i), copies);
+            retVal = Math.min(retVal, 1 + fewestChops(after, copies, memo));
+        }
+        memo.put(key, retVal);
+        return retVal;
+    }
+
+    @Test
+    void givenSmallHydra_whenSearchedAllTheWay_thenFewestChopsPossible() {
+        HydraTree tree = smallHydra();
+        int best = fewestChops(tree, 1, new HashMap<Long, Integer>());
+
+        HydraSolver.Result SUT = new HydraSolver(1, HydraSolver.Goal.FASTEST).depth(best).solve(tree);
+        assertEquals(BigInteger.valueOf(best), SUT.chops());
+        assertTrue(tree.canBeChopped(SUT.head()));
+
+        //Chopping the hint really does leave a Hydra that can be finished in one chop less
+        HydraTree after = tree.copy();
+        after.chop(SUT.head(), 1);
+        assertEquals(best - 1, fewestChops(after, 1, new HashMap<Long, Integer>()));
+    }
+
+    @Test
+    void givenRandomHydra_whenSolved_thenBoundsAreOnTheRightSideOfDeepest() {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(12, new SplittableRandom(4));
+        BigInteger deepest = new ChopCalculator(2).chopsToDefeat(tree, ChopCalculator.Strategy.DEEPEST);
+
+        HydraSolver.Result fastest = new HydraSolver(2, HydraSolver.Goal.FASTEST).solve(tree);
+        HydraSolver.Result slowest = new HydraSolver(2, HydraSolver.Goal.SLOWEST).solve(tree);
+        assertTrue(fastest.chops().compareTo(deepest) <= 0);
+        assertTrue(slowest.chops().compareTo(deepest) >= 0);
+    }
+
+    @Test
+    void givenOneThreadOrMany_whenSolved_thenSameAnswer() {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(20, new SplittableRandom(9));
+        ForkJoinPool one = new ForkJoinPool(1), many = new ForkJoinPool(4);
+        try {
+            HydraSolver.Result alone = new HydraSolver(2, HydraSolver.Goal.FASTEST).depth(3).solve(tree, one);
+            HydraSolver.Result together = new HydraSolver(2, HydraSolver.Goal.FASTEST).depth(3).solve(tree, many);
+            assertEquals(alone.head(), together.head());
+            assertEquals(alone.chops(), together.chops());
+        } finally {
+            one.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void givenSolvedOnce_whenSolvedAgain_thenAnswersComeFromTheTable() {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(15, new SplittableRandom(2));
+        HydraSolver SUT = new HydraSolver(1, HydraSolver.Goal.FASTEST).depth(3);
+
+        HydraSolver.Result first = SUT.solve(tree);
+        HydraSolver.Result second = SUT.solve(tree);
+        assertEquals(first.chops(), second.chops());
+        assertTrue(second.tableHits() > 0);
+        assertTrue(second.positions() < first.positions());
+    }
+
+    @Test
+    void givenSameShapeInAnyOrderFromAnyTable_whenHashed_thenSameCanonicalHash() {
+        ShapeTable one = new ShapeTable(), two = new ShapeTable();
+        HydraShape leaf = one.leaf();
+        HydraShape pair = one.of(new HydraShape[]{leaf}, new long[]{2});
+        HydraShape a = one.of(new HydraShape[]{leaf, pair}, new long[]{1, 1});
+
+        //Made the other way round, in a table that has seen other shapes first
+        two.of(new HydraShape[]{two.leaf()}, new long[]{7});
+        HydraShape pair2 = two.of(new HydraShape[]{two.leaf(), two.leaf()}, new long[]{1, 1});
+        HydraShape b = two.of(new HydraShape[]{pair2, two.leaf()}, new long[]{1, 1});
+
+        assertEquals(a.canonicalHash(), b.canonicalHash());
+        assertNotEquals(a.canonicalHash(), pair.canonicalHash());
+        assertNotEquals(pair.canonicalHash(), one.of(new HydraShape[]{leaf}, new long[]{3}).canonicalHash());
+    }
+
+    @Test
+    void givenDefeatedHydra_whenSolved_thenNoHead() {
+        HydraSolver.Result SUT = new HydraSolver(2, HydraSolver.Goal.FASTEST).solve(new HydraTree(true));
+        assertEquals(HydraTree.NONE, SUT.head());
+        assertEquals(BigInteger.ZERO, SUT.chops());
+    }
+}
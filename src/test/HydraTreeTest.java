@@ -0,0 +1,354 @@
+package test;
+
+import main.engine.HydraTree;
+import main.engine.HydraVisitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HydraTreeTest {
+
+    private HydraTree SUT;
+
+    @BeforeEach
+    public void setup() {
+        //Reset system under test each time
+        SUT = new HydraTree(true);
+    }
+
+    @Test
+    void givenBodyOnly_whenCanBeChoppedCalledOnBody_thenFalse() {
+        assertFalse(SUT.canBeChopped(SUT.root()));
+    }
+
+    @Test
+    void givenHeadOnBody_whenChopped_thenNothingGrowsBack() {
+        int head = SUT.addChild(SUT.root());
+        assertTrue(SUT.chop(head, 2));
+        assertEquals(1, SUT.size());
+        assertEquals(0, SUT.childCount(SUT.root()));
+    }
+
+    @Test
+    void givenHeadWithGrandparent_whenChopped_thenParentRegrowsOnGrandparent() {
+        int neck = SUT.addChild(SUT.root());
+        int head = SUT.addChild(neck);
+        SUT.addChild(neck);
+
+        assertTrue(SUT.chop(head, 2));
+
+        //The neck (minus the chopped head) plus two copies of it
+        assertEquals(3, SUT.childCount(SUT.root()));
+        assertEquals(7, SUT.size());
+        for (int c = SUT.firstChild(SUT.root()); c != HydraTree.NONE; c = SUT.nextSibling(c)) {
+            assertEquals(1, SUT.depth(c));
+            assertEquals(1, SUT.childCount(c));
+            assertEquals(2, SUT.depth(SUT.firstChild(c)));
+        }
+    }
+
+    @Test
+    void givenHeadWithChildren_whenChopped_thenFalseAndNothingChanges() {
+        int neck = SUT.addChild(SUT.root());
+        SUT.addChild(neck);
+        assertFalse(SUT.chop(neck, 2));
+        assertEquals(3, SUT.size());
+    }
+
+    @Test
+    void givenDeepSubtree_whenCopied_thenCopyMatchesShapeAndDepth() {
+        int a = SUT.addChild(SUT.root());
+        int b = SUT.addChild(a);
+        SUT.addChild(b);
+        SUT.addChild(a);
+
+        int copy = SUT.copySubtree(a, SUT.root());
+
+        assertEquals(2, SUT.childCount(copy));
+        assertEquals(1, SUT.childCount(SUT.firstChild(copy)));
+        assertEquals(3, SUT.depth(SUT.firstChild(SUT.firstChild(copy))));
+        assertEquals(9, SUT.size());
+    }
+
+    @Test
+    void givenManyChops_whenChoppableHeadsListed_thenExactlyTheLeavesAreListed() {
+        int a = SUT.addChild(SUT.root());
+        int b = SUT.addChild(a);
+        SUT.addChild(b);
+        SUT.addChild(a);
+        SUT.addChild(SUT.root());
+
+        Random r = new Random(42);
+        for (int i = 0; i < 50 && SUT.choppableCount() > 0; i++) {
+            SUT.chop(SUT.choppable(r.nextInt(SUT.choppableCount())), 2);
+
+            int leaves = 0;
+            for (int n = SUT.root(); n != HydraTree.NONE; n = SUT.preOrderNext(n, SUT.root())) {
+                if (SUT.canBeChopped(n)) {
+                    leaves++;
+                }
+            }
+            assertEquals(leaves, SUT.choppableCount());
+            for (int j = 0; j < SUT.choppableCount(); j++) {
+                assertTrue(SUT.canBeChopped(SUT.choppable(j)));
+            }
+        }
+    }
+
+    //Body -> a, c; a -> b, d; b -> e
+    private int[] buildSmallHydra() {
+        int a = SUT.addChild(SUT.root());
+        int b = SUT.addChild(a);
+        int e = SUT.addChild(b);
+        int d = SUT.addChild(a);
+        int c = SUT.addChild(SUT.root());
+        return new int[]{SUT.root(), a, b, c, d, e};
+    }
+
+    private static int[] drain(PrimitiveIterator.OfInt it) {
+        int[] retVal = new int[0];
+        while (it.hasNext()) {
+            retVal = Arrays.copyOf(retVal, retVal.length + 1);
+            retVal[retVal.length - 1] = it.nextInt();
+        }
+        return retVal;
+    }
+
+    @Test
+    void givenSmallHydra_whenIterated_thenPrePostAndLevelOrderAreRight() {
+        int[] n = buildSmallHydra();
+        int body = n[0], a = n[1], b = n[2], c = n[3], d = n[4], e = n[5];
+
+        assertArrayEquals(new int[]{body, a, b, e, d, c}, drain(SUT.preOrder(body)));
+        assertArrayEquals(new int[]{e, b, d, a, c, body}, drain(SUT.postOrder(body)));
+        assertArrayEquals(new int[]{body, a, c, b, d, e}, drain(SUT.levelOrder(body)));
+        assertArrayEquals(new int[]{a, b, d, e}, drain(SUT.levelOrder(a)));
+        assertArrayEquals(new int[]{b, e}, SUT.nodes(b).toArray());
+    }
+
+    @Test
+    void givenVisitorThatSkipsAHead_whenWalked_thenItsSubtreeIsSkippedButLeaveStillCalled() {
+        int[] n = buildSmallHydra();
+        final int a = n[1];
+        final StringBuilder log = new StringBuilder();
+        SUT.walk(SUT.root(), new HydraVisitor() {
+            @Override
+            public boolean enter(int node) {
+                log.append('+').append(node);
+                return node != a;
+            }
+
+            @Override
+            public void leave(int node) {
+                log.append('-').append(node);
+            }
+        });
+        int body = n[0], c = n[3];
+        assertEquals("+" + body + "+" + a + "-" + a + "+" + c + "-" + c + "-" + body, log.toString());
+    }
+
+    @Test
+    void givenBigHydra_whenStreamedInParallel_thenEveryHeadComesOutOnceAndInOrder() {
+        Random r = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            int p = SUT.root();
+            //Random walk down from the body to pick a parent
+            while (SUT.firstChild(p) != HydraTree.NONE && r.nextInt(4) != 0) {
+                int k = r.nextInt(SUT.childCount(p));
+                p = SUT.firstChild(p);
+                for (int j = 0; j < k; j++) {
+                    p = SUT.nextSibling(p);
+                }
+            }
+            SUT.addChild(p);
+        }
+
+        int[] sequential = drain(SUT.preOrder(SUT.root()));
+        assertEquals(SUT.size(), sequential.length);
+        assertArrayEquals(sequential, SUT.nodes(SUT.root()).parallel().toArray());
+        assertEquals(SUT.size(), SUT.nodes(SUT.root()).parallel().distinct().count());
+    }
+
+    @Test
+    void givenNeckWithLaterSiblings_whenItsSubtreeIsSplit_thenBothHalvesStayUnderIt() {
+        //x has one child, which has the heads worth splitting. x's own siblings come later and aren't part of it.
+        int x = SUT.addChild(SUT.root());
+        int only = SUT.addChild(x);
+        for (int i = 0; i < 3; i++) {
+            SUT.addChild(only);
+        }
+        for (int i = 0; i < 3; i++) {
+            SUT.addChild(SUT.root());
+        }
+
+        Spliterator.OfInt suffix = SUT.nodes(x).spliterator();
+        assertTrue(suffix.estimateSize() > 1);
+        Spliterator.OfInt prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        int[] both = IntStream.concat(StreamSupport.intStream(prefix, false), StreamSupport.intStream(suffix, false)).toArray();
+        assertArrayEquals(drain(SUT.preOrder(x)), both);
+    }
+
+    @Test
+    void givenSubtreesOfBigHydra_whenSplitAllTheWayDown_thenThePiecesAreThePreOrderOfEach() {
+        Random r = new Random(8);
+        for (int i = 0; i < 3000; i++) {
+            int p = SUT.root();
+            while (SUT.firstChild(p) != HydraTree.NONE && r.nextInt(3) != 0) {
+                int k = r.nextInt(SUT.childCount(p));
+                p = SUT.firstChild(p);
+                for (int j = 0; j < k; j++) {
+                    p = SUT.nextSibling(p);
+                }
+            }
+            SUT.addChild(p);
+        }
+        for (int i = 0; i < 200; i++) {
+            int from = r.nextInt(SUT.idBound());
+            if (!SUT.isLive(from)) {
+                continue;
+            }
+            ArrayList<Integer> pieces = new ArrayList<Integer>();
+            splitAll(SUT.nodes(from).spliterator(), pieces);
+            int[] expected = drain(SUT.preOrder(from));
+            assertEquals(expected.length, pieces.size());
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], pieces.get(j).intValue());
+            }
+        }
+    }
+
+    //Split as far as it goes, then read every piece in order
+    private static void splitAll(Spliterator.OfInt s, final ArrayList<Integer> into) {
+        Spliterator.OfInt prefix = s.trySplit();
+        if (prefix != null) {
+            splitAll(prefix, into);
+            splitAll(s, into);
+            return;
+        }
+        s.forEachRemaining(new IntConsumer() {
+            @Override
+            public void accept(int n) {
+                into.add(n);
+            }
+        });
+    }
+
+    @Test
+    void givenManyChops_whenLevelsRead_thenEachLevelMatchesAPreOrderScan() {
+        int a = SUT.addChild(SUT.root());
+        int b = SUT.addChild(a);
+        SUT.addChild(SUT.addChild(b));
+        SUT.addChild(b);
+        SUT.addChild(a);
+
+        Random r = new Random(3);
+        for (int i = 0; i < 200 && SUT.choppableCount() > 0 && SUT.size() < 5000; i++) {
+            SUT.chop(SUT.choppable(r.nextInt(SUT.choppableCount())), 1 + r.nextInt(3));
+            assertLevelsMatchPreOrder();
+        }
+    }
+
+    @Test
+    void givenHeadsAddedAnywhere_whenLevelsRead_thenEachLevelMatchesAPreOrderScan() {
+        //Lots of heads without children side by side, with new heads landing in the middle of them
+        Random r = new Random(7);
+        for (int i = 0; i < 60; i++) {
+            SUT.addChild(SUT.root());
+        }
+        for (int i = 0; i < 3000; i++) {
+            int n = r.nextInt(SUT.idBound());
+            if (!SUT.isLive(n)) {
+                continue;
+            }
+            if (r.nextInt(4) == 0 && SUT.childCount(n) == 0 && n != SUT.root()) {
+                SUT.deleteLeaf(n);
+            } else {
+                SUT.addChild(n);
+            }
+            if (i % 100 == 0) {
+                assertLevelsMatchPreOrder();
+            }
+        }
+        assertLevelsMatchPreOrder();
+    }
+
+    @Test
+    void givenHeadsPutBackBetweenSiblings_whenLevelsRead_thenEachLevelMatchesAPreOrderScan() {
+        Random r = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            SUT.addChild(SUT.root());
+        }
+        for (int i = 0; i < 2000; i++) {
+            int n = r.nextInt(SUT.idBound());
+            if (!SUT.isLive(n)) {
+                continue;
+            }
+            if (r.nextInt(3) == 0 && n != SUT.root()) {
+                SUT.deleteSubtree(n);
+            } else if (SUT.childCount(n) > 0 && r.nextBoolean()) {
+                //After a random child, or in front of them all
+                int after = HydraTree.NONE;
+                for (int c = SUT.firstChild(n), skip = r.nextInt(SUT.childCount(n) + 1); skip > 0; c = SUT.nextSibling(c), skip--) {
+                    after = c;
+                }
+                int added = SUT.addChildAfter(n, after);
+                assertEquals(after, SUT.prevSibling(added));
+            } else {
+                SUT.addChild(n);
+            }
+            if (i % 100 == 0) {
+                assertLevelsMatchPreOrder();
+            }
+        }
+        assertLevelsMatchPreOrder();
+    }
+
+    @Test
+    void givenSubtreeCopied_whenDeleted_thenTheNextCopyGetsTheSameIds() {
+        int[] n = buildSmallHydra();
+        int copy = SUT.copySubtree(n[1], SUT.root());
+        int[] ids = SUT.nodes(copy).toArray();
+        SUT.deleteSubtree(copy);
+        assertFalse(SUT.isLive(copy));
+        copy = SUT.copySubtree(n[1], SUT.root());
+        assertArrayEquals(ids, SUT.nodes(copy).toArray());
+    }
+
+    //Rebuild every level the slow way and compare
+    private void assertLevelsMatchPreOrder() {
+        int height = 0;
+        for (int n = SUT.root(); n != HydraTree.NONE; n = SUT.preOrderNext(n, SUT.root())) {
+            height = Math.max(height, SUT.depth(n) + 1);
+        }
+        assertEquals(height, SUT.height());
+        for (int d = 0; d < height; d++) {
+            int expected = HydraTree.NONE;
+            int count = 0, parents = 0;
+            for (int n = SUT.root(); n != HydraTree.NONE; n = SUT.preOrderNext(n, SUT.root())) {
+                if (SUT.depth(n) != d) {
+                    continue;
+                }
+                expected = expected == HydraTree.NONE ? SUT.levelFirst(d) : SUT.levelNext(expected);
+                assertEquals(n, expected);
+                count++;
+                if (SUT.childCount(n) > 0) {
+                    parents++;
+                }
+            }
+            assertEquals(SUT.levelLast(d), expected);
+            assertEquals(count, SUT.levelSize(d));
+            assertEquals(parents, SUT.levelParents(d));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import main.engine.ChopCalculator;
+import main.engine.HydraTree;
+import main.engine.MonteCarlo;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonteCarloTest {
+
+    @Test
+    void givenSameSeed_whenRunOnDifferentPools_thenEveryGameComesOutTheSame() {
+        MonteCarlo SUT = new MonteCarlo(null, 1, MonteCarlo.Strategy.RANDOM).maxChops(5000);
+        ForkJoinPool one = new ForkJoinPool(1), four = new ForkJoinPool(4);
+        try {
+            MonteCarlo.Report a = SUT.run(300, 99, one);
+            MonteCarlo.Report b = SUT.run(300, 99, four);
+            for (int g = 0; g < 300; g++) {
+                assertEquals(a.chops(g), b.chops(g));
+                assertEquals(a.peakHeads(g), b.peakHeads(g));
+                assertEquals(a.defeated(g), b.defeated(g));
+            }
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void givenNoRegrowth_whenSimulated_thenEveryGameTakesOneChopPerHead() {
+        HydraTree start = new HydraTree(true);
+        int neck = start.addChild(start.root());
+        start.addChild(start.addChild(neck));
+        start.addChild(neck);
+
+        MonteCarlo.Report report = new MonteCarlo(start, 0, MonteCarlo.Strategy.RANDOM).run(100, 1);
+
+        assertEquals(100, report.defeatedCount());
+        assertEquals(4, report.chopsPercentile(0));
+        assertEquals(4, report.chopsPercentile(1));
+        assertEquals(5, report.peakHeadsPercentile(1));
+        assertEquals(5, start.size());
+    }
+
+    @Test
+    void givenDeterministicStrategies_whenSimulated_thenGameLengthMatchesChopCalculator() {
+        HydraTree start = new HydraTree(true);
+        int a = start.addChild(start.root());
+        int b = start.addChild(a);
+        start.addChild(b);
+        start.addChild(b);
+        start.addChild(a);
+
+        ChopCalculator calculator = new ChopCalculator(2);
+        MonteCarlo.Report deepest = new MonteCarlo(start, 2, MonteCarlo.Strategy.DEEPEST).run(3, 5);
+        MonteCarlo.Report rightmost = new MonteCarlo(start, 2, MonteCarlo.Strategy.RIGHTMOST).run(3, 5);
+
+        assertEquals(3, deepest.defeatedCount());
+        assertEquals(calculator.chopsToDefeat(start, ChopCalculator.Strategy.DEEPEST).longValue(), deepest.chops(0));
+        assertEquals(calculator.chopsToDefeat(start, ChopCalculator.Strategy.RIGHTMOST).longValue(), rightmost.chops(2));
+    }
+
+    @Test
+    void givenTinyCaps_whenSimulated_thenGamesGiveUpInsteadOfRunningAway() {
+        MonteCarlo.Report report = new MonteCarlo(null, 3, MonteCarlo.Strategy.LEFTMOST).startHeads(20).maxChops(50).maxHeads(200).run(64, 3);
+
+        for (int g = 0; g < report.games(); g++) {
+            assertTrue(report.chops(g) <= 50);
+            assertTrue(report.peakHeads(g) <= 200);
+        }
+        assertTrue(report.defeatedCount() < report.games());
+    }
+
+    @Test
+    void givenHugeCopyCount_whenSimulated_thenGamesGiveUpBeforeGrowing() {
+        //A single regrowth here would be billions of heads
+        MonteCarlo.Report report = new MonteCarlo(null, 1073741823, MonteCarlo.Strategy.RIGHTMOST).startHeads(50).run(20, 1);
+
+        assertEquals(20, report.games());
+        for (int g = 0; g < report.games(); g++) {
+            assertTrue(report.peakHeads(g) <= 1000000);
+        }
+        assertTrue(report.toString().contains("20 games"));
+    }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import main.engine.HydraShape;
+import main.engine.HydraTree;
+import main.engine.ShapeTable;
+import main.engine.SharedHydra;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedHydraTest {
+
+    private HydraTree tree;
+    private int neck, head;
+
+    @BeforeEach
+    public void setup() {
+        //Body -> neck -> (head, head) and a second head on the body
+        tree = new HydraTree(true);
+        neck = tree.addChild(tree.root());
+        head = tree.addChild(neck);
+        tree.addChild(neck);
+        tree.addChild(tree.root());
+    }
+
+    @Test
+    void givenTree_whenShared_thenIdenticalSubtreesAreOneShape() {
+        ShapeTable table = new ShapeTable();
+        HydraShape[] shapes = SharedHydra.shapesOf(tree, table);
+        assertSame(table.leaf(), shapes[head]);
+        //leaf, neck and body
+        assertEquals(3, table.size());
+        assertEquals(BigInteger.valueOf(5), shapes[tree.root()].size());
+    }
+
+    @Test
+    void givenSharedHydra_whenHeadChopped_thenSameShapeAsChoppingTheTree() {
+        ShapeTable table = new ShapeTable();
+        HydraShape[] shapes = SharedHydra.shapesOf(tree, table);
+        SharedHydra SUT = new SharedHydra(table, shapes[tree.root()]);
+        int[] path = {shapes[tree.root()].indexOf(shapes[neck]), shapes[neck].indexOf(shapes[head])};
+
+        assertTrue(SUT.chop(path, 1000));
+        tree.chop(head, 1000);
+
+        assertSame(SharedHydra.shapesOf(tree, table)[tree.root()], SUT.body());
+        assertEquals(BigInteger.valueOf(tree.size()), SUT.size());
+    }
+
+    @Test
+    void givenHugeCopyCount_whenChopped_thenOnlyCountsGrow() {
+        SharedHydra SUT = SharedHydra.of(tree);
+        int[] path = SUT.headPath(BigInteger.ZERO);
+        while (path.length < 2) {
+            SUT.chop(path, Long.MAX_VALUE / 4);
+            path = SUT.headPath(BigInteger.ZERO);
+        }
+        assertTrue(SUT.chop(path, Long.MAX_VALUE / 4));
+        assertTrue(SUT.size().compareTo(BigInteger.valueOf(Long.MAX_VALUE / 4)) > 0);
+        assertTrue(SUT.table().size() < 10);
+    }
+
+    @Test
+    void givenPathToNeck_whenChopped_thenFalse() {
+        SharedHydra SUT = SharedHydra.of(tree);
+        HydraShape body = SUT.body();
+        int neckIndex = body.kind(0).isLeaf() ? 1 : 0;
+        assertFalse(SUT.chop(new int[]{neckIndex}, 2));
+        assertSame(body, SUT.body());
+    }
+
+    @Test
+    void givenVeryTallShape_whenMeasured_thenNoStackOverflow() {
+        //A neck 200,000 heads long, with two heads on every one of them
+        ShapeTable table = new ShapeTable();
+        HydraShape SUT = table.leaf();
+        for (int i = 0; i < 200000; i++) {
+            SUT = table.of(new HydraShape[]{SUT, table.leaf()}, new long[]{1, 1});
+        }
+        assertEquals(BigInteger.valueOf(400001), SUT.size());
+        assertEquals(BigInteger.valueOf(200001), SUT.heads());
+        assertEquals(200000, SUT.height());
+        assertNotEquals(table.leaf().canonicalHash(), SUT.canonicalHash());
+    }
+}
@@ -0,0 +1,113 @@
+package test;
+
+import main.engine.BackgroundLayout;
+import main.engine.HydraTree;
+import main.engine.TidyLayout;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TidyLayoutTest {
+    private static final double WIDTH = 1000, HEIGHT = 600;
+
+    private static HydraTree randomHydra(int heads, long seed) {
+        HydraTree tree = new HydraTree(true);
+        tree.growRandom(heads, new SplittableRandom(seed));
+        return tree;
+    }
+
+    @Test
+    void givenRandomHydra_whenLaidOut_thenHeadsOnALevelDontOverlapAndStayInOrder() {
+        HydraTree tree = randomHydra(300, 3);
+        TidyLayout SUT = new TidyLayout(WIDTH, HEIGHT);
+        SUT.layout(tree, HEIGHT);
+
+        for (int d = 1; d < SUT.levelCount(); d++) {
+            double width = SUT.radiusX(d) * 2;
+            for (int n = tree.levelFirst(d); tree.levelNext(n) != HydraTree.NONE; n = tree.levelNext(n)) {
+                assertTrue(SUT.x(tree.levelNext(n)) - SUT.x(n) >= width - 1e-9);
+            }
+            assertTrue(SUT.x(tree.levelFirst(d)) >= 0);
+            assertTrue(SUT.x(tree.levelLast(d)) <= WIDTH);
+        }
+    }
+
+    @Test
+    void givenRandomHydra_whenLaidOut_thenEveryParentIsCentredOverItsChildren() {
+        HydraTree tree = randomHydra(300, 4);
+        TidyLayout SUT = new TidyLayout(WIDTH, HEIGHT);
+        SUT.layout(tree, HEIGHT);
+
+        for (int n = tree.root(); n != HydraTree.NONE; n = tree.preOrderNext(n, tree.root())) {
+            if (tree.firstChild(n) != HydraTree.NONE) {
+                double middle = (SUT.x(tree.firstChild(n)) + SUT.x(tree.lastChild(n))) / 2;
+                assertEquals(middle, SUT.x(n), 1e-6);
+                assertTrue(SUT.y(tree.firstChild(n)) < SUT.y(n));
+            }
+        }
+    }
+
+    @Test
+    void givenLaidOutHydra_whenChoppedAndLaidOutAgain_thenOnlyTheChangedShapesAreBuilt() {
+        HydraTree tree = randomHydra(2000, 5);
+        TidyLayout SUT = new TidyLayout(WIDTH, HEIGHT);
+        SUT.layout(tree, HEIGHT);
+
+        //Chop the deepest head, so copies of a whole subtree grow back
+        int head = tree.levelFirst(tree.height() - 1);
+        int depth = tree.depth(head);
+        assertTrue(tree.chop(head, 3));
+        long before = SUT.cache().shapesBuilt();
+        SUT.layout(tree, HEIGHT);
+
+        //At most one new shape per level between the chop and the body
+        assertTrue(SUT.cache().shapesBuilt() - before <= depth);
+    }
+
+    @Test
+    void givenVeryTallHydra_whenLaidOut_thenNoStackOverflowAndItIsAStraightLine() {
+        HydraTree tree = new HydraTree(true);
+        int n = tree.root();
+        for (int i = 0; i < 100000; i++) {
+            n = tree.addChild(n);
+        }
+        TidyLayout SUT = new TidyLayout(WIDTH, HEIGHT);
+        SUT.layout(tree, HEIGHT);
+
+        assertEquals(WIDTH / 2, SUT.x(n), 1e-6);
+        assertEquals(WIDTH / 2, SUT.x(tree.root()), 1e-6);
+    }
+
+    @Test
+    void givenRequestsFasterThanTheWorker_whenItCatchesUp_thenTheNewestFrameIsPublished() throws InterruptedException {
+        final AtomicLong framesPublished = new AtomicLong();
+        BackgroundLayout SUT = new BackgroundLayout(WIDTH, HEIGHT, new Runnable() {
+            @Override
+            public void run() {
+                framesPublished.incrementAndGet();
+            }
+        });
+
+        HydraTree tree = randomHydra(5000, 6);
+        long last = 0;
+        for (int i = 0; i < 20; i++) {
+            tree.chop(tree.choppable(0), 1);
+            last = SUT.request(tree.copy(), HEIGHT);
+        }
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (System.currentTimeMillis() < deadline && (SUT.latest() == null || SUT.latest().version() != last)) {
+                Thread.sleep(1);
+            }
+            assertEquals(last, SUT.latest().version());
+            assertEquals(tree.size(), SUT.latest().tree().size());
+            assertTrue(framesPublished.get() >= 1 && framesPublished.get() <= last);
+            assertNull(SUT.failure());
+        } finally {
+            SUT.stop();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package test;
+
+import main.engine.Viewport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewportTest {
+    private static final double WIDTH = 1000, HEIGHT = 600;
+
+    private Viewport SUT;
+
+    @BeforeEach
+    public void setup() {
+        //Reset system under test each time
+        SUT = new Viewport();
+        SUT.setSize(WIDTH, HEIGHT);
+    }
+
+    //Run the zoom animation to the end, counting frames
+    private int finish() {
+        int frames = 1;
+        while (SUT.step(.35)) {
+            frames++;
+            assertTrue(frames < 1000, "Zoom never finishes");
+        }
+        return frames;
+    }
+
+    @Test
+    void givenZoomAroundMouse_whenAnimated_thenPointUnderMouseStaysPut() {
+        double worldX = SUT.toWorldX(300), worldY = SUT.toWorldY(200);
+        SUT.zoomAt(300, 200, 8);
+
+        //Part of the way there on the first frame, all of the way in a few more
+        assertTrue(SUT.step(.35));
+        assertTrue(SUT.scale() > 1 && SUT.scale() < 8);
+        assertTrue(finish() < 30);
+        assertEquals(8, SUT.scale(), 1e-9);
+        assertEquals(300, SUT.toScreenX(worldX), 1e-6);
+        assertEquals(200, SUT.toScreenY(worldY), 1e-6);
+
+        //An eighth of the world is on screen
+        assertEquals(WIDTH / 8, SUT.right() - SUT.left(), 1e-9);
+        assertEquals(HEIGHT / 8, SUT.bottom() - SUT.top(), 1e-9);
+    }
+
+    @Test
+    void givenZoomedIn_whenPannedPastTheEdge_thenStopsAtTheEdge() {
+        SUT.zoomAt(500, 300, 4);
+        finish();
+        SUT.panBy(100, 0);
+        //Dragging right moves the view left, by the drag divided by the zoom
+        double left = SUT.left();
+        SUT.panBy(40, 0);
+        assertEquals(left - 10, SUT.left(), 1e-9);
+
+        SUT.panBy(1e6, 1e6);
+        assertEquals(0, SUT.left(), 1e-9);
+        assertEquals(0, SUT.top(), 1e-9);
+        SUT.panBy(-1e6, -1e6);
+        assertEquals(WIDTH, SUT.right(), 1e-9);
+        assertEquals(HEIGHT, SUT.bottom(), 1e-9);
+    }
+
+    @Test
+    void givenZoomOutPastWholeHydra_whenAnimated_thenStopsAtWholeHydra() {
+        SUT.zoomAt(100, 100, 3);
+        finish();
+        SUT.zoomAt(100, 100, 1 / 100.0);
+        finish();
+        assertEquals(1, SUT.scale());
+        assertEquals(0, SUT.left(), 1e-9);
+        assertFalse(SUT.isZoomed());
+
+        SUT.zoomAt(100, 100, 1e12);
+        finish();
+        assertEquals(Viewport.MAX_SCALE, SUT.scale());
+        SUT.reset();
+        assertFalse(SUT.isZoomed());
+        assertEquals(WIDTH, SUT.toScreenX(WIDTH), 1e-9);
+    }
+}